@@ -0,0 +1,115 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates shopping lists of a given size for the benchmarks.
+ *
+ * @author Laura Kanerva.
+ */
+public class Datasets {
+    private static final String[] NAMES = {
+        "milk", "bread", "eggs", "butter", "cheese", "apples", "bananas", "coffee",
+        "rice", "pasta", "tomatoes", "potatoes", "onions", "yoghurt", "oat drink", "salmon"
+    };
+
+    /**
+     * Private constructor, class only has static methods.
+     */
+    private Datasets() {
+
+    }
+
+    /**
+     * Creates a list of items. The same seed always gives the same list.
+     *
+     * @param size number of items
+     * @return the items
+     */
+    public static List<Item> items(int size) {
+        Random random = new Random(size);
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(size);
+            items.add(new Item(1 + random.nextInt(20), name));
+        }
+        return items;
+    }
+
+    /**
+     * Creates a list as JSONObjects, the same way the app saves it.
+     *
+     * @param size number of items
+     * @return the objects
+     */
+    public static JsonObject[] objects(int size) {
+        List<Item> items = items(size);
+        JsonObject[] jsons = new JsonObject[size];
+        for (int i = 0; i < size; i++) {
+            jsons[i] = JsonListStore.toJson(items.get(i));
+        }
+        return jsons;
+    }
+
+    /**
+     * Creates a list in the json form written by JsonUtil.writeToJson.
+     *
+     * @param size number of items
+     * @return the whole json document
+     * @throws IOException never, the json is written to memory
+     */
+    public static String json(int size) throws IOException {
+        StringWriter sw = new StringWriter();
+        new JsonUtil().writeToJson(sw, objects(size));
+        return sw.toString();
+    }
+
+    /**
+     * Creates a list like other tools write it: amounts written as decimals, names with
+     * escaped quotes and accents, booleans, nulls and a nested category object.
+     *
+     * @param size number of items
+     * @return the whole json document
+     * @throws IOException never, the json is written to memory
+     */
+    public static String richJson(int size) throws IOException {
+        Random random = new Random(size);
+        JsonObject[] jsons = new JsonObject[size];
+        for (int i = 0; i < size; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            JsonObject category = new JsonObject();
+            category.add("name", random.nextBoolean() ? "dairy" : "caf\u00e9");
+            category.add("tags", Arrays.asList("fresh", random.nextInt(10)));
+            JsonObject jo = new JsonObject();
+            jo.add("item", random.nextInt(4) == 0 ? name + " \"organic\"" : name + " " + random.nextInt(size));
+            jo.add("amount", (double) (1 + random.nextInt(10)));
+            jo.add("organic", random.nextBoolean());
+            jo.add("note", (Object) null);
+            jo.add("category", category);
+            jsons[i] = jo;
+        }
+        StringWriter sw = new StringWriter();
+        new JsonUtil().writeToJson(sw, jsons);
+        return sw.toString();
+    }
+
+    /**
+     * Writes a list to a temporary json file that is deleted when the JVM exits.
+     *
+     * @param size number of items
+     * @return the file
+     * @throws IOException if the file cannot be created
+     */
+    public static File file(int size) throws IOException {
+        File file = File.createTempFile("benchmark-" + size + "-", ".json");
+        file.deleteOnExit();
+        new JsonUtil().writeToJson(file, objects(size));
+        return file;
+    }
+}
@@ -0,0 +1,86 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the Item mapping done when the app imports and saves lists.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemMappingBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private String json;
+    private List<Item> items;
+
+    /**
+     * Generates the dataset.
+     *
+     * @throws IOException never, the json is written to memory
+     */
+    @Setup
+    public void setup() throws IOException {
+        json = Datasets.json(size);
+        items = Datasets.items(size);
+    }
+
+    /**
+     * Parses json straight into items, like the import task does.
+     */
+    @Benchmark
+    public void importItems(Blackhole bh) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        JsonToken token = reader.next();
+        while (token != JsonToken.END_DOCUMENT) {
+            if (token == JsonToken.START_OBJECT) {
+                bh.consume(JsonListStore.readItem(reader));
+            }
+            token = reader.next();
+        }
+    }
+
+    /**
+     * Parses json into JSONObjects first and maps them to items through their maps.
+     */
+    @Benchmark
+    public void importThroughObjects(Blackhole bh) throws IOException {
+        new JsonUtil().readJson(new StringReader(json), jo -> {
+            Item item = new Item();
+            item.setItem((String) jo.getMap().get("item"));
+            item.setAmount(jo.getInt("amount", 0));
+            bh.consume(item);
+        });
+    }
+
+    /**
+     * Converts items to JSONObjects, like saving the list does.
+     */
+    @Benchmark
+    public void saveItems(Blackhole bh) {
+        for (Item item : items) {
+            bh.consume(JsonListStore.toJson(item));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package objectorientedprogramming;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for creating and writing JsonObjects, meant to be run with the gc
+ * profiler to see how much each object allocates. Only methods that JsonObject
+ * and JsonUtil have had from the start are used, so the same benchmarks can be
+ * run against an older parser-app by putting its jar first on the class path.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonObjectBenchmark {
+    private static final String[] NAMES = {"milk", "bread", "eggs", "butter", "cheese", "apples", "coffee", "rice"};
+
+    @Param({"1000"})
+    private int size;
+
+    private final JsonUtil jutil = new JsonUtil();
+    private String json;
+    private List<JsonObject> jsons;
+
+    /**
+     * Generates the dataset, a list like the app saves it. The json is built as
+     * text, so that setting up does not depend on the JsonObject being measured.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "\n\t{" : ",\n\t{")
+                .append("\"item\": \"").append(NAMES[random.nextInt(NAMES.length)]).append(' ').append(i)
+                .append("\", \"amount\": ").append(1 + random.nextInt(20)).append('}');
+        }
+        json = sb.append("\n]").toString();
+        jsons = jutil.stringToJson(json);
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        bh.consume(jutil.stringToJson(json));
+    }
+
+    @Benchmark
+    public void write(Blackhole bh) {
+        for (JsonObject jo : jsons) {
+            bh.consume(jo.toString());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the three-way merge done when a list is synced with Dropbox.
+ * Both sides change about 5 % of the items, remove 1 % and add 1 %, so the time
+ * per item should stay the same as the lists grow.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private List<Item> base;
+    private List<Item> local;
+    private List<Item> remote;
+
+    /**
+     * Generates the base list and two edited versions of it.
+     */
+    @Setup
+    public void setup() {
+        base = Datasets.items(size);
+        local = edit(base, 1);
+        remote = edit(base, 2);
+    }
+
+    /**
+     * Merges the local and remote versions.
+     *
+     * @return the merged list
+     */
+    @Benchmark
+    public List<Item> merge() {
+        return ListMerge.merge(base, local, remote);
+    }
+
+    /**
+     * Makes an edited copy of a list.
+     *
+     * @param items the list
+     * @param seed seed of the edits
+     * @return the edited copy
+     */
+    private static List<Item> edit(List<Item> items, long seed) {
+        Random random = new Random(seed);
+        List<Item> edited = new ArrayList<>(items.size());
+        for (Item item : items) {
+            int r = random.nextInt(100);
+            if (r < 5) {
+                edited.add(new Item(item.getAmount() + 1 + random.nextInt(5), item.getItem()));
+            } else if (r == 5) {
+                continue;
+            } else {
+                edited.add(item);
+            }
+            if (r == 6) {
+                edited.add(new Item(1, "new item " + seed + " " + edited.size()));
+            }
+        }
+        return edited;
+    }
+}
@@ -0,0 +1,107 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for reading json with JsonUtil.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private final JsonUtil jutil = new JsonUtil();
+    private File file;
+    private String json;
+    private String richJson;
+    private byte[] richBytes;
+
+    /**
+     * Generates the dataset.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = Datasets.file(size);
+        json = Datasets.json(size);
+        richJson = Datasets.richJson(size);
+        richBytes = richJson.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void readJson(Blackhole bh) {
+        bh.consume(jutil.readJson(file));
+    }
+
+    @Benchmark
+    public void readJsonStreaming(Blackhole bh) {
+        jutil.readJson(file, bh::consume);
+    }
+
+    @Benchmark
+    public void readJsonChars(Blackhole bh) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            jutil.readJson(reader, bh::consume);
+        }
+    }
+
+    @Benchmark
+    public void stringToJson(Blackhole bh) {
+        bh.consume(jutil.stringToJson(json));
+    }
+
+    @Benchmark
+    public void stringToJsonRich(Blackhole bh) {
+        bh.consume(jutil.stringToJson(richJson));
+    }
+
+    @Benchmark
+    public void importRich(Blackhole bh) throws IOException {
+        bh.consume(JsonListStore.read(new JsonReader(new StringReader(richJson))));
+    }
+
+    @Benchmark
+    public void importRichDecoded(Blackhole bh) throws IOException {
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(richBytes), StandardCharsets.UTF_8);
+        bh.consume(JsonListStore.read(new JsonReader(reader)));
+    }
+
+    @Benchmark
+    public void importRichBytes(Blackhole bh) throws IOException {
+        bh.consume(JsonListStore.read(new Utf8JsonReader(ByteBuffer.wrap(richBytes))));
+    }
+
+    @Benchmark
+    public void removeWhiteSpace(Blackhole bh) {
+        bh.consume(jutil.removeWhiteSpace(json));
+    }
+}
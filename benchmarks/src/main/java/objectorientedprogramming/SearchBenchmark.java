@@ -0,0 +1,84 @@
+package objectorientedprogramming;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for searching the list by name. The names are one of 16 words and a
+ * number, so a query with the number finds a handful of items and should take the
+ * same time at every size, while a query with only the word finds a sixteenth of
+ * the list.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private NameIndex index;
+    private String name;
+    private String prefix;
+
+    /**
+     * Indexes the list and picks the queries from one of its items.
+     */
+    @Setup
+    public void setup() {
+        List<Item> items = Datasets.items(size);
+        index = new NameIndex();
+        for (Item item : items) {
+            index.add(item);
+        }
+        name = items.get(items.size() / 2).getItem();
+        String[] words = name.split(" ");
+        prefix = words[0].substring(0, 3) + " " + words[1];
+    }
+
+    /**
+     * Searches with a whole name.
+     *
+     * @return the matches
+     */
+    @Benchmark
+    public Set<Item> wholeName() {
+        return index.search(name);
+    }
+
+    /**
+     * Searches with the start of the word and the number, as while typing.
+     *
+     * @return the matches
+     */
+    @Benchmark
+    public Set<Item> prefix() {
+        return index.search(prefix);
+    }
+
+    /**
+     * Searches with one word that a sixteenth of the items have.
+     *
+     * @return the matches
+     */
+    @Benchmark
+    public Set<Item> broad() {
+        return index.search("milk");
+    }
+}
@@ -0,0 +1,80 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for editing an amount while the table is sorted by amount. The sorted
+ * view moves the edited item in its trees, which should take about the same time
+ * at every size, compared to sorting a copy of the list after the edit.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortedViewBenchmark {
+    private static final Comparator<Item> BY_AMOUNT = Comparator.comparingInt(Item::getAmount);
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private ShoppingList list;
+    private SortedView view;
+    private final Random random = new Random(1);
+
+    /**
+     * Fills the list and sorts the view by amount.
+     */
+    @Setup
+    public void setup() {
+        list = new ShoppingList();
+        view = new SortedView();
+        list.addListener(view);
+        list.setAll(Datasets.items(size));
+        view.sort(SortedView.Order.AMOUNT, true);
+    }
+
+    /**
+     * Changes the amount of a random item and reads the aggregates.
+     *
+     * @return the total amount
+     */
+    @Benchmark
+    public long editSorted() {
+        Item item = list.getItems().get(random.nextInt(list.size()));
+        list.setAmount(item, 1 + random.nextInt(20));
+        return view.getTotalAmount() + view.top(10).size();
+    }
+
+    /**
+     * Changes the amount of a random item and sorts a copy of the list.
+     *
+     * @return the sorted copy
+     */
+    @Benchmark
+    public List<Item> editAndSort() {
+        Item item = list.getItems().get(random.nextInt(list.size()));
+        list.setAmount(item, 1 + random.nextInt(20));
+        List<Item> sorted = new ArrayList<>(list.getItems());
+        sorted.sort(BY_AMOUNT);
+        return sorted;
+    }
+}
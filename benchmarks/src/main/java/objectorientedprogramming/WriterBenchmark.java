@@ -0,0 +1,80 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for writing json with JsonObject and JsonUtil.
+ *
+ * @author Laura Kanerva.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private final JsonUtil jutil = new JsonUtil();
+    private JsonObject[] jsons;
+
+    /**
+     * Generates the dataset.
+     */
+    @Setup
+    public void setup() {
+        jsons = Datasets.objects(size);
+    }
+
+    @Benchmark
+    public void objectToString(Blackhole bh) {
+        for (JsonObject jo : jsons) {
+            bh.consume(jo.toString());
+        }
+    }
+
+    @Benchmark
+    public void writeToJson(Blackhole bh) throws IOException {
+        jutil.writeToJson(new BlackholeWriter(bh), jsons);
+    }
+
+    /**
+     * Writer that discards its output, so only serialization is measured.
+     */
+    private static class BlackholeWriter extends Writer {
+        private final Blackhole bh;
+
+        BlackholeWriter(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            bh.consume(cbuf);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package objectorientedprogramming;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Optional;
 import java.util.*;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.TableColumn.CellEditEvent;
@@ -17,6 +24,7 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.FileChooser;
 import javafx.event.EventHandler;
+import javafx.util.Duration;
 import javafx.util.converter.IntegerStringConverter;
 
 /**
@@ -25,15 +33,37 @@ import javafx.util.converter.IntegerStringConverter;
  * @author Laura Kanerva.
  */
 public class App extends Application {
+    private static final Metrics.Operation SAVE_TO_JSON = Metrics.operation("saveToJson");
+
     private TextField itemInput;
     private TextField amountInput;
-    private TableView tableView;
+    private TextField searchInput;
+    private FilteredList<Item> filteredItems;
+    private TableView<Item> tableView;
+    private TableColumn<Item, Integer> amountColumn;
+    private TableColumn<Item, String> itemColumn;
+    private ShoppingList list;
+    private SortedView view;
     private FileChooser fileChooser;
     private Button addButton;
     private Button removeButton;
     private Button clearButton;
     private HBox hbox;
+    private HBox statusBar;
     private VBox vbox;
+    private ProgressBar progressBar;
+    private Label statusLabel;
+    private Label summaryLabel;
+    private Button cancelButton;
+    private Task<?> currentTask;
+    private ItemBatcher batcher;
+    private ChangeJournal journal;
+    private DropboxConnector dropbox;
+    private DigestStore digests;
+    private File dataDirectory;
+    private final BooleanProperty dirty = new SimpleBooleanProperty(true);
+    private long version;
+    private boolean summaryPending;
     private Stage window;
 
     /**
@@ -44,8 +74,19 @@ public class App extends Application {
     @Override
     public void start(Stage window) {
         this.window = window;
-        tableView = new TableView();
+        dataDirectory = Launcher.DATA_DIRECTORY != null ? new File(Launcher.DATA_DIRECTORY)
+            : new File(System.getProperty("user.home"), ".shoppinglist");
+        digests = new DigestStore(new File(dataDirectory, "digests.properties"));
+        list = new ShoppingList();
+        view = new SortedView();
+        list.addListener(view);
+        tableView = new TableView<>(view);
+        tableView.setSortPolicy(table -> {
+            sortView();
+            return true;
+        });
         tableView.setEditable(true);
+        batcher = new ItemBatcher(list);
         fileChooser = new FileChooser();
 
         createColumns();
@@ -56,16 +97,40 @@ public class App extends Application {
         createInputFields();
         createButtons();
         createHBox();
+        createStatusBar();
         createVBox();
+        startAutosave();
 
         Scene content = new Scene(vbox);
 
-        window.setTitle("Shopping List");
+        window.titleProperty().bind(Bindings.when(dirty).then("Shopping List *").otherwise("Shopping List"));
         window.initStyle(StageStyle.DECORATED);
         window.setScene(content);
+        if (Launcher.TIMING || Launcher.EXIT_AFTER_SHOWN) {
+            window.setOnShown(e -> {
+                if (Launcher.TIMING) {
+                    Launcher.windowShown();
+                }
+                if (Launcher.EXIT_AFTER_SHOWN) {
+                    Platform.runLater(Platform::exit);
+                }
+            });
+        }
         window.show();
     }
 
+    /**
+     * Writes the last autosaved changes to disk when the app is closed.
+     */
+    @Override
+    public void stop() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Main method, prints author's name to the console and calls launch-method.
      *
@@ -76,11 +141,115 @@ public class App extends Application {
         launch(args);
     }
 
+    /**
+     * Restores the list autosaved by the previous run and starts recording every change to it.
+     */
+    private void startAutosave() {
+        journal = new ChangeJournal(dataDirectory, () -> list.getItems());
+        try {
+            batcher.setAll(journal.recover());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        list.addListener(journal);
+        list.addListener(new ListObserver());
+        updateSummary();
+    }
+
+    /**
+     * Sorts the table by its first sort column. The view keeps every order up to
+     * date, so sorting only switches between them.
+     */
+    private void sortView() {
+        if (tableView.getSortOrder().isEmpty()) {
+            view.sort(SortedView.Order.LIST, false);
+            return;
+        }
+        TableColumn<Item, ?> column = tableView.getSortOrder().get(0);
+        SortedView.Order order = column == amountColumn ? SortedView.Order.AMOUNT : SortedView.Order.NAME;
+        view.sort(order, column.getSortType() == TableColumn.SortType.DESCENDING);
+    }
+
+    /**
+     * Shows the number of items, the total amount and the largest amounts.
+     */
+    private void updateSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(view.size()).append(" items, ").append(view.getTotalAmount()).append(" in total");
+        List<Item> top = view.top(3);
+        for (int i = 0; i < top.size(); i++) {
+            sb.append(i == 0 ? ". Most: " : ", ");
+            sb.append(top.get(i).getItem()).append(" (").append(top.get(i).getAmount()).append(")");
+        }
+        summaryLabel.setText(sb.toString());
+    }
+
+    /**
+     * Shows only the items matching the search box. The matches come from the
+     * name index of the list, so the filter only checks set membership. The
+     * filtered list is only used while searching, because it updates its rows
+     * in linear time when the view changes.
+     */
+    private void filter() {
+        String query = searchInput.getText();
+        if (query == null || query.isBlank()) {
+            filteredItems = null;
+            tableView.setItems(view);
+        } else {
+            if (filteredItems == null) {
+                filteredItems = new FilteredList<>(view);
+            }
+            filteredItems.setPredicate(list.search(query)::contains);
+            tableView.setItems(filteredItems);
+        }
+    }
+
+    /**
+     * Marks the list as changed and updates the summary once the current batch of
+     * changes is done.
+     */
+    private void listChanged() {
+        markDirty();
+        if (!summaryPending) {
+            summaryPending = true;
+            Platform.runLater(() -> {
+                summaryPending = false;
+                updateSummary();
+            });
+        }
+    }
+
+    /**
+     * Marks the list as changed since it was last saved.
+     */
+    private void markDirty() {
+        version++;
+        dirty.set(true);
+    }
+
+    /**
+     * Runs a save task and marks the list as saved when it succeeds, unless the
+     * list was changed while it was being saved. Saving stays possible for a saved
+     * list, as it may still be missing from other files or from Dropbox; saves
+     * that would not change their target are skipped by the tasks themselves.
+     *
+     * @param task the save task
+     */
+    private void runSave(Task<?> task) {
+        long savedVersion = version;
+        task.setOnSucceeded(e -> {
+            if (version == savedVersion) {
+                dirty.set(false);
+            }
+        });
+        runTask(task);
+    }
+
     /**
      * Creates Amount and Item columns.
      */
     private void createColumns() {
-        TableColumn<Item, Integer> amountColumn = new TableColumn<>("Amount");
+        amountColumn = new TableColumn<>("Amount");
         amountColumn.setCellValueFactory(new PropertyValueFactory<>("amount"));
 
         amountColumn.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
@@ -88,12 +257,12 @@ public class App extends Application {
             new EventHandler<CellEditEvent<Item, Integer>>() {
                 @Override
                 public void handle(CellEditEvent<Item, Integer> t) {
-                    ((Item) t.getTableView().getItems().get(t.getTablePosition().getRow())).setItem(t.getNewValue().toString());
+                    list.setAmount(t.getRowValue(), t.getNewValue());
                 }
             }
         );
 
-        TableColumn<Item, String> itemColumn = new TableColumn<>("Item");
+        itemColumn = new TableColumn<>("Item");
         itemColumn.setCellValueFactory(new PropertyValueFactory<>("item"));
 
         itemColumn.setCellFactory(TextFieldTableCell.forTableColumn());
@@ -101,7 +270,7 @@ public class App extends Application {
             new EventHandler<CellEditEvent<Item, String>>() {
                 @Override
                 public void handle(CellEditEvent<Item, String> t) {
-                    ((Item) t.getTableView().getItems().get(t.getTablePosition().getRow())).setItem(t.getNewValue());
+                    list.rename(t.getRowValue(), t.getNewValue());
                 }
             }
         );
@@ -122,6 +291,11 @@ public class App extends Application {
         //item input
         itemInput = new TextField();
         itemInput.setPromptText("Item");
+
+        //search input
+        searchInput = new TextField();
+        searchInput.setPromptText("Search");
+        searchInput.textProperty().addListener((observable, oldValue, newValue) -> filter());
     }
 
     /**
@@ -134,12 +308,33 @@ public class App extends Application {
         hbox.getChildren().addAll(amountInput, itemInput, addButton, removeButton, clearButton);
     }
 
+    /**
+     * Creates a status bar showing the progress of background tasks.
+     */
+    private void createStatusBar() {
+        progressBar = new ProgressBar(0);
+        statusLabel = new Label();
+        summaryLabel = new Label();
+        cancelButton = new Button("Cancel");
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> {
+            if (currentTask != null) {
+                currentTask.cancel();
+            }
+        });
+
+        statusBar = new HBox();
+        statusBar.setPadding(new Insets(0, 10, 0, 10));
+        statusBar.setSpacing(10);
+        statusBar.getChildren().addAll(progressBar, cancelButton, statusLabel, summaryLabel);
+    }
+
     /**
      * Creates a vertical box for all app elements.
      */
     private void createVBox() {
         vbox = new VBox();
-        vbox.getChildren().addAll(createMenuBar(window), tableView, hbox);
+        vbox.getChildren().addAll(createMenuBar(window), searchInput, tableView, hbox, statusBar);
         vbox.setPadding(new Insets(0, 0, 10, 0));
     }
 
@@ -152,7 +347,7 @@ public class App extends Application {
         removeButton = new Button("Remove item");
         removeButton.setOnAction(e -> removeButtonClicked());
         clearButton = new Button("Clear all");
-        clearButton.setOnAction(e -> tableView.getItems().clear());
+        clearButton.setOnAction(e -> batcher.clear());
     }
 
     /**
@@ -162,7 +357,7 @@ public class App extends Application {
         Item newItem = new Item();
         newItem.setAmount(Integer.parseInt(amountInput.getText()));
         newItem.setItem(itemInput.getText());
-        tableView.getItems().add(newItem);
+        batcher.addAll(List.of(newItem));
         amountInput.clear();
         itemInput.clear();
     }
@@ -171,7 +366,10 @@ public class App extends Application {
      * Removes the selected item from the list.
      */
     private void removeButtonClicked() {
-        tableView.getItems().remove(tableView.getSelectionModel().getSelectedItem());
+        Item selected = tableView.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            list.remove(selected);
+        }
     }
 
     /**
@@ -180,27 +378,101 @@ public class App extends Application {
      * @return table of JSONObjects
      */
     private JsonObject[] saveToJson() {
-        ObservableList<Object> objs = tableView.getItems();
-        JsonObject[] jsons = new JsonObject[objs.size()];
+        long start = Metrics.start();
+        List<Item> items = list.getItems();
+        JsonObject[] jsons = new JsonObject[items.size()];
 
         int i = 0;
-        for(Object o : objs) {
-            Item item = (Item)o;
-            JsonObject jo = new JsonObject();
-            jo.add("item", item.getItem());
-            jo.add("amount", item.getAmount());
-            jsons[i++] = jo;
+        for(Item item : items) {
+            jsons[i++] = JsonListStore.toJson(item);
         }
 
+        SAVE_TO_JSON.record(start, 0, jsons.length);
         return jsons;
     }
 
     /**
-     * Opens authorization dialog and lets user save their shopping list to Dropbox.
+     * Lets user save their shopping list to Dropbox.
      */
     private void saveToDropbox() {
-        DropboxConnector dbc = new DropboxConnector();
-        String url = dbc.authorizeUser();
+        if (!logInToDropbox()) {
+            return;
+        }
+        DropboxConnector dbc = dropbox;
+        TextInputDialog td = new TextInputDialog();
+        td.setTitle("Save to Dropbox");
+        td.setHeaderText("Enter filename:");
+        Optional<String> fileName = td.showAndWait();
+        if (fileName.isPresent()) {
+            JsonObject[] jsons = saveToJson();
+            runSave(new Task<Void>() {
+                @Override
+                protected Void call() throws Exception {
+                    updateMessage("Uploading " + fileName.get() + " to Dropbox");
+                    if (dbc.uploadFile(fileName, jsons)) {
+                        updateMessage("Uploaded " + jsons.length + " items to Dropbox");
+                    } else {
+                        updateMessage(fileName.get() + " is already up to date in Dropbox");
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Lets user merge their shopping list with a list in Dropbox, which may have
+     * been edited on another computer. The list can be edited during the sync, so
+     * when it finishes, the synced list is merged with the list as it is then,
+     * using the list the sync started from as the base.
+     */
+    private void syncWithDropbox() {
+        if (!logInToDropbox()) {
+            return;
+        }
+        DropboxConnector dbc = dropbox;
+        TextInputDialog td = new TextInputDialog();
+        td.setTitle("Sync with Dropbox");
+        td.setHeaderText("Enter filename:");
+        Optional<String> fileName = td.showAndWait();
+        if (fileName.isPresent()) {
+            List<Item> items = new ArrayList<>(list.size());
+            for (Item item : list.getItems()) {
+                items.add(new Item(item.getAmount(), item.getItem()));
+            }
+            Task<List<Item>> task = new Task<List<Item>>() {
+                @Override
+                protected List<Item> call() throws Exception {
+                    updateMessage("Syncing " + fileName.get() + " with Dropbox");
+                    List<Item> merged = dbc.sync(fileName, items);
+                    updateMessage("Synced " + merged.size() + " items with Dropbox");
+                    return merged;
+                }
+            };
+            task.setOnSucceeded(e -> {
+                List<Item> current = new ArrayList<>(list.getItems());
+                List<Item> merged = ListMerge.merge(items, current, task.getValue());
+                if (!merged.equals(current)) {
+                    batcher.setAll(merged);
+                }
+            });
+            runTask(task);
+        }
+    }
+
+    /**
+     * Opens authorization dialog if the user has not logged in to Dropbox before.
+     *
+     * @return true if the user is logged in
+     */
+    private boolean logInToDropbox() {
+        if (dropbox == null) {
+            dropbox = new DropboxConnector(new File(dataDirectory, "dropbox-credential.json"), digests);
+        }
+        if (dropbox.isLoggedIn()) {
+            return true;
+        }
+        String url = dropbox.authorizeUser();
 
         TextArea textArea = new TextArea("1. Go to " + url + "\n\n2. Click \"Allow\" (you might have to log in first).\n\n3. Copy the authorization code.");
         textArea.setEditable(false);
@@ -211,39 +483,106 @@ public class App extends Application {
         authorizationDialog.getDialogPane().setHeader(textArea);
         authorizationDialog.setContentText("Enter the authorization code here: ");
         Optional<String> code = authorizationDialog.showAndWait();
-        dbc.logIn(code);
-
-        TextInputDialog td = new TextInputDialog();
-        td.setTitle("Save to Dropbox");
-        td.setHeaderText("Enter filename:");
-        Optional<String> fileName = td.showAndWait();
-        if (fileName.isPresent()) {
-            dbc.uploadFile(fileName, saveToJson());
+        if (!code.isPresent()) {
+            return false;
         }
+        dropbox.logIn(code);
+        return dropbox.isLoggedIn();
     }
 
     /**
-     * Imports a list to the app.
+     * Replaces the list with imported lists, loaded in the background. The files are
+     * parsed in parallel and their items are added in the order the files were chosen.
+     * The list is only cleared when the import is started, so it is left as it was
+     * if another task is still running.
      * 
-     * @param file file to import
+     * @param files files to import
      */
-    private void importList(File file) {
-        JsonUtil jutil = new JsonUtil();
-        ArrayList<JsonObject> jsons = jutil.readJson(file);
-
-        for(JsonObject jo : jsons) {
-            Item newItem = new Item();
-            Map<String, Object> jsonMap = jo.getMap();
-            Set keys = jsonMap.keySet();
-            for (Object key : keys) {
-                if (key.equals("item")) {
-                    newItem.setItem(jsonMap.get(key).toString());
-                } else {
-                    newItem.setAmount(Integer.parseInt(jsonMap.get(key).toString()));
-                }
+    private void importList(List<File> files) {
+        if (!isTaskRunning()) {
+            batcher.clear();
+        }
+        runTask(new ImportTask(files, batcher::addAll));
+    }
+
+    /**
+     * Saves the list as a binary snapshot in the background.
+     *
+     * @param file the file to save to
+     */
+    private void saveSnapshot(File file) {
+        List<Item> items = new ArrayList<>(list.getItems());
+        ListStore store = new BinaryListStore();
+        runTask(new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("Saving " + file.getName());
+                store.save(file, items);
+                updateMessage("Saved " + items.size() + " items");
+                return null;
             }
-            tableView.getItems().add(newItem);
+        });
+    }
+
+    /**
+     * Replaces the list with the content of a binary snapshot, loaded in the background.
+     *
+     * @param file the snapshot to open
+     */
+    private void openSnapshot(File file) {
+        ListStore store = new BinaryListStore();
+        Task<List<Item>> task = new Task<List<Item>>() {
+            @Override
+            protected List<Item> call() throws Exception {
+                updateMessage("Opening " + file.getName());
+                List<Item> items = store.load(file);
+                updateMessage("Opened " + items.size() + " items");
+                return items;
+            }
+        };
+        task.setOnSucceeded(e -> batcher.setAll(task.getValue()));
+        runTask(task);
+    }
+
+    /**
+     * Runs a task on a background thread and shows its progress in the status bar.
+     * Only one task runs at a time; if another one is running, the status bar says
+     * so for a few seconds and the task is not started.
+     *
+     * @param task the task to run
+     */
+    private void runTask(Task<?> task) {
+        if (isTaskRunning()) {
+            Task<?> running = currentTask;
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Wait for the previous task to finish!");
+            PauseTransition pause = new PauseTransition(Duration.seconds(3));
+            pause.setOnFinished(e -> {
+                if (currentTask == running) {
+                    statusLabel.textProperty().bind(running.messageProperty());
+                }
+            });
+            pause.play();
+            return;
         }
+        currentTask = task;
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        cancelButton.disableProperty().bind(task.runningProperty().not());
+        task.setOnFailed(e -> task.getException().printStackTrace());
+
+        Thread thread = new Thread(task, "shopping-list-task");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tells whether a background task is running, which keeps new tasks from starting.
+     *
+     * @return true if a task is running
+     */
+    private boolean isTaskRunning() {
+        return currentTask != null && currentTask.isRunning();
     }
 
     /**
@@ -259,28 +598,46 @@ public class App extends Application {
         saveJson.setOnAction(e -> {
             File selectedFile = fileChooser.showSaveDialog(window);
             if(selectedFile != null) {
-                JsonUtil jutil = new JsonUtil();
-                jutil.writeToJson(selectedFile, saveToJson());
+                runSave(new SaveTask(selectedFile, saveToJson(), digests));
             } else {
                 System.out.println("Choose a file!");
             }
         });
         MenuItem saveDropbox = new MenuItem("Save to Dropbox");
         saveDropbox.setOnAction(e -> saveToDropbox());
-        MenuItem importJson = new MenuItem("Import JSON file");
+        MenuItem syncDropbox = new MenuItem("Sync with Dropbox");
+        syncDropbox.setOnAction(e -> syncWithDropbox());
+        MenuItem importJson = new MenuItem("Import JSON files");
         importJson.setOnAction(e -> {
-            tableView.getItems().clear();
-            File fileToImport = fileChooser.showOpenDialog(window);
-            if(fileToImport != null) {
-                importList(fileToImport);
+            List<File> filesToImport = fileChooser.showOpenMultipleDialog(window);
+            if(filesToImport != null) {
+                importList(filesToImport);
+            } else {
+                System.out.println("Choose a file!");
+            }
+        });
+        MenuItem saveSnapshot = new MenuItem("Save snapshot");
+        saveSnapshot.setOnAction(e -> {
+            File selectedFile = fileChooser.showSaveDialog(window);
+            if(selectedFile != null) {
+                saveSnapshot(selectedFile);
+            } else {
+                System.out.println("Choose a file!");
+            }
+        });
+        MenuItem openSnapshot = new MenuItem("Open snapshot");
+        openSnapshot.setOnAction(e -> {
+            File selectedFile = fileChooser.showOpenDialog(window);
+            if(selectedFile != null) {
+                openSnapshot(selectedFile);
             } else {
                 System.out.println("Choose a file!");
             }
         });
         SeparatorMenuItem separator = new SeparatorMenuItem();
         MenuItem exit = new MenuItem("Exit");
-        exit.setOnAction(e -> System.exit(0));
-        file.getItems().addAll(saveJson, saveDropbox, importJson, separator, exit);
+        exit.setOnAction(e -> Platform.exit());
+        file.getItems().addAll(saveJson, saveDropbox, syncDropbox, importJson, saveSnapshot, openSnapshot, separator, exit);
 
         // About menu
         Menu help = new Menu("Help");
@@ -307,4 +664,39 @@ public class App extends Application {
         alert.showAndWait();
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Marks the list as changed and updates the summary whenever the shopping list
+     * changes, and filters the table again when a renamed item may have started or
+     * stopped matching the search.
+     */
+    private class ListObserver implements ShoppingList.Listener {
+        @Override
+        public void added(Item item) {
+            listChanged();
+        }
+
+        @Override
+        public void removed(Item item) {
+            listChanged();
+        }
+
+        @Override
+        public void changed(Item item) {
+            listChanged();
+        }
+
+        @Override
+        public void renamed(String oldName, Item item) {
+            listChanged();
+            if (filteredItems != null) {
+                filter();
+            }
+        }
+
+        @Override
+        public void replaced(List<Item> items) {
+            listChanged();
+        }
+    }
+}
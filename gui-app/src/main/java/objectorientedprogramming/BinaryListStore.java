@@ -0,0 +1,229 @@
+package objectorientedprogramming;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores shopping lists in a compact, versioned binary snapshot format.
+ * <p>
+ * The file starts with the magic bytes "SHPL" and a version byte. It is followed by
+ * a table of the distinct item names (count, then length and UTF-8 bytes of each name)
+ * and the items (count, then the name's table index plus one, 0 for no name, and the
+ * zigzag encoded amount). All counts, lengths and numbers are varints.
+ *
+ * @author Laura Kanerva.
+ */
+public class BinaryListStore implements ListStore {
+    private static final int MAGIC = 0x5348504C;
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    /**
+     * Saves the items as a binary snapshot.
+     *
+     * @param file the file to save to
+     * @param items the items of the list
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void save(File file, List<Item> items) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (Item item : items) {
+            String name = item.getItem();
+            if (name != null && !indexes.containsKey(name)) {
+                indexes.put(name, names.size());
+                names.add(name);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.put(VERSION);
+
+            putVarint(channel, buffer, names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                putVarint(channel, buffer, bytes.length);
+                int offset = 0;
+                while (offset < bytes.length) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+                    int n = Math.min(bytes.length - offset, buffer.remaining());
+                    buffer.put(bytes, offset, n);
+                    offset += n;
+                }
+            }
+
+            putVarint(channel, buffer, items.size());
+            for (Item item : items) {
+                String name = item.getItem();
+                putVarint(channel, buffer, name == null ? 0 : indexes.get(name) + 1);
+                int amount = item.getAmount();
+                putVarint(channel, buffer, (amount << 1) ^ (amount >> 31));
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Loads the items of a binary snapshot.
+     *
+     * @param file the file to load
+     * @return the items in the order they were saved
+     * @throws IOException if reading fails or the file is not a snapshot
+     */
+    @Override
+    public List<Item> load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            require(channel, buffer, 5);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a shopping list snapshot");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            int nameCount = getCount(channel, buffer, 1, "name count");
+            String[] names = new String[nameCount];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < nameCount; i++) {
+                int length = getCount(channel, buffer, 1, "name length");
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                int offset = 0;
+                while (offset < length) {
+                    require(channel, buffer, 1);
+                    int n = Math.min(length - offset, buffer.remaining());
+                    buffer.get(bytes, offset, n);
+                    offset += n;
+                }
+                names[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int itemCount = getCount(channel, buffer, 2, "item count");
+            List<Item> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                int nameIndex = getVarint(channel, buffer);
+                if (nameIndex < 0 || nameIndex > nameCount) {
+                    throw new IOException("Corrupted snapshot, name index " + nameIndex + " out of range");
+                }
+                int zigzag = getVarint(channel, buffer);
+                int amount = (zigzag >>> 1) ^ -(zigzag & 1);
+                items.add(new Item(amount, nameIndex == 0 ? null : names[nameIndex - 1]));
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Writes an unsigned varint, draining the buffer first if it might not fit.
+     *
+     * @param channel the file being written
+     * @param buffer the write buffer
+     * @param value the value, treated as unsigned
+     */
+    private static void putVarint(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < MAX_VARINT_LENGTH) {
+            drain(channel, buffer);
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param channel the file being read
+     * @param buffer the read buffer
+     * @return the value
+     */
+    private static int getVarint(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_LENGTH; shift += 7) {
+            require(channel, buffer, 1);
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted snapshot, varint too long");
+    }
+
+    /**
+     * Reads a count or a length and checks it against the bytes left in the file, so
+     * a corrupted snapshot cannot make the loader allocate more than the file holds.
+     *
+     * @param channel the file being read
+     * @param buffer the read buffer
+     * @param bytesEach fewest bytes one counted element takes in the file
+     * @param what what is being counted, for the error message
+     * @return the count
+     * @throws IOException if the count is negative or larger than the rest of the file
+     */
+    private static int getCount(FileChannel channel, ByteBuffer buffer, int bytesEach, String what)
+            throws IOException {
+        int count = getVarint(channel, buffer);
+        long remaining = channel.size() - channel.position() + buffer.remaining();
+        if (count < 0 || (long) count * bytesEach > remaining) {
+            throw new IOException("Corrupted snapshot, " + what + " " + (count & 0xFFFFFFFFL)
+                + " does not fit in the remaining " + remaining + " bytes");
+        }
+        return count;
+    }
+
+    /**
+     * Writes the content of the buffer to the file and clears the buffer.
+     *
+     * @param channel the file being written
+     * @param buffer the write buffer
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Makes sure the buffer has at least the given number of bytes to read.
+     *
+     * @param channel the file being read
+     * @param buffer the read buffer
+     * @param bytes number of bytes needed
+     */
+    private static void require(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,605 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+
+/**
+ * Autosave for the shopping list. Every change is appended to a journal file,
+ * which is written and synced to disk in batches on a background thread. When the
+ * journal grows long, it is compacted into a binary snapshot in the background.
+ * <p>
+ * Records refer to items by name, which is unique in a ShoppingList, so recording
+ * a change does not need the item's position. Changes are recorded on the
+ * JavaFX application thread. A change that cannot be written as a record is
+ * saved by compacting instead.
+ * <p>
+ * The directory holds snapshot-N.shl files, containing the list before journal N,
+ * and journal-N.log files. Recovery loads the newest snapshot and replays the
+ * journals from its generation onwards.
+ *
+ * @author Laura Kanerva.
+ */
+public class ChangeJournal implements Closeable, ShoppingList.Listener {
+    private static final byte PUT = 4;
+    private static final byte DELETE = 5;
+    private static final byte RENAME = 6;
+    private static final byte REPLACE = 7;
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final int COMPACT_THRESHOLD = 50000;
+
+    private final File directory;
+    private final Supplier<List<Item>> state;
+    private final ListStore snapshots = new BinaryListStore();
+    private final ScheduledExecutorService executor;
+    private final Object ioLock = new Object();
+
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordData = new DataOutputStream(record);
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private int generation;
+    private int records;
+    private volatile boolean compacting;
+    private volatile boolean closed;
+
+    /**
+     * Class constructor.
+     *
+     * @param directory the directory for the journal and snapshot files
+     * @param state returns the current list, called on the JavaFX application thread when compacting
+     */
+    public ChangeJournal(File directory, Supplier<List<Item>> state) {
+        this.directory = directory;
+        this.state = state;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shopping-list-autosave");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Restores the list saved by earlier runs and starts journaling. Must be called before recording changes.
+     *
+     * @return the recovered items
+     * @throws IOException if the saved files cannot be read
+     */
+    public List<Item> recover() throws IOException {
+        Files.createDirectories(directory.toPath());
+        int snapshotGeneration = -1;
+        int lastGeneration = 0;
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            int g = generationOf(file, "snapshot-", ".shl");
+            snapshotGeneration = Math.max(snapshotGeneration, g);
+            lastGeneration = Math.max(lastGeneration, Math.max(g, generationOf(file, "journal-", ".log")));
+        }
+
+        ReplayList items = new ReplayList();
+        if (snapshotGeneration >= 0) {
+            for (Item item : snapshots.load(snapshotFile(snapshotGeneration))) {
+                items.put(item.getItem(), item.getAmount());
+            }
+        }
+        int first = Math.max(snapshotGeneration, 0);
+        for (int g = first; g <= lastGeneration; g++) {
+            File journal = journalFile(g);
+            if (journal.exists()) {
+                long valid = replay(journal, items);
+                if (valid < journal.length()) {
+                    try (FileChannel fc = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE)) {
+                        fc.truncate(valid);
+                    }
+                }
+            }
+        }
+        deleteBefore(first);
+
+        generation = lastGeneration;
+        channel = openJournal(generation);
+        executor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return items.toList();
+    }
+
+    /**
+     * Records an item added to the list.
+     *
+     * @param item the item
+     */
+    @Override
+    public void added(Item item) {
+        put(item);
+    }
+
+    /**
+     * Records an item removed from the list.
+     *
+     * @param item the item
+     */
+    @Override
+    public void removed(Item item) {
+        append(out -> {
+            out.writeByte(DELETE);
+            writeName(out, item.getItem());
+        });
+    }
+
+    /**
+     * Records a new amount of an item.
+     *
+     * @param item the item with its new amount
+     */
+    @Override
+    public void changed(Item item) {
+        put(item);
+    }
+
+    /**
+     * Records a renamed item.
+     *
+     * @param oldName the previous name
+     * @param item the item with its new name
+     */
+    @Override
+    public void renamed(String oldName, Item item) {
+        append(out -> {
+            out.writeByte(RENAME);
+            writeName(out, oldName);
+            writeName(out, item.getItem());
+        });
+    }
+
+    /**
+     * Records a replaced list and compacts it into a snapshot. The whole list is
+     * written to the current journal and synced before the next journal is
+     * started, so the replacement survives a crash before the snapshot is saved.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param items the new content of the list
+     */
+    @Override
+    public void replaced(List<Item> items) {
+        encode(out -> {
+            out.writeByte(REPLACE);
+            out.writeInt(items.size());
+            for (Item item : items) {
+                writeName(out, item.getItem());
+                out.writeInt(item.getAmount());
+            }
+        });
+        compact(new ArrayList<>(items));
+    }
+
+    /**
+     * Writes the given list as a new snapshot in the background and starts a new
+     * journal. The pending records are synced to the old journal first, and the old
+     * journal is only deleted once the snapshot is on disk.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param items a copy of the current list
+     */
+    public void compact(List<Item> items) {
+        if (closed) {
+            return;
+        }
+        int snapshotGeneration;
+        try {
+            byte[] bytes;
+            synchronized (this) {
+                bytes = drain();
+                records = 0;
+            }
+            synchronized (ioLock) {
+                writeToChannel(bytes);
+                channel.close();
+                generation++;
+                channel = openJournal(generation);
+                snapshotGeneration = generation;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            compacting = false;
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                File tempFile = new File(directory, "snapshot.tmp");
+                snapshots.save(tempFile, items);
+                try (FileChannel fc = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                    fc.force(true);
+                }
+                Files.move(tempFile.toPath(), snapshotFile(snapshotGeneration).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                deleteBefore(snapshotGeneration);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                compacting = false;
+            }
+        });
+    }
+
+    /**
+     * Writes the remaining changes to disk and stops the background thread.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (ioLock) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Appends a record that sets the amount of a name.
+     *
+     * @param item the item with its name and amount
+     */
+    private void put(Item item) {
+        append(out -> {
+            out.writeByte(PUT);
+            writeName(out, item.getItem());
+            out.writeInt(item.getAmount());
+        });
+    }
+
+    /**
+     * Appends a record. If the record cannot be encoded, the current list is
+     * saved as a snapshot instead, so the change is not lost.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param encoder writes the record
+     */
+    private void append(Encoder encoder) {
+        if (!encode(encoder)) {
+            compact(new ArrayList<>(state.get()));
+        }
+    }
+
+    /**
+     * Encodes a record and adds it to the pending records. The record is encoded
+     * into a buffer of its own first, so a record that fails halfway, such as one
+     * with a name too long for writeUTF, never reaches the journal and cannot
+     * make the records after it unreadable.
+     *
+     * @param encoder writes the record
+     * @return false if the record could not be encoded
+     */
+    private synchronized boolean encode(Encoder encoder) {
+        record.reset();
+        try {
+            encoder.encode(recordData);
+            // writing from one byte array stream to another cannot fail
+            record.writeTo(pending);
+        } catch (IOException e) {
+            System.err.println("Cannot journal a change, saving a snapshot instead: " + e);
+            return false;
+        }
+        records++;
+        return true;
+    }
+
+    /**
+     * Writes an item name, which may be null.
+     *
+     * @param out where the record is encoded
+     * @param name the name
+     */
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        out.writeBoolean(name != null);
+        if (name != null) {
+            out.writeUTF(name);
+        }
+    }
+
+    /**
+     * Writes the pending records to the journal and syncs it to disk. Starts a
+     * compaction when the journal has grown too long.
+     */
+    private void flush() {
+        byte[] bytes;
+        boolean compact;
+        synchronized (this) {
+            bytes = drain();
+            compact = records >= COMPACT_THRESHOLD && !compacting && !closed;
+            if (compact) {
+                compacting = true;
+            }
+        }
+        try {
+            synchronized (ioLock) {
+                if (channel != null && channel.isOpen()) {
+                    writeToChannel(bytes);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (compact) {
+            Platform.runLater(() -> compact(new ArrayList<>(state.get())));
+        }
+    }
+
+    /**
+     * Takes the pending records out of the buffer. Must hold the lock of this object.
+     *
+     * @return the pending records
+     */
+    private byte[] drain() {
+        byte[] bytes = pending.toByteArray();
+        pending.reset();
+        return bytes;
+    }
+
+    /**
+     * Appends bytes to the journal and syncs it. Must hold the io lock.
+     *
+     * @param bytes the records to write
+     */
+    private void writeToChannel(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Applies the records of a journal to a list. A record cut short by a crash ends the replay.
+     *
+     * @param journal the journal file
+     * @param items the list to change
+     * @return length of the complete records in bytes
+     */
+    private static long replay(File journal, ReplayList items) throws IOException {
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long valid = 0;
+        try {
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                if (op == PUT) {
+                    String name = readName(in);
+                    items.put(name, in.readInt());
+                } else if (op == DELETE) {
+                    items.delete(readName(in));
+                } else if (op == RENAME) {
+                    String oldName = readName(in);
+                    items.rename(oldName, readName(in));
+                } else if (op == REPLACE) {
+                    int count = in.readInt();
+                    ReplayList replacement = new ReplayList();
+                    for (int i = 0; i < count; i++) {
+                        String name = readName(in);
+                        replacement.put(name, in.readInt());
+                    }
+                    items.replaceWith(replacement);
+                } else {
+                    break;
+                }
+                valid = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            System.err.println("Ignoring incomplete record at the end of " + journal);
+        }
+        return valid;
+    }
+
+    /**
+     * Reads an item name written by writeName.
+     *
+     * @param in the journal
+     * @return the name, or null
+     */
+    private static String readName(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Opens a journal for appending.
+     *
+     * @param g generation of the journal
+     * @return the open journal
+     */
+    private FileChannel openJournal(int g) throws IOException {
+        return FileChannel.open(journalFile(g).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Deletes snapshots and journals older than the given generation.
+     *
+     * @param g the oldest generation to keep
+     */
+    private void deleteBefore(int g) {
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            int fileGeneration = Math.max(generationOf(file, "snapshot-", ".shl"),
+                generationOf(file, "journal-", ".log"));
+            if (fileGeneration >= 0 && fileGeneration < g) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot file of a generation.
+     *
+     * @param g the generation
+     * @return the snapshot file
+     */
+    private File snapshotFile(int g) {
+        return new File(directory, "snapshot-" + g + ".shl");
+    }
+
+    /**
+     * Returns the journal file of a generation.
+     *
+     * @param g the generation
+     * @return the journal file
+     */
+    private File journalFile(int g) {
+        return new File(directory, "journal-" + g + ".log");
+    }
+
+    /**
+     * Parses the generation from a file name.
+     *
+     * @param file the file
+     * @param prefix start of the file name
+     * @param suffix end of the file name
+     * @return the generation, or -1 if the name does not match
+     */
+    private static int generationOf(File file, String prefix, String suffix) {
+        String name = file.getName();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes one journal record.
+     */
+    private interface Encoder {
+        /**
+         * Writes the record.
+         *
+         * @param out where the record is encoded
+         * @throws IOException if the record cannot be encoded
+         */
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The list being recovered. Items are found by name like in ShoppingList, and
+     * removed items are only marked, so replaying a journal takes linear time.
+     */
+    private static class ReplayList {
+        private final List<Item> order = new ArrayList<>();
+        private final Map<String, Item> index = new HashMap<>();
+        private final Set<Item> deleted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Sets the amount of a name, adding it to the end if it is not on the list.
+         *
+         * @param name the name
+         * @param amount the amount
+         */
+        void put(String name, int amount) {
+            Item item = index.get(ShoppingList.normalize(name));
+            if (item == null) {
+                item = new Item(amount, name);
+                index.put(ShoppingList.normalize(name), item);
+                order.add(item);
+            } else {
+                item.setAmount(amount);
+            }
+        }
+
+        /**
+         * Removes a name.
+         *
+         * @param name the name
+         */
+        void delete(String name) {
+            Item item = index.remove(ShoppingList.normalize(name));
+            if (item != null) {
+                deleted.add(item);
+            }
+        }
+
+        /**
+         * Renames an item, merging it with an item that already has the new name.
+         *
+         * @param oldName the current name
+         * @param newName the new name
+         */
+        void rename(String oldName, String newName) {
+            Item item = index.get(ShoppingList.normalize(oldName));
+            if (item == null) {
+                return;
+            }
+            Item existing = index.get(ShoppingList.normalize(newName));
+            if (existing != null && existing != item) {
+                delete(oldName);
+                existing.setAmount(existing.getAmount() + item.getAmount());
+                return;
+            }
+            index.remove(ShoppingList.normalize(oldName));
+            item.setItem(newName);
+            index.put(ShoppingList.normalize(newName), item);
+        }
+
+        /**
+         * Replaces the content of this list with another's.
+         *
+         * @param other the new content
+         */
+        void replaceWith(ReplayList other) {
+            order.clear();
+            order.addAll(other.order);
+            index.clear();
+            index.putAll(other.index);
+            deleted.clear();
+            deleted.addAll(other.deleted);
+        }
+
+        /**
+         * Returns the recovered list.
+         *
+         * @return the items in list order
+         */
+        List<Item> toList() {
+            List<Item> list = new ArrayList<>(order.size() - deleted.size());
+            for (Item item : order) {
+                if (!deleted.contains(item)) {
+                    list.add(item);
+                }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package objectorientedprogramming;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.NetworkIOException;
+import com.dropbox.core.RetryException;
+import com.dropbox.core.ServerException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.UploadSessionCursor;
+import com.dropbox.core.v2.files.UploadSessionFinishErrorException;
+import com.dropbox.core.v2.files.UploadSessionLookupError;
+import com.dropbox.core.v2.files.UploadSessionLookupErrorException;
+import com.dropbox.core.v2.files.WriteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Uploads a shopping list to Dropbox while it is being serialized. The json is
+ * written into a fixed-size chunk buffer, and every full chunk is sent to a Dropbox
+ * upload session, so no temporary file is needed. Failed chunks are retried with
+ * exponential backoff, and when Dropbox reports a different offset than expected
+ * the upload resumes from the offset Dropbox has. Resuming counts as an attempt,
+ * so a server that keeps reporting a wrong offset cannot keep the upload going
+ * forever. An interrupted upload is never retried.
+ *
+ * @author Laura Kanerva.
+ */
+public class ChunkedUploader {
+    /** Default chunk size, Dropbox recommends multiples of 4 MB. */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final DbxClientV2 client;
+    private final int chunkSize;
+    private final int maxRetries;
+    private final long backoffMillis;
+
+    /**
+     * Class constructor with default chunk size, five retries and one second initial backoff.
+     *
+     * @param client the Dropbox client
+     */
+    public ChunkedUploader(DbxClientV2 client) {
+        this(client, DEFAULT_CHUNK_SIZE, 5, 1000);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param client the Dropbox client
+     * @param chunkSize bytes sent in one request
+     * @param maxRetries how many times a failed request is retried
+     * @param backoffMillis wait before the first retry, doubled for each further retry
+     */
+    public ChunkedUploader(DbxClientV2 client, int chunkSize, int maxRetries, long backoffMillis) {
+        this.client = client;
+        this.chunkSize = chunkSize;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Serializes the JSONObjects and uploads them, overwriting any existing file.
+     *
+     * @param path Dropbox path of the file
+     * @param jsons the objects to upload
+     * @return metadata of the uploaded file
+     * @throws DbxException if Dropbox rejects the upload or retries run out
+     * @throws IOException if serializing fails or the upload is interrupted
+     */
+    public FileMetadata upload(String path, JsonObject[] jsons) throws DbxException, IOException {
+        return upload(path, jsons, WriteMode.OVERWRITE);
+    }
+
+    /**
+     * Serializes the JSONObjects and uploads them.
+     *
+     * @param path Dropbox path of the file
+     * @param jsons the objects to upload
+     * @param mode what to do if the file already exists
+     * @return metadata of the uploaded file
+     * @throws DbxException if Dropbox rejects the upload or retries run out
+     * @throws IOException if serializing fails or the upload is interrupted
+     */
+    public FileMetadata upload(String path, JsonObject[] jsons, WriteMode mode) throws DbxException, IOException {
+        ChunkStream out = new ChunkStream();
+        try {
+            // not through JsonUtil, whose writeToJson metric would count network time as serializing
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.writeArray(jsons);
+            writer.flush();
+        } catch (UploadFailure e) {
+            throw e.cause;
+        }
+        return out.finish(CommitInfo.newBuilder(path).withMode(mode).build());
+    }
+
+    /**
+     * Output stream that sends every full chunk to an upload session.
+     */
+    private class ChunkStream extends OutputStream {
+        private final byte[] chunk = new byte[chunkSize];
+        private int length;
+        private String sessionId;
+        private long offset;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == chunk.length) {
+                sendChunk();
+            }
+            chunk[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == chunk.length) {
+                    sendChunk();
+                }
+                int n = Math.min(len, chunk.length - length);
+                System.arraycopy(b, off, chunk, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Sends the buffered chunk, starting the session with the first one.
+         */
+        private void sendChunk() throws IOException {
+            try {
+                if (sessionId == null) {
+                    startSession();
+                } else {
+                    appendChunk();
+                }
+            } catch (DbxException e) {
+                throw new UploadFailure(e);
+            }
+            offset += length;
+            length = 0;
+        }
+
+        /**
+         * Starts an upload session with the first chunk.
+         */
+        private void startSession() throws DbxException, IOException {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    sessionId = client.files().uploadSessionStart()
+                        .uploadAndFinish(new ByteArrayInputStream(chunk, 0, length), length)
+                        .getSessionId();
+                    return;
+                } catch (DbxException | IOException e) {
+                    retryOrThrow(e, attempt);
+                }
+            }
+        }
+
+        /**
+         * Appends the chunk to the session, resuming from the offset Dropbox reports.
+         */
+        private void appendChunk() throws DbxException, IOException {
+            int skip = 0;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    client.files().uploadSessionAppendV2(new UploadSessionCursor(sessionId, offset + skip))
+                        .uploadAndFinish(new ByteArrayInputStream(chunk, skip, length - skip), length - skip);
+                    return;
+                } catch (UploadSessionLookupErrorException e) {
+                    skip = resumeFrom(e.errorValue, e);
+                    if (skip == length) {
+                        return;
+                    }
+                    resumeOrThrow(e, attempt);
+                } catch (DbxException | IOException e) {
+                    retryOrThrow(e, attempt);
+                }
+            }
+        }
+
+        /**
+         * Sends the last chunk and commits the file.
+         *
+         * @param commit where and how to save the file
+         * @return metadata of the uploaded file
+         */
+        private FileMetadata finish(CommitInfo commit) throws DbxException, IOException {
+            if (sessionId == null) {
+                for (int attempt = 0; ; attempt++) {
+                    try {
+                        return client.files().uploadBuilder(commit.getPath()).withMode(commit.getMode())
+                            .uploadAndFinish(new ByteArrayInputStream(chunk, 0, length), length);
+                    } catch (DbxException | IOException e) {
+                        retryOrThrow(e, attempt);
+                    }
+                }
+            }
+            int skip = 0;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return client.files().uploadSessionFinish(new UploadSessionCursor(sessionId, offset + skip), commit)
+                        .uploadAndFinish(new ByteArrayInputStream(chunk, skip, length - skip), length - skip);
+                } catch (UploadSessionFinishErrorException e) {
+                    if (!e.errorValue.isLookupFailed()) {
+                        throw e;
+                    }
+                    skip = resumeFrom(e.errorValue.getLookupFailedValue(), e);
+                    resumeOrThrow(e, attempt);
+                } catch (DbxException | IOException e) {
+                    retryOrThrow(e, attempt);
+                }
+            }
+        }
+
+        /**
+         * Works out where to continue when Dropbox has a different offset than expected.
+         *
+         * @param error the lookup error
+         * @param e the exception carrying the error
+         * @return bytes of the current chunk Dropbox already has
+         */
+        private int resumeFrom(UploadSessionLookupError error, DbxException e) throws DbxException {
+            if (!error.isIncorrectOffset()) {
+                throw e;
+            }
+            long correct = error.getIncorrectOffsetValue().getCorrectOffset();
+            if (correct < offset || correct > offset + length) {
+                throw e;
+            }
+            return (int) (correct - offset);
+        }
+    }
+
+    /**
+     * Rethrows a wrong offset error if retries have run out. Resuming needs no wait,
+     * Dropbox has already told where to continue.
+     *
+     * @param e the error of the failed attempt
+     * @param attempt number of the failed attempt, starting from 0
+     */
+    private void resumeOrThrow(DbxException e, int attempt) throws DbxException {
+        if (attempt >= maxRetries) {
+            throw e;
+        }
+    }
+
+    /**
+     * Waits before the next attempt, or rethrows if the error is permanent, the
+     * upload was interrupted or retries have run out.
+     *
+     * @param e the error of the failed attempt
+     * @param attempt number of the failed attempt, starting from 0
+     */
+    private void retryOrThrow(Exception e, int attempt) throws DbxException, IOException {
+        boolean transientError = e instanceof RetryException || e instanceof NetworkIOException
+            || e instanceof ServerException || e instanceof IOException;
+        if (!transientError || isInterruption(e) || attempt >= maxRetries) {
+            if (e instanceof DbxException) {
+                throw (DbxException) e;
+            }
+            throw (IOException) e;
+        }
+        long wait = backoffMillis << attempt;
+        if (e instanceof RetryException) {
+            wait = Math.max(wait, ((RetryException) e).getBackoffMillis());
+        }
+        System.err.println("Upload failed, retrying in " + wait + " ms: " + e.getMessage());
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        }
+    }
+
+    /**
+     * Tells whether an error means the uploading thread was interrupted. The Dropbox
+     * client wraps the InterruptedIOException of the request in a NetworkIOException.
+     * A socket timeout is also an InterruptedIOException but is worth retrying.
+     *
+     * @param e the error of the failed attempt
+     * @return true if the upload should stop
+     */
+    private static boolean isInterruption(Exception e) {
+        Throwable cause = e instanceof NetworkIOException ? e.getCause() : e;
+        return Thread.currentThread().isInterrupted() || cause instanceof ClosedByInterruptException
+            || cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException);
+    }
+
+    /**
+     * Carries a Dropbox error through the OutputStream interface of the serializer.
+     */
+    private static class UploadFailure extends IOException {
+        private final DbxException cause;
+
+        UploadFailure(DbxException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+}
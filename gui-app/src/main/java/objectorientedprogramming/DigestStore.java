@@ -0,0 +1,141 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers the content hash of the list last saved to each target, so saving a
+ * list that has not changed can be skipped. Local files are stored with their
+ * length and modification time, and a file changed by someone else is never
+ * treated as up to date. Dropbox files are stored with the content_hash Dropbox
+ * reported for them.
+ * <p>
+ * The digests are kept in a properties file that is rewritten on every change.
+ *
+ * @author Laura Kanerva.
+ */
+public class DigestStore {
+    private static final String FILE_PREFIX = "file:";
+    private static final String REMOTE_PREFIX = "dropbox:";
+
+    private final File file;
+    private final Properties digests = new Properties();
+
+    /**
+     * Class constructor, loads the digests saved earlier.
+     *
+     * @param file the properties file
+     */
+    public DigestStore(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                digests.load(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Tells whether a local file may hold a list saved by this app. Only then is
+     * it worth hashing the list to compare.
+     *
+     * @param target the local file
+     * @return true if the file has the length and modification time recorded when it was saved
+     */
+    public synchronized boolean isUnchanged(File target) {
+        String[] fields = fields(target);
+        return fields != null && target.exists()
+            && Long.parseLong(fields[1]) == target.length()
+            && Long.parseLong(fields[2]) == target.lastModified();
+    }
+
+    /**
+     * Tells whether a local file already holds a list with the given hash.
+     *
+     * @param target the local file
+     * @param digest content hash of the list
+     * @return true if saving the list would not change the file
+     */
+    public synchronized boolean isCurrent(File target, String digest) {
+        return isUnchanged(target) && fields(target)[0].equals(digest);
+    }
+
+    /**
+     * Records that a list was saved to a local file.
+     *
+     * @param target the local file
+     * @param digest content hash of the list
+     */
+    public synchronized void saved(File target, String digest) {
+        digests.setProperty(FILE_PREFIX + target.getAbsolutePath(),
+            digest + " " + target.length() + " " + target.lastModified());
+        store();
+    }
+
+    /**
+     * Tells whether a Dropbox file already holds a list with the given hash.
+     *
+     * @param path the Dropbox path
+     * @param digest content hash of the list
+     * @return true if uploading the list would not change the file
+     */
+    public synchronized boolean isUploaded(String path, String digest) {
+        return digest.equals(digests.getProperty(REMOTE_PREFIX + path));
+    }
+
+    /**
+     * Records that a list was uploaded to Dropbox.
+     *
+     * @param path the Dropbox path
+     * @param digest content hash of the uploaded file
+     */
+    public synchronized void uploaded(String path, String digest) {
+        digests.setProperty(REMOTE_PREFIX + path, digest);
+        store();
+    }
+
+    /**
+     * Forgets all Dropbox files, for example when the user logs out.
+     */
+    public synchronized void clearUploaded() {
+        digests.keySet().removeIf(key -> ((String) key).startsWith(REMOTE_PREFIX));
+        store();
+    }
+
+    /**
+     * Returns the recorded digest, length and modification time of a local file.
+     *
+     * @param target the local file
+     * @return the fields, or null if the file has not been saved
+     */
+    private String[] fields(File target) {
+        String value = digests.getProperty(FILE_PREFIX + target.getAbsolutePath());
+        return value == null ? null : value.split(" ");
+    }
+
+    /**
+     * Writes the digests to the properties file, replacing it atomically.
+     */
+    private void store() {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                digests.store(out, "Content hashes of saved shopping lists");
+            }
+            Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
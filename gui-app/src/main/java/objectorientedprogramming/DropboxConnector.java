@@ -1,50 +1,101 @@
 package objectorientedprogramming;
 
 import com.dropbox.core.*;
+import com.dropbox.core.json.JsonReader;
+import com.dropbox.core.oauth.DbxCredential;
 import com.dropbox.core.v2.DbxClientV2;
 import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.GetMetadataErrorException;
+import com.dropbox.core.v2.files.Metadata;
 
 import java.io.*;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class creates a connection between the app and Dropbox.
+ * <p>
+ * One connector is meant to live as long as the app. The credential is saved to a
+ * file after the first login and refreshed by the client when it expires, and the
+ * same client, and so the same HTTP connections, is used for every upload. The
+ * content hash of uploaded files is remembered, so saving an unchanged list again
+ * only costs computing its content hash and asking Dropbox for the hash of the
+ * file, which tells whether someone else has changed it since. Lists edited on
+ * several machines are kept in step with sync, which merges instead of
+ * overwriting.
  *
  * @author Laura Kanerva.
  */
 public class DropboxConnector {
-    private String accessToken;
-    private File dbxTempFolder;
-    private DbxClientV2 client;
+    private static final String APP_KEY = "xyz";
+    private static final String APP_SECRET = "zyx";
+    private static final Metrics.Operation UPLOAD_FILE = Metrics.operation("uploadFile");
+
+    private final DbxRequestConfig config = new DbxRequestConfig("Shopping-list");
+    private final Map<String, FileMetadata> uploaded = new ConcurrentHashMap<>();
+    private File credentialFile;
+    private DigestStore digests;
+    private File syncDirectory = new File(System.getProperty("user.home"), ".shoppinglist/sync");
+    private volatile DbxClientV2 client;
     private DbxWebAuth webAuth;
 
     /**
-     * Class constructor, initializes temporary folder for files to be uploaded to Dropbox.
+     * Class constructor, the user has to log in before uploading.
      */
     public DropboxConnector() {
-        try {
-            dbxTempFolder = Files.createTempDirectory("shoppingListTemp").toFile();
-            System.out.println(dbxTempFolder.getAbsolutePath());
-            dbxTempFolder.deleteOnExit();
-        } catch (IOException e) {
-            e.printStackTrace();
+
+    }
+
+    /**
+     * Class constructor that restores the credential saved by an earlier login.
+     *
+     * @param credentialFile file where the credential is kept between runs
+     * @param digests content hashes of earlier uploads, kept between runs
+     */
+    public DropboxConnector(File credentialFile, DigestStore digests) {
+        this.credentialFile = credentialFile;
+        this.digests = digests;
+        this.syncDirectory = new File(credentialFile.getAbsoluteFile().getParentFile(), "sync");
+        if (credentialFile.exists()) {
+            try {
+                createClient(DbxCredential.Reader.readFromFile(credentialFile));
+            } catch (JsonReader.FileLoadException e) {
+                System.err.println("Ignoring unreadable Dropbox credential: " + e.getMessage());
+            }
         }
     }
 
+    /**
+     * Class constructor for an already authorized client.
+     *
+     * @param client the Dropbox client to upload with
+     */
+    public DropboxConnector(DbxClientV2 client) {
+        this.client = client;
+    }
+
+    /**
+     * Tells whether there is a client to upload with.
+     *
+     * @return true if the user has logged in
+     */
+    public boolean isLoggedIn() {
+        return client != null;
+    }
+
     /**
      * Authorizes user credentials.
      *
      * @return a URL where users get their authorization keys
      */
     public String authorizeUser() {
-        String appKey = "xyz";
-        String appSecret = "zyx";
-        DbxAppInfo appInfo = new DbxAppInfo(appKey, appSecret);
-        DbxRequestConfig requestConfig = new DbxRequestConfig("Shopping-list");
-        webAuth = new DbxWebAuth(requestConfig, appInfo);
+        DbxAppInfo appInfo = new DbxAppInfo(APP_KEY, APP_SECRET);
+        webAuth = new DbxWebAuth(config, appInfo);
         DbxWebAuth.Request webAuthRequest = DbxWebAuth.newRequestBuilder()
             .withNoRedirect()
+            .withTokenAccessType(TokenAccessType.OFFLINE)
             .build();
         return webAuth.authorize(webAuthRequest);
     }
@@ -72,42 +123,155 @@ public class DropboxConnector {
         System.out.println("Authorization complete.");
         System.out.println("- User ID: " + authFinish.getUserId());
         System.out.println("- Account ID: " + authFinish.getAccountId());
-        System.out.println("- Access Token: " + authFinish.getAccessToken());
 
-        accessToken = authFinish.getAccessToken();
-        createClient();
+        DbxCredential credential = new DbxCredential(authFinish.getAccessToken(), authFinish.getExpiresAt(),
+            authFinish.getRefreshToken(), APP_KEY, APP_SECRET);
+        createClient(credential);
+        saveCredential(credential);
     }
 
     /**
-     * Connects to Dropbox and creates a Dropbox client.
+     * Forgets the credential, so the user has to log in again.
      */
-    private void createClient() {
-        DbxRequestConfig config = new DbxRequestConfig("Shopping-list");
-        client = new DbxClientV2(config, accessToken);
+    public void logOut() {
+        client = null;
+        uploaded.clear();
+        if (digests != null) {
+            digests.clearUploaded();
+        }
+        if (credentialFile != null) {
+            credentialFile.delete();
+        }
     }
 
     /**
-     * Creates a temporary file for JSONObjects and uploads the file to Dropbox.
+     * Uploads the JSONObjects to Dropbox in chunks while they are serialized.
+     * Nothing is uploaded if this connector uploaded the same content before and
+     * the Dropbox file still has that content, which costs one metadata request.
+     * Blocks until the upload is done, so it should not be called on the JavaFX application thread.
      *
      * @param file the filename
      * @param jsons the JSONObjects to be uploaded
+     * @return true if the file was uploaded, false if it was unchanged
+     * @throws DbxException if Dropbox rejects the upload
+     * @throws IOException if the upload fails or is interrupted
      */
-    public void uploadFile(Optional<String> file, JsonObject[] jsons) {
-        String fileName = file.get();
-        File tempFile = new File(dbxTempFolder, fileName);
-        tempFile.deleteOnExit();
+    public boolean uploadFile(Optional<String> file, JsonObject[] jsons) throws DbxException, IOException {
+        long start = Metrics.start();
+        String path = "/" + file.get();
+        String digest = ContentHash.of(jsons);
+        FileMetadata previous = uploaded.get(path);
+        boolean uploadedBefore = previous != null ? digest.equals(previous.getContentHash())
+            : digests != null && digests.isUploaded(path, digest);
+        FileMetadata metadata;
+        try {
+            // another machine or the web may have changed the file since
+            if (uploadedBefore && digest.equals(remoteContentHash(path))) {
+                UPLOAD_FILE.record(start, 0, jsons.length);
+                return false;
+            }
+            metadata = new ChunkedUploader(client).upload(path, jsons);
+            uploaded.put(path, metadata);
+            if (digests != null) {
+                digests.uploaded(path, metadata.getContentHash() != null ? metadata.getContentHash() : digest);
+            }
+        } catch (InvalidAccessTokenException e) {
+            logOut();
+            UPLOAD_FILE.failed(start);
+            throw e;
+        } catch (DbxException | IOException e) {
+            UPLOAD_FILE.failed(start);
+            throw e;
+        }
+        UPLOAD_FILE.record(start, metadata.getSize(), jsons.length);
+        return true;
+    }
 
+    /**
+     * Returns the content hash of a file as it is on Dropbox now.
+     *
+     * @param path Dropbox path of the file
+     * @return the content hash, or null if there is no file
+     * @throws DbxException if Dropbox fails
+     */
+    private String remoteContentHash(String path) throws DbxException {
         try {
-            JsonUtil jutil = new JsonUtil();
-            jutil.writeToJson(tempFile, jsons);
-        } catch (Exception e) {
-            e.printStackTrace();
+            Metadata metadata = client.files().getMetadata(path);
+            return metadata instanceof FileMetadata ? ((FileMetadata) metadata).getContentHash() : null;
+        } catch (GetMetadataErrorException e) {
+            if (e.errorValue.isPath() && e.errorValue.getPathValue().isNotFound()) {
+                return null;
+            }
+            throw e;
         }
+    }
 
-        try (InputStream in = new FileInputStream(tempFile)) {
-            FileMetadata metadata = client.files().uploadBuilder("/" + fileName)
-                .uploadAndFinish(in);
-        } catch (DbxException | IOException e) {
+    /**
+     * Merges the list with the Dropbox file and uploads the result.
+     * Blocks until the sync is done, so it should not be called on the JavaFX application thread.
+     *
+     * @param file the filename
+     * @param items the local list
+     * @return the merged list
+     * @throws DbxException if Dropbox fails
+     * @throws IOException if the sync fails or is interrupted
+     */
+    public List<Item> sync(Optional<String> file, List<Item> items) throws DbxException, IOException {
+        String path = "/" + file.get();
+        List<Item> merged;
+        try {
+            merged = new SyncEngine(client, syncDirectory).sync(path, items);
+        } catch (InvalidAccessTokenException e) {
+            logOut();
+            throw e;
+        }
+        uploaded.remove(path);
+        if (digests != null) {
+            JsonObject[] jsons = new JsonObject[merged.size()];
+            for (int i = 0; i < jsons.length; i++) {
+                jsons[i] = JsonListStore.toJson(merged.get(i));
+            }
+            digests.uploaded(path, ContentHash.of(jsons));
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the metadata of a file uploaded by this connector.
+     *
+     * @param file the filename
+     * @return metadata of the last upload, or null if the file has not been uploaded
+     */
+    public FileMetadata getMetadata(String file) {
+        return uploaded.get("/" + file);
+    }
+
+    /**
+     * Connects to Dropbox and creates a Dropbox client. A credential with a refresh
+     * token is refreshed by the client when it expires.
+     *
+     * @param credential the credential
+     */
+    private void createClient(DbxCredential credential) {
+        client = new DbxClientV2(config, credential);
+    }
+
+    /**
+     * Writes the credential to the credential file, readable only by the user.
+     *
+     * @param credential the credential
+     */
+    private void saveCredential(DbxCredential credential) {
+        if (credentialFile == null) {
+            return;
+        }
+        try {
+            credentialFile.getParentFile().mkdirs();
+            credentialFile.createNewFile();
+            credentialFile.setReadable(false, false);
+            credentialFile.setReadable(true, true);
+            DbxCredential.Writer.writeToFile(credential, credentialFile);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
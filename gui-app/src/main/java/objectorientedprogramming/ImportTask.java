@@ -0,0 +1,201 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javafx.concurrent.Task;
+
+/**
+ * Background task that imports shopping lists from json files. The files are
+ * parsed in parallel and the items are handed to the sink in batches while each
+ * file is parsed, in the order of the files: batches of the first file that is
+ * not finished go to the sink at once, and batches of the files after it wait
+ * until it is.
+ * <p>
+ * A file that cannot be read does not stop the others. Items read from it
+ * before the error are kept, and the message of the finished task names every
+ * file that failed and why.
+ *
+ * @author Laura Kanerva.
+ */
+public class ImportTask extends Task<Integer> {
+    private static final int BATCH_SIZE = 1000;
+    private static final int PROGRESS_INTERVAL = 1024;
+    private static final Metrics.Operation IMPORT_LIST = Metrics.operation("importList");
+
+    private final List<File> files = new ArrayList<>();
+    private final Map<File, Integer> positions = new IdentityHashMap<>();
+    private final Consumer<List<Item>> sink;
+    private final AtomicLong charsRead = new AtomicLong();
+    private long totalLength;
+
+    private final List<List<List<Item>>> waiting = new ArrayList<>();
+    private final boolean[] finished;
+    private final String[] failures;
+    private int next;
+    private int count;
+
+    /**
+     * Class constructor.
+     *
+     * @param files the files to import
+     * @param sink receives batches of items on the task's threads, so it must be thread-safe
+     */
+    public ImportTask(List<File> files, Consumer<List<Item>> sink) {
+        // copies, so that a file chosen twice still has a File object of its own for each position
+        for (File file : files) {
+            File copy = new File(file.getPath());
+            positions.put(copy, this.files.size());
+            this.files.add(copy);
+            waiting.add(new ArrayList<>());
+        }
+        this.sink = sink;
+        finished = new boolean[files.size()];
+        failures = new String[files.size()];
+    }
+
+    /**
+     * Parses the files and pushes their items to the sink.
+     *
+     * @return number of imported items
+     * @throws Exception if the import is interrupted
+     */
+    @Override
+    protected Integer call() throws Exception {
+        long start = Metrics.start();
+        for (File file : files) {
+            totalLength += file.length();
+        }
+        updateMessage("Reading " + files.size() + " file(s)");
+
+        new JsonUtil().readAll(files, this::readItems, Runtime.getRuntime().availableProcessors(), this::failed);
+
+        int imported;
+        List<String> problems = new ArrayList<>();
+        synchronized (this) {
+            imported = count;
+            for (String failure : failures) {
+                if (failure != null) {
+                    problems.add(failure);
+                }
+            }
+        }
+        IMPORT_LIST.record(start, charsRead.get(), imported);
+        if (isCancelled()) {
+            return imported;
+        }
+        updateProgress(1, 1);
+        if (problems.isEmpty()) {
+            updateMessage("Imported " + imported + " items");
+        } else {
+            updateMessage("Imported " + imported + " items, " + problems.size() + " file(s) failed: "
+                + String.join("; ", problems));
+        }
+        return imported;
+    }
+
+    /**
+     * Reads the items of a json file, handing them on in batches as they are parsed.
+     *
+     * @param file the file
+     * @param reader parser positioned at the start of the file
+     * @return number of items read
+     * @throws IOException if the file is not a valid list, with the line and column of the error
+     */
+    private Integer readItems(File file, JsonReader reader) throws IOException {
+        int position = positions.get(file);
+        List<Item> batch = new ArrayList<>();
+        int read = 0;
+        long reported = 0;
+        try {
+            while (!isCancelled() && JsonBinder.nextObject(reader) != JsonToken.END_DOCUMENT) {
+                batch.add(JsonListStore.ITEM_BINDER.readMembers(reader));
+                read++;
+                if (batch.size() == BATCH_SIZE) {
+                    deliver(position, batch);
+                    batch = new ArrayList<>();
+                }
+                if (read % PROGRESS_INTERVAL == 0) {
+                    reported = reportProgress(reader, reported);
+                }
+            }
+            reportProgress(reader, reported);
+            return read;
+        } finally {
+            if (!batch.isEmpty()) {
+                deliver(position, batch);
+            }
+            finish(position);
+        }
+    }
+
+    /**
+     * Records a file that could not be opened or parsed.
+     *
+     * @param file the file
+     * @param e what went wrong
+     */
+    private synchronized void failed(File file, IOException e) {
+        int position = positions.get(file);
+        failures[position] = file.getName() + ": " + e.getMessage();
+        if (!finished[position]) {
+            // the file could not be opened, so readItems never ran for it
+            finish(position);
+        }
+    }
+
+    /**
+     * Hands a batch to the sink if every earlier file is finished, otherwise keeps
+     * it until they are.
+     *
+     * @param position position of the file the batch came from
+     * @param batch the items
+     */
+    private synchronized void deliver(int position, List<Item> batch) {
+        if (position == next) {
+            sink.accept(batch);
+            count += batch.size();
+        } else {
+            waiting.get(position).add(batch);
+        }
+    }
+
+    /**
+     * Marks a file finished, and hands on the kept batches of the files after it
+     * up to the next one that is still being parsed.
+     *
+     * @param position position of the file
+     */
+    private synchronized void finish(int position) {
+        finished[position] = true;
+        while (next < files.size() && finished[next]) {
+            next++;
+            if (next < files.size()) {
+                for (List<Item> batch : waiting.get(next)) {
+                    sink.accept(batch);
+                    count += batch.size();
+                }
+                waiting.set(next, null);
+            }
+        }
+    }
+
+    /**
+     * Adds the characters read since the last report to the task's progress.
+     *
+     * @param reader the parser of the file
+     * @param reported characters of this file already reported
+     * @return characters of this file reported after this call
+     */
+    private long reportProgress(JsonReader reader, long reported) {
+        long position = reader.getPosition();
+        long done = charsRead.addAndGet(position - reported);
+        updateProgress(Math.min(done, totalLength), Math.max(totalLength, 1));
+        return position;
+    }
+}
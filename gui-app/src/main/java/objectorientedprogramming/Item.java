@@ -1,13 +1,24 @@
 package objectorientedprogramming;
 
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
 /**
  * An item in the shopping list.
+ * <p>
+ * The table observes the amount and the name through properties, so changes show
+ * up without replacing the row. The properties are created only for the rows the
+ * table shows, and other items keep plain fields.
  *
  * @author Laura Kanerva.
  */
 public class Item {
     private int amount;
     private String item;
+    private IntegerProperty amountProperty;
+    private StringProperty itemProperty;
 
     /**
      * Empty class constructor
@@ -33,7 +44,7 @@ public class Item {
      * @return amount of items
      */
     public int getAmount() {
-        return amount;
+        return amountProperty == null ? amount : amountProperty.get();
     }
 
     /**
@@ -42,7 +53,23 @@ public class Item {
      * @param a amount of items
      */
     public void setAmount(int a) {
-        this.amount = a;
+        if (amountProperty == null) {
+            this.amount = a;
+        } else {
+            amountProperty.set(a);
+        }
+    }
+
+    /**
+     * Returns the amount as an observable property.
+     *
+     * @return the amount property
+     */
+    public IntegerProperty amountProperty() {
+        if (amountProperty == null) {
+            amountProperty = new SimpleIntegerProperty(this, "amount", amount);
+        }
+        return amountProperty;
     }
 
     /**
@@ -51,7 +78,7 @@ public class Item {
      * @return item to be returned
      */
     public String getItem() {
-        return item;
+        return itemProperty == null ? item : itemProperty.get();
     }
 
     /**
@@ -60,6 +87,22 @@ public class Item {
      * @param i item on the list
      */
     public void setItem(String i) {
-        this.item = i;
+        if (itemProperty == null) {
+            this.item = i;
+        } else {
+            itemProperty.set(i);
+        }
+    }
+
+    /**
+     * Returns the name as an observable property.
+     *
+     * @return the name property
+     */
+    public StringProperty itemProperty() {
+        if (itemProperty == null) {
+            itemProperty = new SimpleStringProperty(this, "item", item);
+        }
+        return itemProperty;
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javafx.application.Platform;
+
+/**
+ * Collects items added from any thread and adds them to the list with a single
+ * change per pulse of the JavaFX application thread. Table listeners and layout
+ * then run once per batch instead of once per row.
+ *
+ * @author Laura Kanerva.
+ */
+public class ItemBatcher {
+    private final ShoppingList target;
+    private List<Item> pending = new ArrayList<>();
+    private boolean scheduled;
+
+    /**
+     * Class constructor.
+     *
+     * @param target the list the items are added to
+     */
+    public ItemBatcher(ShoppingList target) {
+        this.target = target;
+    }
+
+    /**
+     * Queues items to be added to the list. Can be called from any thread.
+     *
+     * @param items the items to add
+     */
+    public void addAll(Collection<Item> items) {
+        synchronized (this) {
+            pending.addAll(items);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        Platform.runLater(this::flush);
+    }
+
+    /**
+     * Replaces the whole content of the list with one change, dropping any queued items.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param items the new content of the list
+     */
+    public void setAll(Collection<Item> items) {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        target.setAll(items);
+    }
+
+    /**
+     * Removes every item from the list, dropping any queued items.
+     * Must be called on the JavaFX application thread.
+     */
+    public void clear() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        target.clear();
+    }
+
+    /**
+     * Adds everything queued so far to the list as one change.
+     */
+    private void flush() {
+        List<Item> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            scheduled = false;
+        }
+        if (!batch.isEmpty()) {
+            target.addAll(batch);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Stores shopping lists as json arrays of item objects.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonListStore implements ListStore {
+    /**
+     * Reads item objects, ignoring members other than the name and the amount.
+     * Lists from other tools may write whole amounts as 2.0 or 2e0, which are
+     * accepted, but an amount like 1.5 is rejected with its line and column
+     * rather than changed.
+     */
+    public static final JsonBinder<Item> ITEM_BINDER = new JsonBinder<>(Item::new)
+        .bindString("item", Item::setItem)
+        .bindDouble("amount", JsonListStore::setAmount);
+
+    private final JsonUtil jutil = new JsonUtil();
+
+    /**
+     * Saves the items as a json array.
+     *
+     * @param file the file to save to
+     * @param items the items of the list
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void save(File file, List<Item> items) throws IOException {
+        try (JsonWriter writer = new JsonWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (Item item : items) {
+                writer.writeObject(toJson(item));
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Loads the items of a json array.
+     *
+     * @param file the file to load
+     * @return the items in file order
+     * @throws IOException if reading fails or the file is not valid json
+     */
+    @Override
+    public List<Item> load(File file) throws IOException {
+        try (JsonReader reader = jutil.createReader(file)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads the items of a json array.
+     *
+     * @param reader parser at the start of the array
+     * @return the items in document order
+     * @throws IOException if reading fails or the document is not a list of items
+     */
+    public static List<Item> read(JsonReader reader) throws IOException {
+        return ITEM_BINDER.readList(reader);
+    }
+
+    /**
+     * Creates the json form of an item.
+     *
+     * @param item the item
+     * @return JSONObject with the item's name and amount
+     */
+    public static JsonObject toJson(Item item) {
+        JsonObject jo = new JsonObject();
+        jo.add("item", item.getItem());
+        jo.add("amount", item.getAmount());
+        return jo;
+    }
+
+    /**
+     * Sets an amount read from json.
+     *
+     * @param item the item
+     * @param amount the amount
+     * @throws IllegalArgumentException if the amount is not a whole number or does not fit in an int
+     */
+    private static void setAmount(Item item, double amount) {
+        if (amount != Math.rint(amount)) {
+            throw new IllegalArgumentException(amount + " is not a whole number");
+        }
+        if (amount < Integer.MIN_VALUE || amount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("out of range");
+        }
+        item.setAmount((int) amount);
+    }
+
+    /**
+     * Reads the members of one json object straight into an item.
+     *
+     * @param reader parser positioned right after the object's opening brace
+     * @return the item read from the object
+     * @throws IOException if the object is not a valid item
+     */
+    public static Item readItem(JsonReader reader) throws IOException {
+        return ITEM_BINDER.readMembers(reader);
+    }
+}
@@ -1,12 +1,47 @@
 package objectorientedprogramming;
 
+import java.lang.management.ManagementFactory;
+
 /**
  * Class for launching the app.
+ * <p>
+ * With -Dshoppinglist.timing=true the time from starting the JVM to showing the
+ * window is printed. With -Dshoppinglist.exitAfterShown=true the app closes as
+ * soon as the window has been shown, which is how the build records the classes
+ * for the class data sharing archive. -Dshoppinglist.dataDirectory=DIR keeps the
+ * autosaved list and the Dropbox credential in DIR instead of ~/.shoppinglist.
  *
  * @author Laura Kanerva.
  */
 public class Launcher {
+    /** True if the startup time is printed. */
+    static final boolean TIMING = Boolean.getBoolean("shoppinglist.timing");
+    /** True if the app closes right after its window has been shown. */
+    static final boolean EXIT_AFTER_SHOWN = Boolean.getBoolean("shoppinglist.exitAfterShown");
+    /** Directory for the app's own files, or null for the default. */
+    static final String DATA_DIRECTORY = System.getProperty("shoppinglist.dataDirectory");
+
+    private static long mainStarted;
+
+    /**
+     * Starts the app.
+     *
+     * @param args an array of command-line arguments for the application
+     */
     public static void main(String [] args) {
+        mainStarted = System.currentTimeMillis();
         App.main(args);
     }
+
+    /**
+     * Prints how long it took to get from starting the JVM to main and from main
+     * to the window being shown.
+     */
+    static void windowShown() {
+        long now = System.currentTimeMillis();
+        long jvmStarted = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long started = mainStarted == 0 ? jvmStarted : mainStarted;
+        System.out.println("Startup: " + (started - jvmStarted) + " ms to main, "
+            + (now - started) + " ms to window, " + (now - jvmStarted) + " ms in total");
+    }
 }
@@ -0,0 +1,145 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Three-way merge of shopping lists. Items are matched by name, and the changes
+ * made on both sides since their common base are combined:
+ * <ul>
+ * <li>An item changed on one side only gets the changed amount.</li>
+ * <li>An item changed on both sides gets both changes, base + (local - base) + (remote - base).</li>
+ * <li>An item removed on one side is removed, unless the other side changed it.</li>
+ * <li>An item added on one side is added. If both sides added it, the larger amount wins.</li>
+ * </ul>
+ * Names are compared like ShoppingList compares them, and items with the same name
+ * in one list are treated as one item with their amounts added together. The
+ * merged list keeps the local order, followed by the items added remotely in
+ * remote order. The merge takes linear time.
+ *
+ * @author Laura Kanerva.
+ */
+public class ListMerge {
+
+    /**
+     * Merges two versions of a list.
+     *
+     * @param base the list both versions were made from
+     * @param local the local version
+     * @param remote the remote version
+     * @return the merged list, reusing the unchanged local items
+     */
+    public static List<Item> merge(List<Item> base, List<Item> local, List<Item> remote) {
+        Map<String, Slot> slots = new HashMap<>((base.size() + local.size() + remote.size()) * 2 / 3 + 1);
+        for (Item item : base) {
+            slot(slots, item).add(Slot.BASE, item.getAmount());
+        }
+        for (Item item : local) {
+            slot(slots, item).add(Slot.LOCAL, item.getAmount());
+        }
+        for (Item item : remote) {
+            slot(slots, item).add(Slot.REMOTE, item.getAmount());
+        }
+
+        List<Item> merged = new ArrayList<>(Math.max(local.size(), remote.size()));
+        for (Item item : local) {
+            addMerged(merged, slots.get(ShoppingList.normalize(item.getItem())), item);
+        }
+        for (Item item : remote) {
+            addMerged(merged, slots.get(ShoppingList.normalize(item.getItem())), item);
+        }
+        return merged;
+    }
+
+    /**
+     * Adds an item to the merged list the first time its name is seen.
+     *
+     * @param merged the merged list
+     * @param slot amounts of the item's name
+     * @param item the item, reused if its amount does not change
+     */
+    private static void addMerged(List<Item> merged, Slot slot, Item item) {
+        if (slot.merged) {
+            return;
+        }
+        slot.merged = true;
+        Integer amount = slot.mergeAmount();
+        if (amount != null) {
+            merged.add(amount == item.getAmount() ? item : new Item(amount, item.getItem()));
+        }
+    }
+
+    /**
+     * Returns the slot of an item's name, creating it if needed.
+     *
+     * @param slots slots by name
+     * @param item the item
+     * @return the slot
+     */
+    private static Slot slot(Map<String, Slot> slots, Item item) {
+        String key = ShoppingList.normalize(item.getItem());
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            slot = new Slot();
+            slots.put(key, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Amounts of one name in the three lists.
+     */
+    private static class Slot {
+        static final int BASE = 0;
+        static final int LOCAL = 1;
+        static final int REMOTE = 2;
+
+        final int[] amounts = new int[3];
+        int present;
+        boolean merged;
+
+        /**
+         * Adds an amount to one of the lists.
+         *
+         * @param list BASE, LOCAL or REMOTE
+         * @param amount the amount
+         */
+        void add(int list, int amount) {
+            amounts[list] += amount;
+            present |= 1 << list;
+        }
+
+        /**
+         * Tells whether the name is in a list.
+         *
+         * @param list BASE, LOCAL or REMOTE
+         * @return true if the name is in the list
+         */
+        boolean has(int list) {
+            return (present & (1 << list)) != 0;
+        }
+
+        /**
+         * Merges the amounts.
+         *
+         * @return the merged amount, or null if the item is removed
+         */
+        Integer mergeAmount() {
+            int base = amounts[BASE];
+            int local = amounts[LOCAL];
+            int remote = amounts[REMOTE];
+            if (!has(LOCAL)) {
+                return !has(REMOTE) || (has(BASE) && remote == base) ? null : remote;
+            }
+            if (!has(REMOTE)) {
+                return has(BASE) && local == base ? null : local;
+            }
+            if (!has(BASE)) {
+                return Math.max(local, remote);
+            }
+            return Math.max(0, local + remote - base);
+        }
+    }
+}
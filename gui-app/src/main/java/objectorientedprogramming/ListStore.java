@@ -0,0 +1,30 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persistence format for shopping lists.
+ *
+ * @author Laura Kanerva.
+ */
+public interface ListStore {
+    /**
+     * Saves the items to a file, replacing its content.
+     *
+     * @param file the file to save to
+     * @param items the items of the list
+     * @throws IOException if writing fails
+     */
+    void save(File file, List<Item> items) throws IOException;
+
+    /**
+     * Loads the items of a list from a file.
+     *
+     * @param file the file to load
+     * @return the items in the order they were saved
+     * @throws IOException if reading fails or the file is not in the right format
+     */
+    List<Item> load(File file) throws IOException;
+}
@@ -0,0 +1,221 @@
+package objectorientedprogramming;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Word prefix index over item names for searching the list. Every word of a name
+ * is a key of a sorted map, so the items with a word starting with a prefix are
+ * found from a range of the map without looking at the other items. A query
+ * matches an item when each word of the query is the start of some word of the
+ * item's name, ignoring case.
+ * <p>
+ * The index is updated one item at a time as the list changes. The set returned
+ * by the last search is kept up to date as well, so it can be used as the filter
+ * of the table while items are added, renamed and removed.
+ *
+ * @author Laura Kanerva.
+ */
+public class NameIndex {
+    private final NavigableMap<String, Object> words = new TreeMap<>();
+    private String[] query = new String[0];
+    private Set<Item> matches = newItemSet();
+
+    /**
+     * Adds an item under the words of its name.
+     *
+     * @param item the item
+     */
+    public void add(Item item) {
+        String[] itemWords = words(item.getItem());
+        for (String word : itemWords) {
+            put(word, item);
+        }
+        if (query.length > 0 && matches(itemWords, query)) {
+            matches.add(item);
+        }
+    }
+
+    /**
+     * Removes an item that is indexed under its current name.
+     *
+     * @param item the item
+     */
+    public void remove(Item item) {
+        remove(item, item.getItem());
+    }
+
+    /**
+     * Removes an item that was indexed under another name.
+     *
+     * @param item the item
+     * @param name the name the item was added with
+     */
+    public void remove(Item item, String name) {
+        for (String word : words(name)) {
+            Object value = words.get(word);
+            if (value == item) {
+                words.remove(word);
+            } else if (value instanceof Set) {
+                Set<?> items = (Set<?>) value;
+                items.remove(item);
+                if (items.size() == 1) {
+                    words.put(word, items.iterator().next());
+                }
+            }
+        }
+        matches.remove(item);
+    }
+
+    /**
+     * Removes every item.
+     */
+    public void clear() {
+        words.clear();
+        matches.clear();
+    }
+
+    /**
+     * Finds the items matching a query. The returned set follows later changes of
+     * the index until the next search.
+     *
+     * @param text the query
+     * @return the matching items, empty for a blank query
+     */
+    public Set<Item> search(String text) {
+        query = words(text);
+        matches = newItemSet();
+        if (query.length == 0) {
+            return matches;
+        }
+        Map<String, Object> candidates = null;
+        int fewest = Integer.MAX_VALUE;
+        for (String word : query) {
+            Map<String, Object> range = range(word);
+            int count = count(range, fewest);
+            if (count < fewest) {
+                candidates = range;
+                fewest = count;
+            }
+        }
+        for (Object value : candidates.values()) {
+            if (value instanceof Item) {
+                addIfMatches((Item) value);
+            } else {
+                for (Object item : (Set<?>) value) {
+                    addIfMatches((Item) item);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the words starting with a prefix and their items.
+     *
+     * @param prefix the prefix
+     * @return a view of the index
+     */
+    private Map<String, Object> range(String prefix) {
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Counts the items of a range, stopping once the count reaches a limit. The
+     * query word with the fewest items is used to find the candidates, so a common
+     * word in the query does not make the search slow.
+     *
+     * @param range a range of the index
+     * @param limit the count to stop at
+     * @return the number of items, or at least the limit
+     */
+    private static int count(Map<String, Object> range, int limit) {
+        int count = 0;
+        for (Object value : range.values()) {
+            count += value instanceof Set ? ((Set<?>) value).size() : 1;
+            if (count >= limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a candidate found by one query word if the other words match too.
+     *
+     * @param item the candidate
+     */
+    private void addIfMatches(Item item) {
+        if (query.length == 1 || matches(words(item.getItem()), query)) {
+            matches.add(item);
+        }
+    }
+
+    /**
+     * Adds an item under one word.
+     *
+     * @param word the word
+     * @param item the item
+     */
+    @SuppressWarnings("unchecked")
+    private void put(String word, Item item) {
+        Object value = words.get(word);
+        if (value == null) {
+            words.put(word, item);
+        } else if (value instanceof Set) {
+            ((Set<Item>) value).add(item);
+        } else if (value != item) {
+            Set<Item> items = newItemSet();
+            items.add((Item) value);
+            items.add(item);
+            words.put(word, items);
+        }
+    }
+
+    /**
+     * Tells whether every query word starts some word of a name.
+     *
+     * @param itemWords words of the name
+     * @param queryWords words of the query
+     * @return true if the name matches
+     */
+    private static boolean matches(String[] itemWords, String[] queryWords) {
+        for (String q : queryWords) {
+            boolean found = false;
+            for (String w : itemWords) {
+                if (w.startsWith(q)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a name into lower case words.
+     *
+     * @param name the name, may be null
+     * @return the words
+     */
+    private static String[] words(String name) {
+        String normalized = ShoppingList.normalize(name);
+        return normalized.isEmpty() ? new String[0] : normalized.split("\\s+");
+    }
+
+    /**
+     * Creates a set that compares items by identity.
+     *
+     * @return an empty set
+     */
+    private static Set<Item> newItemSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
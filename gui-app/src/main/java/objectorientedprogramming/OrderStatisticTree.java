@@ -0,0 +1,264 @@
+package objectorientedprogramming;
+
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Sorted collection that can also be indexed by position. It is a treap, a binary
+ * search tree balanced by random priorities, where every node knows the size of its
+ * subtree. Adding, removing, finding the position of an element and getting the
+ * element at a position all take O(log n) time.
+ * <p>
+ * The comparator must give a total order: two different elements may not compare
+ * as equal, and an element must not change in a way that moves it in the order
+ * while it is in the tree.
+ *
+ * @param <E> the type of the elements
+ * @author Laura Kanerva.
+ */
+public class OrderStatisticTree<E> {
+    private final Comparator<? super E> comparator;
+    private final Random random = new Random();
+    private Node<E> root;
+
+    /**
+     * Node of the tree.
+     *
+     * @param <E> the type of the element
+     */
+    private static class Node<E> {
+        final E value;
+        final int priority;
+        int size = 1;
+        Node<E> left;
+        Node<E> right;
+
+        /**
+         * Class constructor.
+         *
+         * @param value the element
+         * @param priority random priority, larger ones are closer to the root
+         */
+        Node(E value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param comparator the order of the elements
+     */
+    public OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return number of elements
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Removes every element.
+     */
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value the element, not equal to any element in the tree
+     * @return the position of the element
+     */
+    public int add(E value) {
+        root = insert(root, new Node<>(value, random.nextInt()));
+        return indexOf(value);
+    }
+
+    /**
+     * Removes an element.
+     *
+     * @param value the element
+     * @return the position the element had, or -1 if it was not in the tree
+     */
+    public int remove(E value) {
+        int index = indexOf(value);
+        if (index >= 0) {
+            root = delete(root, value);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the position of an element.
+     *
+     * @param value the element
+     * @return the number of smaller elements, or -1 if the element is not in the tree
+     */
+    public int indexOf(E value) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            int c = comparator.compare(value, node.value);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the element at a position.
+     *
+     * @param index the position
+     * @return the element
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Inserts a node into a subtree.
+     *
+     * @param node root of the subtree
+     * @param added the new node
+     * @return the new root of the subtree
+     */
+    private Node<E> insert(Node<E> node, Node<E> added) {
+        if (node == null) {
+            return added;
+        }
+        if (comparator.compare(added.value, node.value) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                return rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                return rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Deletes an element from a subtree.
+     *
+     * @param node root of the subtree
+     * @param value the element
+     * @return the new root of the subtree
+     */
+    private Node<E> delete(Node<E> node, E value) {
+        int c = comparator.compare(value, node.value);
+        if (c < 0) {
+            node.left = delete(node.left, value);
+        } else if (c > 0) {
+            node.right = delete(node.right, value);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Joins two subtrees where every element of the first is smaller.
+     *
+     * @param left the smaller subtree
+     * @param right the larger subtree
+     * @return root of the joined tree
+     */
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Moves the left child of a node above it.
+     *
+     * @param node the node
+     * @return the new root of the subtree
+     */
+    private Node<E> rotateRight(Node<E> node) {
+        Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    /**
+     * Moves the right child of a node above it.
+     *
+     * @param node the node
+     * @return the new root of the subtree
+     */
+    private Node<E> rotateLeft(Node<E> node) {
+        Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Recomputes the subtree size of a node from its children.
+     *
+     * @param node the node
+     */
+    private static void update(Node<?> node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    /**
+     * Returns the size of a subtree.
+     *
+     * @param node root of the subtree, may be null
+     * @return number of nodes
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
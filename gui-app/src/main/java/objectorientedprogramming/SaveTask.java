@@ -0,0 +1,99 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import javafx.concurrent.Task;
+
+/**
+ * Background task that saves a shopping list to a json file. The list is written
+ * to a temporary file first, so a cancelled save leaves the old file untouched.
+ * The list is hashed while it is written, and a save that would not change the
+ * file is skipped.
+ *
+ * @author Laura Kanerva.
+ */
+public class SaveTask extends Task<Void> {
+    private static final int PROGRESS_INTERVAL = 1024;
+    private static final Metrics.Operation SAVE_FILE = Metrics.operation("saveFile");
+
+    private final File file;
+    private final JsonObject[] jsons;
+    private final DigestStore digests;
+
+    /**
+     * Class constructor.
+     *
+     * @param file the file to save to
+     * @param jsons the items of the list as json
+     */
+    public SaveTask(File file, JsonObject[] jsons) {
+        this(file, jsons, null);
+    }
+
+    /**
+     * Class constructor for saves that are skipped when the file is up to date.
+     *
+     * @param file the file to save to
+     * @param jsons the items of the list as json
+     * @param digests content hashes of earlier saves, or null
+     */
+    public SaveTask(File file, JsonObject[] jsons, DigestStore digests) {
+        this.file = file;
+        this.jsons = jsons;
+        this.digests = digests;
+    }
+
+    /**
+     * Writes the list and replaces the target file with it.
+     *
+     * @return nothing
+     * @throws Exception if writing fails
+     */
+    @Override
+    protected Void call() throws Exception {
+        long start = Metrics.start();
+        if (digests != null && digests.isUnchanged(file) && digests.isCurrent(file, ContentHash.of(jsons))) {
+            updateProgress(1, 1);
+            updateMessage(file.getName() + " is already up to date");
+            return null;
+        }
+        updateMessage("Saving " + file.getName());
+        File tempFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        ContentHash hash = new ContentHash(new FileOutputStream(tempFile));
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(hash, StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (int i = 0; i < jsons.length; i++) {
+                if (isCancelled()) {
+                    break;
+                }
+                writer.writeObject(jsons[i]);
+                if (i % PROGRESS_INTERVAL == 0) {
+                    updateProgress(i, jsons.length);
+                }
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile.toPath());
+            SAVE_FILE.failed(start);
+            throw e;
+        }
+        if (isCancelled()) {
+            Files.deleteIfExists(tempFile.toPath());
+            return null;
+        }
+        long bytes = tempFile.length();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (digests != null) {
+            digests.saved(file, hash.digest());
+        }
+        SAVE_FILE.record(start, bytes, jsons.length);
+        updateProgress(1, 1);
+        updateMessage("Saved " + jsons.length + " items");
+        return null;
+    }
+}
@@ -0,0 +1,359 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * The shopping list. Every name is on the list at most once: names are compared
+ * ignoring case and surrounding whitespace, and adding an item that is already on
+ * the list adds to its amount instead of creating another row.
+ * <p>
+ * The items are kept in an observable list in insertion order, which the table
+ * shows, and in a hash index by name. Finding an item, merging an amount and
+ * renaming take constant time. Removing needs the item's position, which is found
+ * by scanning the list, so bulk removal is done in one pass over it, and many
+ * removed items are dropped by copying the rest instead of shifting the list once
+ * per item.
+ * <p>
+ * The words of the names are also kept in a NameIndex for searching. It is updated
+ * before the observable list changes, so a filter on the search results sees the
+ * new items.
+ * <p>
+ * Listeners are told about every change. All methods must be called on the same
+ * thread, which is the JavaFX application thread once the list is shown.
+ *
+ * @author Laura Kanerva.
+ */
+public class ShoppingList {
+    private static final int BULK_REMOVE_THRESHOLD = 64;
+
+    private final ObservableList<Item> items = FXCollections.observableArrayList();
+    private final Map<String, Item> index = new HashMap<>();
+    private final NameIndex names = new NameIndex();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Receives the changes of a shopping list.
+     */
+    public interface Listener {
+
+        /**
+         * Called after an item was added to the end of the list.
+         *
+         * @param item the new item
+         */
+        void added(Item item);
+
+        /**
+         * Called after an item was removed.
+         *
+         * @param item the removed item
+         */
+        void removed(Item item);
+
+        /**
+         * Called after the amount of an item changed.
+         *
+         * @param item the item with its new amount
+         */
+        void changed(Item item);
+
+        /**
+         * Called after an item was renamed.
+         *
+         * @param oldName the previous name
+         * @param item the item with its new name
+         */
+        void renamed(String oldName, Item item);
+
+        /**
+         * Called after the whole content of the list was replaced.
+         *
+         * @param items the new content
+         */
+        void replaced(List<Item> items);
+    }
+
+    /**
+     * Returns the key an item name is indexed with.
+     *
+     * @param name the name of an item, may be null
+     * @return the name trimmed and in lower case
+     */
+    public static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the items for the table. Items must be added and removed through this
+     * class. The table sorts and filters a view of the list, so the list itself
+     * keeps the insertion order.
+     *
+     * @return the items in list order
+     */
+    public ObservableList<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Finds an item by name.
+     *
+     * @param name the name
+     * @return the item, or null if the name is not on the list
+     */
+    public Item find(String name) {
+        return index.get(normalize(name));
+    }
+
+    /**
+     * Finds the items whose names have words starting with the words of a query.
+     * The returned set follows later changes of the list until the next search.
+     *
+     * @param query the query
+     * @return the matching items, empty for a blank query
+     */
+    public Set<Item> search(String query) {
+        return names.search(query);
+    }
+
+    /**
+     * Adds an item, or adds its amount to the item with the same name.
+     *
+     * @param item the item
+     * @return the item that is now on the list
+     */
+    public Item add(Item item) {
+        Item existing = index.get(normalize(item.getItem()));
+        if (existing != null) {
+            setAmount(existing, existing.getAmount() + item.getAmount());
+            return existing;
+        }
+        index.put(normalize(item.getItem()), item);
+        names.add(item);
+        items.add(item);
+        for (Listener listener : listeners) {
+            listener.added(item);
+        }
+        return item;
+    }
+
+    /**
+     * Adds many items with a single change of the observable list. Items with a
+     * name already on the list, or repeated in the collection, are merged.
+     *
+     * @param newItems the items
+     */
+    public void addAll(Collection<Item> newItems) {
+        List<Item> added = new ArrayList<>(newItems.size());
+        List<Item> merged = new ArrayList<>();
+        for (Map.Entry<String, Item> entry : mergeDuplicates(newItems).entrySet()) {
+            Item item = entry.getValue();
+            Item existing = index.get(entry.getKey());
+            if (existing == null) {
+                index.put(entry.getKey(), item);
+                names.add(item);
+                added.add(item);
+            } else {
+                existing.setAmount(existing.getAmount() + item.getAmount());
+                merged.add(existing);
+            }
+        }
+        items.addAll(added);
+        for (Listener listener : listeners) {
+            for (Item item : added) {
+                listener.added(item);
+            }
+            for (Item item : merged) {
+                listener.changed(item);
+            }
+        }
+    }
+
+    /**
+     * Changes the amount of an item on the list.
+     *
+     * @param item the item
+     * @param amount the new amount
+     */
+    public void setAmount(Item item, int amount) {
+        item.setAmount(amount);
+        for (Listener listener : listeners) {
+            listener.changed(item);
+        }
+    }
+
+    /**
+     * Renames an item on the list. If another item already has the new name, the
+     * amounts are merged into that item and the renamed item is removed.
+     *
+     * @param item the item
+     * @param name the new name
+     * @return the item that now has the name
+     */
+    public Item rename(Item item, String name) {
+        String oldKey = normalize(item.getItem());
+        String newKey = normalize(name);
+        Item existing = index.get(newKey);
+        if (existing != null && existing != item) {
+            remove(item);
+            setAmount(existing, existing.getAmount() + item.getAmount());
+            return existing;
+        }
+        String oldName = item.getItem();
+        index.remove(oldKey);
+        names.remove(item, oldName);
+        item.setItem(name);
+        index.put(newKey, item);
+        names.add(item);
+        for (Listener listener : listeners) {
+            listener.renamed(oldName, item);
+        }
+        return item;
+    }
+
+    /**
+     * Removes an item by name.
+     *
+     * @param name the name
+     * @return true if the name was on the list
+     */
+    public boolean remove(String name) {
+        Item item = index.get(normalize(name));
+        return item != null && remove(item);
+    }
+
+    /**
+     * Removes an item.
+     *
+     * @param item the item
+     * @return true if the item was on the list
+     */
+    public boolean remove(Item item) {
+        if (index.get(normalize(item.getItem())) != item) {
+            return false;
+        }
+        removeAll(Collections.singletonList(item));
+        return true;
+    }
+
+    /**
+     * Removes many items with a single pass over the list.
+     *
+     * @param removed the items to remove
+     */
+    public void removeAll(Collection<Item> removed) {
+        Set<Item> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Item item : removed) {
+            String key = normalize(item.getItem());
+            if (index.get(key) == item) {
+                index.remove(key);
+                names.remove(item);
+                toRemove.add(item);
+            }
+        }
+        if (toRemove.isEmpty()) {
+            return;
+        }
+        if (toRemove.size() <= BULK_REMOVE_THRESHOLD) {
+            items.removeAll(toRemove);
+        } else {
+            List<Item> kept = new ArrayList<>(items.size() - toRemove.size());
+            for (Item item : items) {
+                if (!toRemove.contains(item)) {
+                    kept.add(item);
+                }
+            }
+            items.setAll(kept);
+        }
+        for (Listener listener : listeners) {
+            for (Item item : toRemove) {
+                listener.removed(item);
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole content of the list with one change.
+     *
+     * @param newItems the new content, items with the same name are merged
+     */
+    public void setAll(Collection<Item> newItems) {
+        index.clear();
+        names.clear();
+        List<Item> unique = new ArrayList<>(newItems.size());
+        for (Map.Entry<String, Item> entry : mergeDuplicates(newItems).entrySet()) {
+            index.put(entry.getKey(), entry.getValue());
+            names.add(entry.getValue());
+            unique.add(entry.getValue());
+        }
+        items.setAll(unique);
+        for (Listener listener : listeners) {
+            listener.replaced(items);
+        }
+    }
+
+    /**
+     * Merges the items of a collection that have the same name. The first item of
+     * a name keeps its place, and the merged amount goes to a copy of it, so the
+     * caller's items are never changed.
+     *
+     * @param newItems the items
+     * @return the items by their index key, in collection order
+     */
+    private static Map<String, Item> mergeDuplicates(Collection<Item> newItems) {
+        Map<String, Item> unique = new LinkedHashMap<>();
+        for (Item item : newItems) {
+            String key = normalize(item.getItem());
+            Item previous = unique.putIfAbsent(key, item);
+            if (previous != null) {
+                unique.put(key, new Item(previous.getAmount() + item.getAmount(), previous.getItem()));
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Removes every item.
+     */
+    public void clear() {
+        setAll(Collections.emptyList());
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,321 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Sorted view of a shopping list for the table. The items are kept in three
+ * order-statistic trees at once: in list order, by amount and by name. An edit
+ * moves the item in the trees and the view reports only the moved row, so
+ * committing a cell takes O(log n) time instead of sorting the whole list again.
+ * Only the rows on screen are ever asked for by the table.
+ * <p>
+ * The view also keeps the total amount of all items, and the trees give the
+ * number of different items and the items with the largest amounts without
+ * scanning the list.
+ * <p>
+ * The view is updated as a listener of the shopping list, so it must be added to
+ * the list before any items are.
+ *
+ * @author Laura Kanerva.
+ */
+public class SortedView extends ObservableListBase<Item> implements ShoppingList.Listener {
+
+    /**
+     * Orders the view can be sorted in.
+     */
+    public enum Order {
+        /** The order of the shopping list. */
+        LIST,
+        /** By amount, items with the same amount by name. */
+        AMOUNT,
+        /** By name, ignoring case. */
+        NAME
+    }
+
+    private static final Comparator<Entry> BY_POSITION = Comparator.comparingLong(e -> e.position);
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(e -> e.key);
+    private static final Comparator<Entry> BY_AMOUNT = Comparator.<Entry>comparingInt(e -> e.amount).thenComparing(BY_NAME);
+
+    private final Map<Item, Entry> entries = new IdentityHashMap<>();
+    private final OrderStatisticTree<Entry> byPosition = new OrderStatisticTree<>(BY_POSITION);
+    private final OrderStatisticTree<Entry> byAmount = new OrderStatisticTree<>(BY_AMOUNT);
+    private final OrderStatisticTree<Entry> byName = new OrderStatisticTree<>(BY_NAME);
+    private OrderStatisticTree<Entry> sorted = byPosition;
+    private Order order = Order.LIST;
+    private boolean descending;
+    private long nextPosition;
+    private long totalAmount;
+
+    /**
+     * An item with the amount and name it is sorted by. The trees are ordered by
+     * these copies, so an item can be found in them after it has been edited.
+     */
+    private static class Entry {
+        final Item item;
+        final long position;
+        int amount;
+        String key;
+
+        /**
+         * Class constructor.
+         *
+         * @param item the item
+         * @param position position in the list order
+         */
+        Entry(Item item, long position) {
+            this.item = item;
+            this.position = position;
+            this.amount = item.getAmount();
+            this.key = ShoppingList.normalize(item.getItem());
+        }
+    }
+
+    /**
+     * Returns an item of the view.
+     *
+     * @param index row of the view
+     * @return the item
+     */
+    @Override
+    public Item get(int index) {
+        return sorted.get(descending ? size() - 1 - index : index).item;
+    }
+
+    /**
+     * Returns the number of items, which is also the number of different names.
+     *
+     * @return number of items
+     */
+    @Override
+    public int size() {
+        return sorted.size();
+    }
+
+    /**
+     * Returns the current order.
+     *
+     * @return the order
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Tells whether the current order is reversed.
+     *
+     * @return true for descending order
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Returns the sum of the amounts of all items.
+     *
+     * @return the total amount
+     */
+    public long getTotalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Returns the items with the largest amounts.
+     *
+     * @param n the maximum number of items
+     * @return the items, largest amount first
+     */
+    public List<Item> top(int n) {
+        int count = Math.min(n, byAmount.size());
+        List<Item> top = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            top.add(byAmount.get(byAmount.size() - 1 - i).item);
+        }
+        return top;
+    }
+
+    /**
+     * Sorts the view. Nothing happens if the view is already in the order.
+     * Otherwise the new order is reported as a permutation of the rows.
+     *
+     * @param order the order
+     * @param descending true to reverse the order
+     */
+    public void sort(Order order, boolean descending) {
+        if (order == this.order && descending == this.descending) {
+            return;
+        }
+        OrderStatisticTree<Entry> tree = tree(order);
+        int size = size();
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            int rank = tree.indexOf(sorted.get(this.descending ? size - 1 - i : i));
+            permutation[i] = descending ? size - 1 - rank : rank;
+        }
+        this.order = order;
+        this.descending = descending;
+        sorted = tree;
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    /**
+     * Adds an item to the trees.
+     *
+     * @param item the new item
+     */
+    @Override
+    public void added(Item item) {
+        Entry entry = new Entry(item, nextPosition++);
+        entries.put(item, entry);
+        totalAmount += entry.amount;
+        insert(entry, byPosition, byAmount, byName);
+    }
+
+    /**
+     * Removes an item from the trees.
+     *
+     * @param item the removed item
+     */
+    @Override
+    public void removed(Item item) {
+        Entry entry = entries.remove(item);
+        if (entry != null) {
+            totalAmount -= entry.amount;
+            delete(entry, byPosition, byAmount, byName);
+        }
+    }
+
+    /**
+     * Moves an item to the position of its new amount.
+     *
+     * @param item the item with its new amount
+     */
+    @Override
+    public void changed(Item item) {
+        Entry entry = entries.get(item);
+        if (entry == null || entry.amount == item.getAmount()) {
+            return;
+        }
+        totalAmount += item.getAmount() - entry.amount;
+        delete(entry, byAmount);
+        entry.amount = item.getAmount();
+        insert(entry, byAmount);
+    }
+
+    /**
+     * Moves an item to the position of its new name.
+     *
+     * @param oldName the previous name
+     * @param item the item with its new name
+     */
+    @Override
+    public void renamed(String oldName, Item item) {
+        Entry entry = entries.get(item);
+        if (entry != null) {
+            delete(entry, byAmount, byName);
+            entry.key = ShoppingList.normalize(item.getItem());
+            insert(entry, byAmount, byName);
+        }
+    }
+
+    /**
+     * Rebuilds the trees from the new content of the list.
+     *
+     * @param items the new content
+     */
+    @Override
+    public void replaced(List<Item> items) {
+        List<Item> old = new ArrayList<>(this);
+        entries.clear();
+        byPosition.clear();
+        byAmount.clear();
+        byName.clear();
+        totalAmount = 0;
+        for (Item item : items) {
+            Entry entry = new Entry(item, nextPosition++);
+            entries.put(item, entry);
+            totalAmount += entry.amount;
+            byPosition.add(entry);
+            byAmount.add(entry);
+            byName.add(entry);
+        }
+        beginChange();
+        nextReplace(0, size(), old);
+        endChange();
+    }
+
+    /**
+     * Adds an entry to some of the trees, and reports the new row if one of them
+     * is the current order.
+     *
+     * @param entry the entry
+     * @param trees the trees
+     */
+    @SafeVarargs
+    private void insert(Entry entry, OrderStatisticTree<Entry>... trees) {
+        for (OrderStatisticTree<Entry> tree : trees) {
+            int rank = tree.add(entry);
+            if (tree == sorted) {
+                int row = row(rank);
+                beginChange();
+                nextAdd(row, row + 1);
+                endChange();
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from some of the trees, and reports the removed row if one
+     * of them is the current order.
+     *
+     * @param entry the entry
+     * @param trees the trees
+     */
+    @SafeVarargs
+    private void delete(Entry entry, OrderStatisticTree<Entry>... trees) {
+        for (OrderStatisticTree<Entry> tree : trees) {
+            if (tree == sorted) {
+                int row = row(tree.indexOf(entry));
+                tree.remove(entry);
+                beginChange();
+                nextRemove(row, entry.item);
+                endChange();
+            } else {
+                tree.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Converts a position in the current tree to a row of the view.
+     *
+     * @param rank position in the tree
+     * @return the row
+     */
+    private int row(int rank) {
+        return descending ? size() - 1 - rank : rank;
+    }
+
+    /**
+     * Returns the tree of an order.
+     *
+     * @param order the order
+     * @return the tree
+     */
+    private OrderStatisticTree<Entry> tree(Order order) {
+        switch (order) {
+            case AMOUNT:
+                return byAmount;
+            case NAME:
+                return byName;
+            default:
+                return byPosition;
+        }
+    }
+}
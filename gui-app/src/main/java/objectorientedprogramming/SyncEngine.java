@@ -0,0 +1,213 @@
+package objectorientedprogramming;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.GetMetadataErrorException;
+import com.dropbox.core.v2.files.Metadata;
+import com.dropbox.core.v2.files.UploadErrorException;
+import com.dropbox.core.v2.files.UploadSessionFinishErrorException;
+import com.dropbox.core.v2.files.WriteMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Two-way sync of a shopping list with a file in Dropbox. The list as it was after
+ * the last sync is kept as the base, together with the Dropbox revision it was
+ * synced with. A sync downloads the remote file only if its revision has changed,
+ * merges it with the local list against the base, and uploads the result only if
+ * it differs from the remote file. When neither side has changed, a sync costs one
+ * metadata request. The upload is conditional on the revision that was merged,
+ * so a concurrent change from another machine makes the sync start over instead
+ * of being overwritten.
+ *
+ * @author Laura Kanerva.
+ */
+public class SyncEngine {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final DbxClientV2 client;
+    private final File baseDirectory;
+    private final ListStore bases = new BinaryListStore();
+
+    /**
+     * Class constructor.
+     *
+     * @param client the Dropbox client
+     * @param baseDirectory the directory for the base lists
+     */
+    public SyncEngine(DbxClientV2 client, File baseDirectory) {
+        this.client = client;
+        this.baseDirectory = baseDirectory;
+    }
+
+    /**
+     * Syncs a list with a Dropbox file. Blocks until the sync is done, so it should
+     * not be called on the JavaFX application thread.
+     *
+     * @param path Dropbox path of the file
+     * @param local the local list
+     * @return the merged list, which is now also in Dropbox
+     * @throws DbxException if Dropbox fails or the file keeps changing during the sync
+     * @throws IOException if reading or writing fails
+     */
+    public List<Item> sync(String path, List<Item> local) throws DbxException, IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return trySync(path, local);
+            } catch (UploadErrorException | UploadSessionFinishErrorException e) {
+                if (!isConflict(e) || attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                System.out.println("Dropbox file changed during sync, merging again");
+            }
+        }
+    }
+
+    /**
+     * Makes one attempt to sync.
+     *
+     * @param path Dropbox path of the file
+     * @param local the local list
+     * @return the merged list
+     */
+    private List<Item> trySync(String path, List<Item> local) throws DbxException, IOException {
+        File baseFile = baseFile(path, ".shl");
+        File revFile = baseFile(path, ".rev");
+        List<Item> base = baseFile.exists() ? bases.load(baseFile) : new ArrayList<>();
+        String baseRev = revFile.exists() ? new String(Files.readAllBytes(revFile.toPath()), StandardCharsets.UTF_8) : null;
+
+        FileMetadata remoteFile = metadata(path);
+        List<Item> remote;
+        if (remoteFile == null || remoteFile.getRev().equals(baseRev)) {
+            remote = base;
+        } else {
+            remote = download(path, remoteFile.getRev());
+        }
+
+        List<Item> merged = ListMerge.merge(base, local, remote);
+        if (remoteFile != null && remote == base && sameItems(merged, base)) {
+            return merged;
+        }
+        JsonObject[] jsons = new JsonObject[merged.size()];
+        for (int i = 0; i < jsons.length; i++) {
+            jsons[i] = JsonListStore.toJson(merged.get(i));
+        }
+        String rev;
+        if (remoteFile != null && ContentHash.of(jsons).equals(remoteFile.getContentHash())) {
+            rev = remoteFile.getRev();
+        } else {
+            WriteMode mode = remoteFile == null ? WriteMode.ADD : WriteMode.update(remoteFile.getRev());
+            rev = new ChunkedUploader(client).upload(path, jsons, mode).getRev();
+        }
+        saveBase(baseFile, revFile, merged, rev);
+        return merged;
+    }
+
+    /**
+     * Returns the metadata of the Dropbox file.
+     *
+     * @param path Dropbox path of the file
+     * @return the metadata, or null if there is no file
+     */
+    private FileMetadata metadata(String path) throws DbxException {
+        try {
+            Metadata metadata = client.files().getMetadata(path);
+            return metadata instanceof FileMetadata ? (FileMetadata) metadata : null;
+        } catch (GetMetadataErrorException e) {
+            if (e.errorValue.isPath() && e.errorValue.getPathValue().isNotFound()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Downloads and parses a revision of the Dropbox file.
+     *
+     * @param path Dropbox path of the file
+     * @param rev the revision
+     * @return the items of the file
+     */
+    private List<Item> download(String path, String rev) throws DbxException, IOException {
+        try (DbxDownloader<FileMetadata> downloader = client.files().download(path, rev)) {
+            JsonReader reader = new JsonReader(new InputStreamReader(downloader.getInputStream(), StandardCharsets.UTF_8));
+            return JsonListStore.read(reader);
+        }
+    }
+
+    /**
+     * Saves the merged list as the base of the next sync.
+     *
+     * @param baseFile file for the list
+     * @param revFile file for the revision
+     * @param items the merged list
+     * @param rev the Dropbox revision holding the merged list
+     */
+    private void saveBase(File baseFile, File revFile, List<Item> items, String rev) throws IOException {
+        Files.createDirectories(baseDirectory.toPath());
+        File tempFile = new File(baseDirectory, baseFile.getName() + ".tmp");
+        bases.save(tempFile, items);
+        Files.move(tempFile.toPath(), baseFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.write(revFile.toPath(), rev.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns a file of the base of a Dropbox file.
+     *
+     * @param path Dropbox path of the file
+     * @param suffix file name suffix
+     * @return the local file
+     */
+    private File baseFile(String path, String suffix) {
+        String key = path.toLowerCase();
+        String name = key.replaceAll("[^a-z0-9._-]", "_") + "-" + Integer.toHexString(key.hashCode());
+        return new File(baseDirectory, name + suffix);
+    }
+
+    /**
+     * Compares the names and amounts of two lists.
+     *
+     * @param a a list
+     * @param b another list
+     * @return true if the lists have the same items in the same order
+     */
+    private static boolean sameItems(List<Item> a, List<Item> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            Item x = a.get(i);
+            Item y = b.get(i);
+            if (x.getAmount() != y.getAmount() || !Objects.equals(x.getItem(), y.getItem())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether an upload failed because the file was changed by someone else.
+     *
+     * @param e the upload error
+     * @return true for a write conflict
+     */
+    private static boolean isConflict(DbxException e) {
+        if (e instanceof UploadErrorException) {
+            UploadErrorException ue = (UploadErrorException) e;
+            return ue.errorValue.isPath() && ue.errorValue.getPathValue().getReason().isConflict();
+        }
+        UploadSessionFinishErrorException fe = (UploadSessionFinishErrorException) e;
+        return fe.errorValue.isPath() && fe.errorValue.getPathValue().isConflict();
+    }
+}
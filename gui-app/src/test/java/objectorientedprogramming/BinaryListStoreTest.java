@@ -0,0 +1,101 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for saving and loading binary snapshots.
+ *
+ * @author Laura Kanerva.
+ */
+public class BinaryListStoreTest extends TestCase {
+    private static final byte[] HEADER = {'S', 'H', 'P', 'L', 1};
+
+    private final BinaryListStore store = new BinaryListStore();
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("snapshot", ".shl");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testSavedItemsLoadBack() throws IOException {
+        List<Item> items = Arrays.asList(new Item(1, "milk"), new Item(-300, "café"),
+            new Item(Integer.MIN_VALUE, null), new Item(Integer.MAX_VALUE, "milk"));
+        store.save(file, items);
+        List<Item> loaded = store.load(file);
+        assertEquals(items.size(), loaded.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getItem(), loaded.get(i).getItem());
+            assertEquals(items.get(i).getAmount(), loaded.get(i).getAmount());
+        }
+    }
+
+    public void testHugeItemCountIsRejected() throws IOException {
+        assertCorrupt(0x00, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 0x00, 0x00);
+    }
+
+    public void testNegativeNameCountIsRejected() throws IOException {
+        assertCorrupt(0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+    }
+
+    public void testLongNameIsRejected() throws IOException {
+        assertCorrupt(0x01, 0xFF, 0xFF, 0xFF, 0x7F, 'a');
+    }
+
+    public void testNegativeNameIndexIsRejected() throws IOException {
+        assertCorrupt(0x01, 0x01, 'a', 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0x00);
+    }
+
+    public void testRandomCorruptionOnlyThrowsIOException() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(new Item(i * 7 - 20, "item " + (i % 20)));
+        }
+        store.save(file, items);
+        byte[] valid = Files.readAllBytes(file.toPath());
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            byte[] bytes = valid.clone();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                bytes[HEADER.length + random.nextInt(bytes.length - HEADER.length)] = (byte) random.nextInt();
+            }
+            int length = random.nextInt(4) == 0 ? random.nextInt(bytes.length) : bytes.length;
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            try {
+                store.load(file);
+            } catch (IOException e) {
+                // expected for most corruptions
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot header followed by the given bytes and checks that loading
+     * fails with an IOException.
+     */
+    private void assertCorrupt(int... body) throws IOException {
+        byte[] bytes = Arrays.copyOf(HEADER, HEADER.length + body.length);
+        for (int i = 0; i < body.length; i++) {
+            bytes[HEADER.length + i] = (byte) body[i];
+        }
+        Files.write(file.toPath(), bytes);
+        try {
+            store.load(file);
+            fail("loaded a corrupt snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupted snapshot"));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for recovering the autosaved list from ChangeJournal files.
+ *
+ * @author Laura Kanerva.
+ */
+public class ChangeJournalTest extends TestCase {
+    private File directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testChangesAreRecovered() throws IOException {
+        ChangeJournal journal = new ChangeJournal(directory, ArrayList::new);
+        assertTrue(journal.recover().isEmpty());
+        journal.added(new Item(1, "milk"));
+        journal.added(new Item(2, "bread"));
+        journal.changed(new Item(3, "milk"));
+        journal.renamed("bread", new Item(2, "rye bread"));
+        journal.close();
+
+        assertEquals(Arrays.asList("milk 3", "rye bread 2"), recover());
+    }
+
+    public void testReplacedListSurvivesLostSnapshot() throws IOException {
+        ChangeJournal journal = new ChangeJournal(directory, ArrayList::new);
+        journal.recover();
+        journal.added(new Item(1, "milk"));
+        journal.added(new Item(2, "bread"));
+        // a directory in the way makes saving the snapshot fail, like a crash before it is moved into place
+        assertTrue(new File(directory, "snapshot.tmp").mkdir());
+        journal.replaced(Arrays.asList(new Item(5, "apples")));
+        journal.added(new Item(1, "pears"));
+        journal.close();
+        assertTrue(new File(directory, "snapshot.tmp").delete());
+
+        assertEquals(Arrays.asList("apples 5", "pears 1"), recover());
+    }
+
+    public void testClearedListStaysCleared() throws IOException {
+        ChangeJournal journal = new ChangeJournal(directory, ArrayList::new);
+        journal.recover();
+        journal.added(new Item(1, "milk"));
+        journal.replaced(new ArrayList<>());
+        journal.close();
+
+        assertTrue(recover().isEmpty());
+    }
+
+    public void testTooLongNameDoesNotCorruptJournal() throws IOException {
+        String longName = String.join("", Collections.nCopies(70000, "a"));
+        List<Item> state = new ArrayList<>();
+        ChangeJournal journal = new ChangeJournal(directory, () -> state);
+        journal.recover();
+        add(journal, state, new Item(1, "milk"));
+        add(journal, state, new Item(2, longName));
+        add(journal, state, new Item(3, "bread"));
+        journal.renamed("bread", new Item(3, "rye bread"));
+        journal.close();
+
+        assertEquals(Arrays.asList("milk 1", longName + " 2", "rye bread 3"), recover());
+    }
+
+    /**
+     * Adds an item to the list and records it, like ShoppingList does.
+     */
+    private static void add(ChangeJournal journal, List<Item> state, Item item) {
+        state.add(item);
+        journal.added(item);
+    }
+
+    /**
+     * Recovers the list like a new run of the app.
+     *
+     * @return the items as "name amount" in list order
+     */
+    private List<String> recover() throws IOException {
+        ChangeJournal journal = new ChangeJournal(directory, ArrayList::new);
+        List<String> items = new ArrayList<>();
+        for (Item item : journal.recover()) {
+            items.add(item.getItem() + " " + item.getAmount());
+        }
+        journal.close();
+        return items;
+    }
+}
@@ -0,0 +1,131 @@
+package objectorientedprogramming;
+
+import com.dropbox.core.NetworkIOException;
+import com.dropbox.core.v2.files.UploadSessionFinishErrorException;
+import com.dropbox.core.v2.files.UploadSessionLookupErrorException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests for uploading lists in chunks to a fake Dropbox.
+ *
+ * @author Laura Kanerva.
+ */
+public class ChunkedUploaderTest extends TestCase {
+    private static final String PATH = "/list.json";
+    private static final int CHUNK_SIZE = 64;
+
+    private FakeDropbox dropbox;
+    private JsonObject[] jsons;
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() {
+        dropbox = new FakeDropbox();
+        jsons = new JsonObject[10];
+        for (int i = 0; i < jsons.length; i++) {
+            jsons[i] = JsonListStore.toJson(new Item(i + 1, "item " + i));
+        }
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public void testSmallListIsUploadedAtOnce() throws Exception {
+        JsonObject[] one = {jsons[0]};
+        upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE * 4, 3, 1), one);
+        assertEquals(Collections.singletonList("upload"), dropbox.requests());
+        assertEquals(json(one), dropbox.content(PATH));
+    }
+
+    public void testLargeListIsUploadedInChunks() throws Exception {
+        upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE, 3, 1), jsons);
+        assertEquals("upload_session/start", dropbox.requests().get(0));
+        assertTrue(dropbox.requests().contains("upload_session/append_v2"));
+        assertEquals("upload_session/finish", dropbox.requests().get(dropbox.requests().size() - 1));
+        assertEquals(json(jsons), dropbox.content(PATH));
+    }
+
+    public void testServerErrorsAreRetried() throws Exception {
+        dropbox.fail("upload_session/append_v2", 500, 503);
+        dropbox.fail("upload_session/finish", 500);
+        upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE, 3, 1), jsons);
+        assertEquals(json(jsons), dropbox.content(PATH));
+    }
+
+    public void testRetriesRunOut() throws Exception {
+        dropbox.fail("upload_session/append_v2", 500, 500, 500);
+        try {
+            upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE, 2, 1), jsons);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(3, Collections.frequency(dropbox.requests(), "upload_session/append_v2"));
+            assertNull(dropbox.content(PATH));
+        }
+    }
+
+    public void testStuckOffsetGivesUp() throws Exception {
+        dropbox.reportStuckOffset();
+        try {
+            upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE, 3, 1), jsons);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UploadSessionLookupErrorException);
+            assertEquals(4, Collections.frequency(dropbox.requests(), "upload_session/append_v2"));
+        }
+    }
+
+    public void testStuckOffsetAtFinishGivesUp() throws Exception {
+        JsonObject[] two = {jsons[0], jsons[1]};
+        int chunkSize = json(two).length() - 10;
+        dropbox.reportStuckOffset();
+        try {
+            upload(new ChunkedUploader(dropbox.client(), chunkSize, 3, 1), two);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UploadSessionFinishErrorException);
+            assertEquals(4, Collections.frequency(dropbox.requests(), "upload_session/finish"));
+        }
+    }
+
+    public void testInterruptionIsNotRetried() throws Exception {
+        dropbox.interrupt("upload_session/append_v2");
+        try {
+            upload(new ChunkedUploader(dropbox.client(), CHUNK_SIZE, 3, 1), jsons);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NetworkIOException);
+            assertTrue(e.getCause().getCause() instanceof InterruptedIOException);
+            assertEquals(1, Collections.frequency(dropbox.requests(), "upload_session/append_v2"));
+        }
+    }
+
+    /**
+     * Uploads on another thread, so that a looping upload fails the test instead of hanging it.
+     */
+    private void upload(ChunkedUploader uploader, JsonObject[] objects) throws Exception {
+        Callable<Object> task = () -> uploader.upload(PATH, objects);
+        Future<Object> future = executor.submit(task);
+        future.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the json the uploader sends for the objects.
+     */
+    private static String json(JsonObject[] objects) throws Exception {
+        StringWriter sw = new StringWriter();
+        new JsonUtil().writeToJson(sw, objects);
+        return sw.toString();
+    }
+}
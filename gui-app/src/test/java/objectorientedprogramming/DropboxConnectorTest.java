@@ -0,0 +1,44 @@
+package objectorientedprogramming;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import junit.framework.TestCase;
+
+/**
+ * Tests for saving lists to a fake Dropbox.
+ *
+ * @author Laura Kanerva.
+ */
+public class DropboxConnectorTest extends TestCase {
+    private static final Optional<String> FILE = Optional.of("Shopping.json");
+
+    private FakeDropbox dropbox;
+    private DropboxConnector connector;
+    private JsonObject[] jsons;
+
+    @Override
+    protected void setUp() {
+        dropbox = new FakeDropbox();
+        connector = new DropboxConnector(dropbox.client());
+        jsons = new JsonObject[] {JsonListStore.toJson(new Item(2, "milk")), JsonListStore.toJson(new Item(1, "bread"))};
+    }
+
+    public void testUnchangedListIsNotUploadedAgain() throws Exception {
+        assertTrue(connector.uploadFile(FILE, jsons));
+        String content = dropbox.content("/" + FILE.get());
+        assertFalse(connector.uploadFile(FILE, jsons));
+        List<String> requests = dropbox.requests();
+        assertEquals("get_metadata", requests.get(requests.size() - 1));
+        assertEquals(1, Collections.frequency(requests, "upload"));
+        assertEquals(content, dropbox.content("/" + FILE.get()));
+    }
+
+    public void testFileChangedElsewhereIsOverwritten() throws Exception {
+        assertTrue(connector.uploadFile(FILE, jsons));
+        String content = dropbox.content("/" + FILE.get());
+        dropbox.put("/" + FILE.get(), "[{\"item\": \"eggs\", \"amount\": 6}]");
+        assertTrue(connector.uploadFile(FILE, jsons));
+        assertEquals(content, dropbox.content("/" + FILE.get()));
+    }
+}
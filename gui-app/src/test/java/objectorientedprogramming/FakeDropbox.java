@@ -0,0 +1,351 @@
+package objectorientedprogramming;
+
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.v2.DbxClientV2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory Dropbox for tests. It answers the requests of a DbxClientV2 for the
+ * files endpoints the app uses: get_metadata, download, upload and the upload
+ * session endpoints. Requests can be made to fail with a given status code or to
+ * be interrupted, and upload sessions can be made to keep reporting a wrong offset.
+ *
+ * @author Laura Kanerva.
+ */
+public class FakeDropbox extends HttpRequestor {
+    private final Map<String, StoredFile> files = new HashMap<>();
+    private final Map<String, ByteArrayOutputStream> sessions = new HashMap<>();
+    private final Map<String, Deque<Integer>> failures = new HashMap<>();
+    private final Set<String> interrupted = new HashSet<>();
+    private final List<String> requests = new ArrayList<>();
+    private int revisions;
+    private boolean stuckOffset;
+
+    /**
+     * A file and its revision.
+     */
+    private static class StoredFile {
+        final String path;
+        final byte[] content;
+        final String rev;
+
+        StoredFile(String path, byte[] content, String rev) {
+            this.path = path;
+            this.content = content;
+            this.rev = rev;
+        }
+    }
+
+    /**
+     * Returns a client that sends its requests to this fake.
+     *
+     * @return the client
+     */
+    public DbxClientV2 client() {
+        return new DbxClientV2(DbxRequestConfig.newBuilder("test").withHttpRequestor(this).build(), "token");
+    }
+
+    /**
+     * Stores a file as if another computer had uploaded it.
+     *
+     * @param path Dropbox path of the file
+     * @param content content of the file
+     * @return the revision of the file
+     */
+    public synchronized String put(String path, String content) {
+        return store(path, content.getBytes(StandardCharsets.UTF_8)).rev;
+    }
+
+    /**
+     * Returns the content of a file.
+     *
+     * @param path Dropbox path of the file
+     * @return the content, or null if there is no file
+     */
+    public synchronized String content(String path) {
+        StoredFile file = files.get(path.toLowerCase());
+        return file == null ? null : new String(file.content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes the next requests to an endpoint fail.
+     *
+     * @param endpoint the endpoint, such as "upload_session/append_v2"
+     * @param statuses status codes of the failing responses, in order
+     */
+    public synchronized void fail(String endpoint, int... statuses) {
+        Deque<Integer> queue = failures.computeIfAbsent(endpoint, e -> new ArrayDeque<>());
+        for (int status : statuses) {
+            queue.add(status);
+        }
+    }
+
+    /**
+     * Makes requests to an endpoint fail as if the sending thread was interrupted.
+     *
+     * @param endpoint the endpoint, such as "upload_session/append_v2"
+     */
+    public synchronized void interrupt(String endpoint) {
+        interrupted.add(endpoint);
+    }
+
+    /**
+     * Makes every append to an upload session and every finish fail with
+     * incorrect_offset, reporting the offset the client sent as the correct one.
+     */
+    public synchronized void reportStuckOffset() {
+        stuckOffset = true;
+    }
+
+    /**
+     * Returns the endpoints requested so far.
+     *
+     * @return the endpoints in request order
+     */
+    public synchronized List<String> requests() {
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public Response doGet(String url, Iterable<Header> headers) throws IOException {
+        throw new IOException("GET is not supported: " + url);
+    }
+
+    @Override
+    public Uploader startPost(String url, Iterable<Header> headers) {
+        Map<String, String> map = new HashMap<>();
+        for (Header header : headers) {
+            map.put(header.getKey(), header.getValue());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        return new Uploader() {
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void abort() {
+            }
+
+            @Override
+            public Response finish() throws IOException {
+                String endpoint = URI.create(url).getPath().substring("/2/files/".length());
+                synchronized (FakeDropbox.this) {
+                    if (interrupted.contains(endpoint)) {
+                        requests.add(endpoint);
+                        throw new InterruptedIOException("Interrupted while sending");
+                    }
+                }
+                return handle(endpoint, map.get("Dropbox-API-Arg"), body.toByteArray());
+            }
+        };
+    }
+
+    @Override
+    public Uploader startPut(String url, Iterable<Header> headers) {
+        return startPost(url, headers);
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param endpoint the endpoint
+     * @param arg the argument header of content requests
+     * @param body the request body
+     * @return the response
+     */
+    private synchronized Response handle(String endpoint, String arg, byte[] body) {
+        requests.add(endpoint);
+        Deque<Integer> failing = failures.get(endpoint);
+        if (failing != null && !failing.isEmpty()) {
+            return response(failing.poll(), "failure");
+        }
+        JsonObject args = parse(arg != null ? arg : new String(body, StandardCharsets.UTF_8));
+        switch (endpoint) {
+            case "get_metadata": {
+                StoredFile file = files.get(((String) args.get("path")).toLowerCase());
+                return file == null ? notFound() : response(200, metadata(file));
+            }
+            case "download": {
+                StoredFile file = files.get(((String) args.get("path")).toLowerCase());
+                if (file == null || (args.has("rev") && !file.rev.equals(args.get("rev")))) {
+                    return notFound();
+                }
+                return new Response(200, new ByteArrayInputStream(file.content),
+                    Collections.singletonMap("Dropbox-API-Result", Collections.singletonList(metadata(file))));
+            }
+            case "upload":
+                return commit(args, body, false);
+            case "upload_session/start": {
+                String id = "session" + sessions.size();
+                ByteArrayOutputStream session = new ByteArrayOutputStream();
+                session.write(body, 0, body.length);
+                sessions.put(id, session);
+                return response(200, "{\"session_id\": \"" + id + "\"}");
+            }
+            case "upload_session/append_v2": {
+                ByteArrayOutputStream session = session((JsonObject) args.get("cursor"));
+                if (session == null) {
+                    return response(409, "{\"error\": {\".tag\": \"incorrect_offset\", \"correct_offset\": "
+                        + sessionSize(args) + "}}");
+                }
+                session.write(body, 0, body.length);
+                return response(200, "null");
+            }
+            case "upload_session/finish": {
+                ByteArrayOutputStream session = session((JsonObject) args.get("cursor"));
+                if (session == null) {
+                    return response(409, "{\"error\": {\".tag\": \"lookup_failed\", \"lookup_failed\": "
+                        + "{\".tag\": \"incorrect_offset\", \"correct_offset\": " + sessionSize(args) + "}}}");
+                }
+                session.write(body, 0, body.length);
+                return commit((JsonObject) args.get("commit"), session.toByteArray(), true);
+            }
+            default:
+                return response(400, "Unknown endpoint " + endpoint);
+        }
+    }
+
+    /**
+     * Returns the session of a cursor if the cursor's offset is right.
+     *
+     * @param cursor the cursor
+     * @return the session, or null if the offset is wrong
+     */
+    private ByteArrayOutputStream session(JsonObject cursor) {
+        ByteArrayOutputStream session = sessions.get((String) cursor.get("session_id"));
+        long offset = ((Number) cursor.get("offset")).longValue();
+        if (stuckOffset || offset != session.size()) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Returns the offset reported as correct for a session request.
+     *
+     * @param args arguments of the request
+     * @return the offset
+     */
+    private long sessionSize(JsonObject args) {
+        JsonObject cursor = (JsonObject) args.get("cursor");
+        if (stuckOffset) {
+            return ((Number) cursor.get("offset")).longValue();
+        }
+        return sessions.get((String) cursor.get("session_id")).size();
+    }
+
+    /**
+     * Saves an uploaded file, checking the write mode.
+     *
+     * @param commit path and mode of the upload
+     * @param content the uploaded bytes
+     * @param session true if the upload was a session
+     * @return the response
+     */
+    private Response commit(JsonObject commit, byte[] content, boolean session) {
+        String path = (String) commit.get("path");
+        StoredFile existing = files.get(path.toLowerCase());
+        Object mode = commit.get("mode");
+        String tag = mode instanceof JsonObject ? (String) ((JsonObject) mode).get(".tag") : (String) mode;
+        boolean conflict = existing != null && ("add".equals(tag) || tag == null
+            || "update".equals(tag) && !existing.rev.equals(((JsonObject) mode).get("update")));
+        if (conflict) {
+            String error = "{\".tag\": \"conflict\", \"conflict\": {\".tag\": \"file\"}}";
+            if (!session) {
+                error = "{\"reason\": " + error + ", \"upload_session_id\": \"none\"}";
+            }
+            return response(409, "{\"error\": {\".tag\": \"path\", \"path\": " + error + "}}");
+        }
+        return response(200, metadata(store(path, content)));
+    }
+
+    /**
+     * Stores a new revision of a file.
+     *
+     * @param path Dropbox path of the file
+     * @param content content of the file
+     * @return the stored file
+     */
+    private StoredFile store(String path, byte[] content) {
+        StoredFile file = new StoredFile(path, content, String.format("%09x", ++revisions));
+        files.put(path.toLowerCase(), file);
+        return file;
+    }
+
+    /**
+     * Describes a file like Dropbox does.
+     *
+     * @param file the file
+     * @return metadata of the file as json
+     */
+    private static String metadata(StoredFile file) {
+        ContentHash hash = new ContentHash();
+        try {
+            hash.write(file.content);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        String name = file.path.substring(file.path.lastIndexOf('/') + 1);
+        return "{\".tag\": \"file\", \"name\": \"" + name + "\", \"id\": \"id:" + name + "\", "
+            + "\"client_modified\": \"2020-01-01T00:00:00Z\", \"server_modified\": \"2020-01-01T00:00:00Z\", "
+            + "\"rev\": \"" + file.rev + "\", \"size\": " + file.content.length + ", "
+            + "\"path_lower\": \"" + file.path.toLowerCase() + "\", \"path_display\": \"" + file.path + "\", "
+            + "\"content_hash\": \"" + hash.digest() + "\"}";
+    }
+
+    /**
+     * Parses the arguments of a request.
+     *
+     * @param json the arguments
+     * @return the arguments as an object
+     */
+    private static JsonObject parse(String json) {
+        List<JsonObject> objects = new JsonUtil().stringToJson(json);
+        return objects.isEmpty() ? new JsonObject() : objects.get(0);
+    }
+
+    /**
+     * Answers that a path was not found.
+     *
+     * @return the response
+     */
+    private static Response notFound() {
+        return response(409, "{\"error_summary\": \"path/not_found/\", "
+            + "\"error\": {\".tag\": \"path\", \"path\": {\".tag\": \"not_found\"}}}");
+    }
+
+    /**
+     * Creates a response.
+     *
+     * @param status the status code
+     * @param body the body
+     * @return the response
+     */
+    private static Response response(int status, String body) {
+        return new Response(status, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+            Collections.emptyMap());
+    }
+}
@@ -0,0 +1,130 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import junit.framework.TestCase;
+
+/**
+ * Tests for importing json files with ImportTask. The task is run on the test's
+ * thread, with its messages and progress recorded instead of sent to JavaFX.
+ *
+ * @author Laura Kanerva.
+ */
+public class ImportTaskTest extends TestCase {
+    private final List<File> files = new ArrayList<>();
+    private final List<List<Item>> batches = Collections.synchronizedList(new ArrayList<>());
+    private volatile String message;
+    private volatile double progress = -1;
+
+    @Override
+    protected void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testBatchesArriveInFileOrderWhileParsing() throws Exception {
+        list("a", 5000);
+        list("b", 10);
+        list("c", 2500);
+        List<Double> progressAtFirstBatch = new ArrayList<>();
+        int count = run(batch -> {
+            if (batches.isEmpty()) {
+                progressAtFirstBatch.add(progress);
+            }
+            batches.add(batch);
+        });
+        assertEquals(7510, count);
+        assertEquals("Imported 7510 items", message);
+        // the first batch was handed on before the first file had been read to its end
+        assertTrue(progressAtFirstBatch.get(0) < 0.5);
+
+        List<String> names = new ArrayList<>();
+        for (List<Item> batch : batches) {
+            assertTrue(batch.size() <= 1000);
+            for (Item item : batch) {
+                names.add(item.getItem());
+            }
+        }
+        assertEquals(count, names.size());
+        assertEquals("a 0", names.get(0));
+        assertEquals("a 4999", names.get(4999));
+        assertEquals("b 0", names.get(5000));
+        assertEquals("c 2499", names.get(7509));
+        for (int i = 1; i < names.size(); i++) {
+            assertTrue(names.get(i - 1) + " before " + names.get(i), order(names.get(i - 1)) < order(names.get(i)));
+        }
+    }
+
+    public void testFailedFilesAreReported() throws Exception {
+        list("a", 3);
+        File malformed = file("[{\"item\": \"milk\", \"amount\": 2},\n{\"item\": \"flour\", \"amount\": 1.5}]");
+        File missing = new File(malformed.getPath() + ".missing");
+        files.add(missing);
+        list("d", 2);
+        int count = run(batches::add);
+        assertEquals(6, count);
+        assertTrue(message, message.startsWith("Imported 6 items, 2 file(s) failed: " + malformed.getName() + ": "));
+        assertTrue(message, message.contains("; " + missing.getName() + ": "));
+        List<String> names = new ArrayList<>();
+        for (List<Item> batch : batches) {
+            for (Item item : batch) {
+                names.add(item.getItem());
+            }
+        }
+        assertEquals(List.of("a 0", "a 1", "a 2", "milk", "d 0", "d 1"), names);
+    }
+
+    /**
+     * Runs an import of the files on this thread.
+     */
+    private int run(Consumer<List<Item>> sink) throws Exception {
+        ImportTask task = new ImportTask(files, sink) {
+            @Override
+            protected void updateMessage(String text) {
+                message = text;
+            }
+
+            @Override
+            protected void updateProgress(double done, double max) {
+                progress = done / max;
+            }
+        };
+        return task.call();
+    }
+
+    /**
+     * Returns a number that grows with the file letter and item number of a name.
+     */
+    private static long order(String name) {
+        return name.charAt(0) * 1000000L + Integer.parseInt(name.substring(2));
+    }
+
+    /**
+     * Writes a list file with items named by the letter and their number.
+     */
+    private void list(String letter, int items) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            sb.append(i == 0 ? "\n\t{" : ",\n\t{")
+                .append("\"item\": \"").append(letter).append(' ').append(i).append("\", \"amount\": 1}");
+        }
+        file(sb.append("\n]").toString());
+    }
+
+    /**
+     * Writes a temporary file that is deleted after the test.
+     */
+    private File file(String content) throws IOException {
+        File file = File.createTempFile("import", ".json");
+        files.add(file);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
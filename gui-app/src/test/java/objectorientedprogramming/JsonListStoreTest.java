@@ -0,0 +1,51 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for reading items from json lists.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonListStoreTest extends TestCase {
+
+    public void testReadsWholeAmounts() throws IOException {
+        List<Item> items = read("[{\"item\": \"milk\", \"amount\": 2}, {\"item\": \"eggs\", \"amount\": 6.0},"
+            + " {\"amount\": 1e1, \"item\": \"rolls\", \"organic\": true}]");
+        assertEquals(3, items.size());
+        assertEquals("milk", items.get(0).getItem());
+        assertEquals(2, items.get(0).getAmount());
+        assertEquals(6, items.get(1).getAmount());
+        assertEquals("rolls", items.get(2).getItem());
+        assertEquals(10, items.get(2).getAmount());
+    }
+
+    public void testRejectsFractionalAmount() throws IOException {
+        try {
+            read("[{\"item\": \"milk\", \"amount\": 2},\n {\"item\": \"flour\", \"amount\": 1.5}]");
+            fail("1.5 should not be rounded");
+        } catch (JsonParseException e) {
+            assertEquals(2, e.getLine());
+            assertTrue(e.getMessage(), e.getMessage().contains("amount"));
+        }
+    }
+
+    public void testRejectsAmountOutOfRange() throws IOException {
+        try {
+            read("[{\"item\": \"milk\", \"amount\": 1e10}]");
+            fail();
+        } catch (JsonParseException e) {
+            assertEquals(1, e.getLine());
+        }
+    }
+
+    /**
+     * Reads the items of a json document.
+     */
+    private static List<Item> read(String json) throws IOException {
+        return JsonListStore.read(new JsonReader(new StringReader(json)));
+    }
+}
@@ -0,0 +1,79 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the positions kept by OrderStatisticTree.
+ *
+ * @author Laura Kanerva.
+ */
+public class OrderStatisticTreeTest extends TestCase {
+    private final OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+
+    public void testRandomOperationsMatchSortedList() {
+        Random random = new Random(18);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Integer value = random.nextInt(500);
+            int index = Collections.binarySearch(expected, value);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    if (index < 0) {
+                        expected.add(-index - 1, value);
+                        assertEquals(-index - 1, tree.add(value));
+                    }
+                    break;
+                case 2:
+                    if (index >= 0) {
+                        expected.remove(index);
+                    }
+                    assertEquals(Math.max(index, -1), tree.remove(value));
+                    break;
+                default:
+                    assertEquals(Math.max(index, -1), tree.indexOf(value));
+                    break;
+            }
+            assertEquals(expected.size(), tree.size());
+            if (!expected.isEmpty()) {
+                int position = random.nextInt(expected.size());
+                assertEquals(expected.get(position), tree.get(position));
+            }
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), tree.get(i));
+            assertEquals(i, tree.indexOf(expected.get(i)));
+        }
+    }
+
+    public void testGetOutsideTreeThrows() {
+        tree.add(1);
+        try {
+            tree.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            tree.get(-1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testClear() {
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.indexOf(5));
+        assertEquals(0, tree.add(5));
+    }
+}
@@ -0,0 +1,195 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Tests for keeping shopping list names unique and searching them.
+ *
+ * @author Laura Kanerva.
+ */
+public class ShoppingListTest extends TestCase {
+    private final ShoppingList list = new ShoppingList();
+
+    public void testAddMergesSameName() {
+        Item milk = list.add(new Item(1, "Milk"));
+        assertSame(milk, list.add(new Item(2, " milk ")));
+        assertEquals(Arrays.asList("Milk 3"), names());
+    }
+
+    public void testSetAllMergesWithoutChangingCallersItems() {
+        Item first = new Item(1, "milk");
+        Item second = new Item(2, "bread");
+        Item third = new Item(3, "MILK");
+        list.setAll(Arrays.asList(first, second, third));
+        assertEquals(Arrays.asList("milk 4", "bread 2"), names());
+        assertEquals(1, first.getAmount());
+        assertEquals(3, third.getAmount());
+        assertSame(second, list.find("bread"));
+        assertSame(list.getItems().get(0), list.find("milk"));
+    }
+
+    public void testAddAllMergesWithoutChangingCallersItems() {
+        Item onList = list.add(new Item(1, "eggs"));
+        Item first = new Item(1, "milk");
+        Item second = new Item(2, "milk");
+        Item eggs = new Item(5, "eggs");
+        list.addAll(Arrays.asList(first, second, eggs));
+        assertEquals(Arrays.asList("eggs 6", "milk 3"), names());
+        assertSame(onList, list.find("eggs"));
+        assertEquals(1, first.getAmount());
+        assertEquals(2, second.getAmount());
+        assertEquals(5, eggs.getAmount());
+        assertEquals(2, list.search("milk").size() + list.search("eggs").size());
+    }
+
+    public void testRemoveAndRename() {
+        list.setAll(Arrays.asList(new Item(1, "milk"), new Item(2, "bread"), new Item(3, "eggs")));
+        assertTrue(list.remove("BREAD"));
+        assertFalse(list.remove("bread"));
+        list.rename(list.find("eggs"), "milk");
+        assertEquals(Arrays.asList("milk 4"), names());
+    }
+
+    public void testSearchMatchesWordPrefixes() {
+        list.setAll(items("Oat drink", "oatmeal", "Dark chocolate", "chocolate milk", "milk"));
+        assertEquals(set("Oat drink", "oatmeal"), found("oat"));
+        assertEquals(set("Oat drink"), found("dr"));
+        assertEquals(set("chocolate milk", "milk"), found("MILK"));
+        assertEquals(set(), found("at"));
+        assertEquals(set(), found("coffee"));
+    }
+
+    public void testSearchNeedsEveryQueryWord() {
+        list.setAll(items("Dark chocolate", "chocolate milk", "milk", "milk chocolate bar"));
+        assertEquals(set("chocolate milk", "milk chocolate bar"), found("choc mi"));
+        assertEquals(set("chocolate milk", "milk chocolate bar"), found("mi choc"));
+        assertEquals(set("milk chocolate bar"), found("ba mil ch"));
+        assertEquals(set(), found("milk dark"));
+    }
+
+    public void testSearchIgnoresCaseAndWhiteSpace() {
+        list.setAll(items("Oat drink", "  Soy   Drink "));
+        assertEquals(set("Oat drink"), found("  OAT   Dr  "));
+        assertEquals(set("Oat drink", "  Soy   Drink "), found("\tdrink\n"));
+        assertEquals(set(), found("   "));
+        assertEquals(set(), found(""));
+    }
+
+    public void testSearchResultFollowsChanges() {
+        list.setAll(items("milk", "chocolate milk", "bread"));
+        Set<Item> result = list.search("mil");
+        list.add(new Item(1, "soy milk"));
+        list.add(new Item(1, "eggs"));
+        assertEquals(set("milk", "chocolate milk", "soy milk"), names(result));
+        list.rename(list.find("milk"), "cream");
+        assertEquals(set("chocolate milk", "soy milk"), names(result));
+        list.rename(list.find("bread"), "Milk bread");
+        assertEquals(set("chocolate milk", "soy milk", "Milk bread"), names(result));
+        list.remove("chocolate milk");
+        // merging removes the renamed item
+        list.rename(list.find("soy milk"), "cream");
+        assertEquals(set("Milk bread"), names(result));
+        list.clear();
+        assertTrue(result.isEmpty());
+    }
+
+    public void testSearchMatchesScanOfList() {
+        String[] words = {"oat", "oats", "drink", "milk", "dark", "chocolate", "soy", "bar"};
+        Random random = new Random(17);
+        for (int i = 0; i < 2000; i++) {
+            String name = words[random.nextInt(words.length)];
+            if (random.nextBoolean()) {
+                name += " " + words[random.nextInt(words.length)];
+            }
+            List<Item> items = list.getItems();
+            if (items.isEmpty() || random.nextInt(3) > 0) {
+                list.add(new Item(1, random.nextBoolean() ? name : name.toUpperCase()));
+            } else if (random.nextBoolean()) {
+                list.rename(items.get(random.nextInt(items.size())), name);
+            } else {
+                list.remove(items.get(random.nextInt(items.size())));
+            }
+            String query = words[random.nextInt(words.length)].substring(0, 1 + random.nextInt(2))
+                + (random.nextBoolean() ? " " + words[random.nextInt(words.length)].substring(0, 2) : "");
+            Set<Item> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Item item : list.getItems()) {
+                if (matches(item.getItem(), query)) {
+                    expected.add(item);
+                }
+            }
+            assertEquals(query, expected, list.search(query));
+        }
+    }
+
+    /**
+     * Returns the items as "name amount" strings.
+     */
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (Item item : list.getItems()) {
+            names.add(item.getItem() + " " + item.getAmount());
+        }
+        return names;
+    }
+
+    /**
+     * Creates items with amount 1.
+     */
+    private static List<Item> items(String... names) {
+        List<Item> items = new ArrayList<>();
+        for (String name : names) {
+            items.add(new Item(1, name));
+        }
+        return items;
+    }
+
+    /**
+     * Returns the names of the items matching a query.
+     */
+    private Set<String> found(String query) {
+        return names(list.search(query));
+    }
+
+    /**
+     * Returns the names of items.
+     */
+    private static Set<String> names(Set<Item> items) {
+        Set<String> names = new HashSet<>();
+        for (Item item : items) {
+            names.add(item.getItem());
+        }
+        return names;
+    }
+
+    /**
+     * Returns a set of names.
+     */
+    private static Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * Tells whether each query word starts a word of the name, by scanning the words.
+     */
+    private static boolean matches(String name, String query) {
+        for (String q : query.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+            boolean found = false;
+            for (String w : name.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+                found |= w.startsWith(q);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javafx.collections.ListChangeListener;
+import junit.framework.TestCase;
+
+/**
+ * Tests that SortedView stays sorted while the shopping list is edited.
+ *
+ * @author Laura Kanerva.
+ */
+public class SortedViewTest extends TestCase {
+    private static final String[] NAMES = {"milk", "Bread", "eggs", "butter", "Cheese", "apples", "coffee", "rice",
+        "pasta", "onions"};
+    private static final Comparator<Item> BY_NAME = Comparator.comparing(item -> ShoppingList.normalize(item.getItem()));
+    private static final Comparator<Item> BY_AMOUNT = Comparator.comparingInt(Item::getAmount).thenComparing(BY_NAME);
+
+    private final ShoppingList list = new ShoppingList();
+    private final SortedView view = new SortedView();
+    private final List<Item> mirror = new ArrayList<>();
+
+    @Override
+    protected void setUp() {
+        list.addListener(view);
+        // applies the reported changes to a copy, to check that they describe the view
+        view.addListener((ListChangeListener<Item>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    List<Item> old = new ArrayList<>(mirror);
+                    for (int i = change.getFrom(); i < change.getTo(); i++) {
+                        mirror.set(change.getPermutation(i), old.get(i));
+                    }
+                } else {
+                    for (int i = 0; i < change.getRemovedSize(); i++) {
+                        mirror.remove(change.getFrom());
+                    }
+                    mirror.addAll(change.getFrom(), change.getAddedSubList());
+                }
+            }
+        });
+    }
+
+    public void testSortsByAmountAndName() {
+        list.setAll(Arrays.asList(new Item(3, "milk"), new Item(1, "Bread"), new Item(3, "butter")));
+        assertEquals(Arrays.asList("milk", "Bread", "butter"), names());
+        view.sort(SortedView.Order.AMOUNT, false);
+        assertEquals(Arrays.asList("Bread", "butter", "milk"), names());
+        view.sort(SortedView.Order.NAME, true);
+        assertEquals(Arrays.asList("milk", "butter", "Bread"), names());
+        assertEquals(mirror, view);
+    }
+
+    public void testStaysSortedWhileEdited() {
+        Random random = new Random(18);
+        SortedView.Order[] orders = SortedView.Order.values();
+        for (int i = 0; i < 3000; i++) {
+            if (i % 100 == 0) {
+                view.sort(orders[random.nextInt(orders.length)], random.nextBoolean());
+            }
+            List<Item> items = list.getItems();
+            int operation = items.isEmpty() ? 0 : random.nextInt(5);
+            switch (operation) {
+                case 0:
+                    list.add(new Item(1 + random.nextInt(5), NAMES[random.nextInt(NAMES.length)] + random.nextInt(5)));
+                    break;
+                case 1:
+                    list.remove(items.get(random.nextInt(items.size())));
+                    break;
+                case 2:
+                case 3:
+                    list.setAmount(items.get(random.nextInt(items.size())), 1 + random.nextInt(5));
+                    break;
+                default:
+                    String name = NAMES[random.nextInt(NAMES.length)] + random.nextInt(5);
+                    list.rename(items.get(random.nextInt(items.size())), random.nextBoolean() ? name : name.toUpperCase());
+                    break;
+            }
+            assertEquals(expected(), view);
+            assertEquals(view, mirror);
+            long total = 0;
+            for (Item item : items) {
+                total += item.getAmount();
+            }
+            assertEquals(total, view.getTotalAmount());
+        }
+    }
+
+    public void testTopHasLargestAmounts() {
+        list.setAll(Arrays.asList(new Item(2, "milk"), new Item(7, "eggs"), new Item(5, "rice"), new Item(1, "tea")));
+        list.setAmount(list.find("tea"), 9);
+        List<String> top = new ArrayList<>();
+        for (Item item : view.top(3)) {
+            top.add(item.getItem());
+        }
+        assertEquals(Arrays.asList("tea", "eggs", "rice"), top);
+    }
+
+    /**
+     * Returns the list sorted the way the view currently is.
+     */
+    private List<Item> expected() {
+        List<Item> expected = new ArrayList<>(list.getItems());
+        if (view.getOrder() == SortedView.Order.AMOUNT) {
+            expected.sort(BY_AMOUNT);
+        } else if (view.getOrder() == SortedView.Order.NAME) {
+            expected.sort(BY_NAME);
+        }
+        if (view.isDescending()) {
+            Collections.reverse(expected);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the names in the view.
+     */
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (Item item : view) {
+            names.add(item.getItem());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,102 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for syncing lists with a fake Dropbox.
+ *
+ * @author Laura Kanerva.
+ */
+public class SyncEngineTest extends TestCase {
+    private static final String PATH = "/Shopping.json";
+
+    private File directory;
+    private FakeDropbox dropbox;
+    private SyncEngine engine;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("sync").toFile();
+        dropbox = new FakeDropbox();
+        engine = new SyncEngine(dropbox.client(), directory);
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testFirstSyncUploadsList() throws Exception {
+        List<Item> synced = engine.sync(PATH, items("milk 1", "bread 2"));
+        assertEquals(Arrays.asList("milk 1", "bread 2"), names(synced));
+        assertTrue(dropbox.content(PATH).contains("\"bread\""));
+        assertEquals(Arrays.asList("milk 1", "bread 2"), names(new SyncEngine(dropbox.client(), directory)
+            .sync(PATH, new ArrayList<>(synced))));
+    }
+
+    public void testLocalAndRemoteEditsAreMerged() throws Exception {
+        engine.sync(PATH, items("milk 1", "bread 2"));
+        dropbox.put(PATH, "[{\"item\": \"milk\", \"amount\": 1}, {\"item\": \"bread\", \"amount\": 2},"
+            + " {\"item\": \"eggs\", \"amount\": 6}]");
+        List<Item> synced = engine.sync(PATH, items("milk 3", "bread 2"));
+        assertEquals(Arrays.asList("milk 3", "bread 2", "eggs 6"), names(synced));
+        assertTrue(dropbox.content(PATH).contains("\"eggs\""));
+    }
+
+    public void testEditsDuringSyncAreKept() throws Exception {
+        List<Item> list = items("milk 1", "bread 2");
+        engine.sync(PATH, list);
+        dropbox.put(PATH, "[{\"item\": \"milk\", \"amount\": 1}, {\"item\": \"bread\", \"amount\": 2},"
+            + " {\"item\": \"eggs\", \"amount\": 6}]");
+
+        // the app syncs a copy of the list and keeps the copy as the base
+        List<Item> started = items("milk 1", "bread 2");
+        List<Item> synced = engine.sync(PATH, items("milk 1", "bread 2"));
+        list.get(0).setAmount(4);
+        list.add(new Item(1, "butter"));
+        List<Item> merged = ListMerge.merge(started, list, synced);
+
+        assertEquals(Arrays.asList("milk 4", "bread 2", "butter 1", "eggs 6"), names(merged));
+    }
+
+    public void testUnchangedListIsNotReplaced() throws Exception {
+        List<Item> list = items("milk 1", "bread 2");
+        List<Item> started = items("milk 1", "bread 2");
+        List<Item> synced = engine.sync(PATH, items("milk 1", "bread 2"));
+        List<Item> merged = ListMerge.merge(started, list, synced);
+        assertEquals(list, merged);
+    }
+
+    /**
+     * Creates items from "name amount" strings.
+     */
+    private static List<Item> items(String... items) {
+        List<Item> list = new ArrayList<>();
+        for (String item : items) {
+            int space = item.lastIndexOf(' ');
+            list.add(new Item(Integer.parseInt(item.substring(space + 1)), item.substring(0, space)));
+        }
+        return list;
+    }
+
+    /**
+     * Returns items as "name amount" strings.
+     */
+    private static List<String> names(List<Item> items) {
+        List<String> names = new ArrayList<>();
+        for (Item item : items) {
+            names.add(item.getItem() + " " + item.getAmount());
+        }
+        return names;
+    }
+}
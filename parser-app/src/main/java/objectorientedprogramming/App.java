@@ -1,11 +1,524 @@
 package objectorientedprogramming;
 
-import java.util.Arrays;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Class for testing JsonObject and JsonUtil classes.
+ * Command line tool for processing shopping list json files without the GUI, for
+ * example in nightly batch jobs. The files are read in parallel by a BatchPipeline
+ * and the throughput is reported on standard error.
+ * <pre>
+ * convert   -o DIR  FILES   rewrite each file into DIR in the app's format
+ * merge     -o FILE FILES   write the objects of all files into one file
+ * dedupe    -o FILE FILES   merge, adding up the amounts of items with the same name
+ * validate  FILES           check that every object has a name and an amount
+ * summarize FILES           print counts, the total amount and the largest items
+ * </pre>
+ * A directory among the inputs stands for the .json files under it. An output
+ * that would overwrite an input is refused, as is a convert directory holding
+ * inputs. The exit status is 0 on success, 1 if some file was not valid and 2
+ * for usage errors.
+ *
+ * @author Laura Kanerva.
  */
 public class App {
-    public static void main( String[] args ) {
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "usage: parser-app <command> [-o output] [-j threads] [-q] <files or directories>",
+        "commands:",
+        "  convert   -o DIR   rewrite each file into DIR in the app's format",
+        "  merge     -o FILE  write the objects of all files into one file",
+        "  dedupe    -o FILE  merge, adding up the amounts of items with the same name",
+        "  validate           check that every object has a name and an amount",
+        "  summarize          print counts, the total amount and the largest items",
+        "options:",
+        "  -o   output file or directory",
+        "  -j   number of files read at the same time, default: number of processors",
+        "  -q   no progress reports");
+    private static final int TOP_ITEMS = 10;
+
+    /**
+     * Private constructor, class only has static methods.
+     */
+    private App() {
+
+    }
+
+    /**
+     * Runs a command and exits with its status.
+     *
+     * @param args the command, its options and the input files
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the arguments and runs a command.
+     *
+     * @param args the command, its options and the input files
+     * @return the exit status
+     */
+    static int run(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        String command = args[0];
+        File output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        List<File> inputs = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("-o") && i + 1 < args.length) {
+                    output = new File(args[++i]);
+                } else if (args[i].equals("-j") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-q")) {
+                    quiet = true;
+                } else if (args[i].startsWith("-")) {
+                    return usage("Unknown option " + args[i]);
+                } else {
+                    addInputs(new File(args[i]), inputs);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return usage("Not a number: " + e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        if (inputs.isEmpty()) {
+            return usage("No input files");
+        }
+
+        BatchPipeline pipeline = new BatchPipeline(threads);
+        BatchPipeline.Transform transform;
+        BatchPipeline.Sink sink;
+        Problems problems = new Problems();
+        try {
+            switch (command) {
+                case "convert":
+                    if (output == null) {
+                        return usage("convert needs -o DIR");
+                    }
+                    if (overwritesInput(output, inputs, true)) {
+                        return 2;
+                    }
+                    transform = batch -> batch;
+                    sink = new Converter(output, problems);
+                    break;
+                case "merge":
+                    if (output == null) {
+                        return usage("merge needs -o FILE");
+                    }
+                    if (overwritesInput(output, inputs, false)) {
+                        return 2;
+                    }
+                    transform = batch -> batch;
+                    sink = new Merger(output, problems);
+                    break;
+                case "dedupe":
+                    if (output == null) {
+                        return usage("dedupe needs -o FILE");
+                    }
+                    if (overwritesInput(output, inputs, false)) {
+                        return 2;
+                    }
+                    transform = batch -> batch.withObjects(ItemTotals.combine(batch.getObjects()));
+                    sink = new Deduper(output, problems);
+                    break;
+                case "validate":
+                    transform = App::validate;
+                    sink = new Validator(problems);
+                    break;
+                case "summarize":
+                    transform = batch -> batch.withObjects(ItemTotals.combine(batch.getObjects()));
+                    sink = new Summarizer(pipeline, problems);
+                    break;
+                default:
+                    return usage("Unknown command " + command);
+            }
+            pipeline.run(inputs, transform, sink, quiet ? null : System.err);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+        System.err.println(pipeline.report());
+        return problems.count == 0 ? 0 : 1;
+    }
+
+    /**
+     * Prints a usage error.
+     *
+     * @param message what was wrong
+     * @return the exit status for usage errors
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    /**
+     * Checks that writing the output does not destroy an input. Paths are compared
+     * in canonical form, so relative paths, "." and symbolic links are seen through.
+     *
+     * @param output the output file, or the output directory of convert
+     * @param inputs the input files
+     * @param directory true if the output is a directory, which must not hold inputs
+     * @return true if an input would be overwritten, after printing which one
+     * @throws IOException if a canonical path cannot be found
+     */
+    private static boolean overwritesInput(File output, List<File> inputs, boolean directory) throws IOException {
+        Path target = output.getCanonicalFile().toPath();
+        for (File input : inputs) {
+            Path path = input.getCanonicalFile().toPath();
+            if (directory ? path.startsWith(target) : path.equals(target)) {
+                System.err.println("Output " + output + " would overwrite the input " + input);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an input, or the .json files under it if it is a directory.
+     *
+     * @param input a file or a directory
+     * @param inputs the list of inputs
+     * @throws IOException if the input does not exist or a directory cannot be read
+     */
+    private static void addInputs(File input, List<File> inputs) throws IOException {
+        if (input.isDirectory()) {
+            try (Stream<Path> paths = Files.walk(input.toPath())) {
+                inputs.addAll(paths
+                    .filter(p -> Files.isRegularFile(p) && p.toString().toLowerCase(Locale.ROOT).endsWith(".json"))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList()));
+            }
+        } else if (input.isFile()) {
+            inputs.add(input);
+        } else {
+            throw new IOException("No such file: " + input);
+        }
+    }
+
+    /**
+     * Checks the objects of a batch. Every object must have a name that is not
+     * blank and an amount that is a number and not negative.
+     *
+     * @param batch the batch
+     * @return a batch with an object for each problem, holding the index of the
+     *     object in the file and a description
+     */
+    private static BatchPipeline.Batch validate(BatchPipeline.Batch batch) {
+        List<JsonObject> found = new ArrayList<>();
+        List<JsonObject> objects = batch.getObjects();
+        for (int i = 0; i < objects.size(); i++) {
+            JsonObject jo = objects.get(i);
+            Object name = jo.get("item");
+            Object amount = jo.get("amount");
+            String problem = null;
+            if (!(name instanceof String) || ((String) name).isBlank()) {
+                problem = "no item name";
+            } else if (!(amount instanceof Number)) {
+                problem = "amount is not a number";
+            } else if (!(((Number) amount).doubleValue() >= 0)) {
+                problem = "amount is negative";
+            }
+            if (problem != null) {
+                JsonObject report = new JsonObject();
+                report.add("object", batch.getOffset() + i);
+                report.add("problem", problem);
+                found.add(report);
+            }
+        }
+        return batch.withObjects(found);
+    }
+
+    /**
+     * Counts and prints the problems found in the files.
+     */
+    private static class Problems {
+        int count;
+
+        /**
+         * Prints a file that could not be read, and counts it.
+         *
+         * @param batch a batch with an error
+         * @return true if the batch had an error
+         */
+        boolean failed(BatchPipeline.Batch batch) {
+            if (batch.getError() == null) {
+                return false;
+            }
+            report(batch.getFile() + ": " + batch.getError().getMessage());
+            return true;
+        }
+
+        /**
+         * Prints a problem and counts it.
+         *
+         * @param message the problem
+         */
+        void report(String message) {
+            count++;
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Writes each input into its own file in the output directory.
+     */
+    private static class Converter implements BatchPipeline.Sink {
+        private final File directory;
+        private final Problems problems;
+        private final Map<File, JsonWriter> writers = new HashMap<>();
+        private final Map<File, File> outputs = new HashMap<>();
+        private final Set<String> names = new HashSet<>();
+
+        /**
+         * Class constructor.
+         *
+         * @param directory the output directory, created if needed
+         * @param problems counts the problems
+         * @throws IOException if the directory cannot be created
+         */
+        Converter(File directory, Problems problems) throws IOException {
+            this.directory = directory;
+            this.problems = problems;
+            Files.createDirectories(directory.toPath());
+        }
+
+        @Override
+        public void accept(BatchPipeline.Batch batch) throws IOException {
+            File input = batch.getFile();
+            if (problems.failed(batch)) {
+                JsonWriter writer = writers.remove(input);
+                if (writer != null) {
+                    writer.close();
+                    Files.delete(outputs.get(input).toPath());
+                }
+                return;
+            }
+            JsonWriter writer = writers.get(input);
+            if (writer == null) {
+                File output = output(input);
+                outputs.put(input, output);
+                writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+                writer.beginArray();
+                writers.put(input, writer);
+            }
+            for (JsonObject jo : batch.getObjects()) {
+                writer.writeObject(jo);
+            }
+            if (batch.isLast()) {
+                writer.endArray();
+                writer.close();
+                writers.remove(input);
+            }
+        }
+
+        @Override
+        public void finish() {
+
+        }
+
+        /**
+         * Chooses the output file of an input, adding a number to names that are
+         * already taken.
+         *
+         * @param input the input file
+         * @return the output file
+         */
+        private File output(File input) {
+            String name = input.getName();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String candidate = base + ".json";
+            for (int n = 2; !names.add(candidate); n++) {
+                candidate = base + "-" + n + ".json";
+            }
+            return new File(directory, candidate);
+        }
+    }
+
+    /**
+     * Writes the objects of every input into one json array.
+     */
+    private static class Merger implements BatchPipeline.Sink {
+        private final Problems problems;
+        private final JsonWriter writer;
+
+        /**
+         * Class constructor.
+         *
+         * @param output the output file
+         * @param problems counts the problems
+         * @throws IOException if the file cannot be created
+         */
+        Merger(File output, Problems problems) throws IOException {
+            this.problems = problems;
+            writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+            writer.beginArray();
+        }
+
+        @Override
+        public void accept(BatchPipeline.Batch batch) throws IOException {
+            if (!problems.failed(batch)) {
+                for (JsonObject jo : batch.getObjects()) {
+                    writer.writeObject(jo);
+                }
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.endArray();
+            writer.close();
+        }
+    }
+
+    /**
+     * Adds up the amounts of every input and writes one object per name.
+     */
+    private static class Deduper implements BatchPipeline.Sink {
+        private final File output;
+        private final Problems problems;
+        private final ItemTotals totals = new ItemTotals();
+
+        /**
+         * Class constructor.
+         *
+         * @param output the output file
+         * @param problems counts the problems
+         */
+        Deduper(File output, Problems problems) {
+            this.output = output;
+            this.problems = problems;
+        }
+
+        @Override
+        public void accept(BatchPipeline.Batch batch) {
+            if (!problems.failed(batch)) {
+                for (JsonObject jo : batch.getObjects()) {
+                    totals.add(jo);
+                }
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try (JsonWriter writer = new JsonWriter(
+                    new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+                writer.beginArray();
+                for (JsonObject jo : totals.objects()) {
+                    writer.writeObject(jo);
+                }
+                writer.endArray();
+            }
+        }
+    }
+
+    /**
+     * Prints the problems found by the validation.
+     */
+    private static class Validator implements BatchPipeline.Sink {
+        private final Problems problems;
+
+        /**
+         * Class constructor.
+         *
+         * @param problems counts the problems
+         */
+        Validator(Problems problems) {
+            this.problems = problems;
+        }
+
+        @Override
+        public void accept(BatchPipeline.Batch batch) {
+            if (!problems.failed(batch)) {
+                for (JsonObject jo : batch.getObjects()) {
+                    problems.report(batch.getFile() + ": object " + jo.get("object") + ": " + jo.get("problem"));
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+
+        }
+    }
+
+    /**
+     * Prints counts, the total amount and the largest items of every input.
+     */
+    private static class Summarizer implements BatchPipeline.Sink {
+        private final BatchPipeline pipeline;
+        private final Problems problems;
+        private final ItemTotals totals = new ItemTotals();
+
+        /**
+         * Class constructor.
+         *
+         * @param pipeline the pipeline, for the number of files and objects
+         * @param problems counts the problems
+         */
+        Summarizer(BatchPipeline pipeline, Problems problems) {
+            this.pipeline = pipeline;
+            this.problems = problems;
+        }
+
+        @Override
+        public void accept(BatchPipeline.Batch batch) {
+            if (!problems.failed(batch)) {
+                for (JsonObject jo : batch.getObjects()) {
+                    totals.add(jo);
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            System.out.println("Files:        " + pipeline.getFiles() + " (" + pipeline.getFailed() + " failed)");
+            System.out.println("Objects:      " + pipeline.getObjects());
+            System.out.println("Items:        " + totals.names());
+            System.out.println("Total amount: " + format(totals.getTotalAmount()));
+            System.out.println("Largest:");
+            for (JsonObject jo : totals.top(TOP_ITEMS)) {
+                System.out.println(String.format(Locale.ROOT, "%12s  %s", format(ItemTotals.amount(jo)), jo.get("item")));
+            }
+        }
+
+        /**
+         * Formats an amount without a fraction when it is a whole number.
+         *
+         * @param amount the amount
+         * @return the amount as text
+         */
+        private static String format(double amount) {
+            return amount == Math.rint(amount) && Math.abs(amount) < 1e15
+                ? Long.toString((long) amount) : Double.toString(amount);
+        }
     }
 }
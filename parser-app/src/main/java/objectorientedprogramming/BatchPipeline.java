@@ -0,0 +1,379 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes many json files in three stages connected by bounded queues. Reader
+ * threads parse files in parallel and pass their objects on in batches, one
+ * thread transforms the batches, and the calling thread hands them to a sink.
+ * A full queue blocks the stage before it, so memory use depends on the queue
+ * sizes and not on the number or size of the files. The batches of one file stay
+ * in file order, but the files may finish in any order.
+ *
+ * @author Laura Kanerva.
+ */
+public class BatchPipeline {
+    /** Number of objects in a full batch. */
+    public static final int BATCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final Batch END = new Batch(null, 0, List.of(), true, null);
+
+    private final int threads;
+    private final JsonUtil jutil = new JsonUtil();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private long startTime;
+    private volatile boolean reported;
+
+    /**
+     * Transforms a batch between reading and writing.
+     */
+    public interface Transform {
+        /**
+         * Transforms a batch.
+         *
+         * @param batch the batch
+         * @return the transformed batch
+         * @throws IOException if the batch is not valid
+         */
+        Batch apply(Batch batch) throws IOException;
+    }
+
+    /**
+     * Receives the transformed batches on the thread that runs the pipeline.
+     */
+    public interface Sink {
+        /**
+         * Handles a batch.
+         *
+         * @param batch the batch
+         * @throws IOException if writing fails, which stops the pipeline
+         */
+        void accept(Batch batch) throws IOException;
+
+        /**
+         * Called after the last batch.
+         *
+         * @throws IOException if writing fails
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * Objects read from one file. The last batch of a file is marked, and a file
+     * that could not be read ends with a batch holding the error.
+     */
+    public static class Batch {
+        private final File file;
+        private final long offset;
+        private final List<JsonObject> objects;
+        private final boolean last;
+        private final IOException error;
+
+        /**
+         * Class constructor.
+         *
+         * @param file the file the objects are from
+         * @param offset number of objects of the file before this batch
+         * @param objects the objects
+         * @param last true for the last batch of the file
+         * @param error why reading the file failed, or null
+         */
+        public Batch(File file, long offset, List<JsonObject> objects, boolean last, IOException error) {
+            this.file = file;
+            this.offset = offset;
+            this.objects = objects;
+            this.last = last;
+            this.error = error;
+        }
+
+        /**
+         * Creates a batch from the same place of the same file with other objects.
+         *
+         * @param newObjects the objects
+         * @return the new batch
+         */
+        public Batch withObjects(List<JsonObject> newObjects) {
+            return new Batch(file, offset, newObjects, last, error);
+        }
+
+        /**
+         * Returns the file the objects are from.
+         *
+         * @return the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the number of objects of the file before this batch.
+         *
+         * @return the offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the objects.
+         *
+         * @return the objects
+         */
+        public List<JsonObject> getObjects() {
+            return objects;
+        }
+
+        /**
+         * Tells whether this is the last batch of the file.
+         *
+         * @return true for the last batch
+         */
+        public boolean isLast() {
+            return last;
+        }
+
+        /**
+         * Returns why reading the file failed.
+         *
+         * @return the error, or null if the batch was read normally
+         */
+        public IOException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param threads number of files read at the same time
+     */
+    public BatchPipeline(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs the pipeline until every file has been handed to the sink.
+     *
+     * @param inputs the files to read
+     * @param transform transforms each batch
+     * @param sink receives the transformed batches
+     * @param progress stream for a progress line every second, or null for none
+     * @throws IOException if the sink fails or the transforming thread dies
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public void run(List<File> inputs, Transform transform, Sink sink, PrintStream progress)
+            throws IOException, InterruptedException {
+        startTime = System.nanoTime();
+        ConcurrentLinkedQueue<File> pending = new ConcurrentLinkedQueue<>(inputs);
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> transformed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        ExecutorService executor = ExecutorFactory.newExecutor(threads + 1);
+        ScheduledExecutorService reporter = progress == null ? null : startReporter(progress);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    read(pending, parsed);
+                    return null;
+                });
+            }
+            Future<?> transforming = executor.submit(() -> {
+                transform(parsed, transformed, transform);
+                return null;
+            });
+            Batch batch;
+            while ((batch = transformed.take()) != END) {
+                sink.accept(batch);
+                if (batch.isLast()) {
+                    files.incrementAndGet();
+                    bytes.addAndGet(batch.getFile().length());
+                    if (batch.getError() != null) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }
+            try {
+                transforming.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IOException("Transforming failed", e.getCause());
+            }
+            sink.finish();
+        } finally {
+            executor.shutdownNow();
+            if (reporter != null) {
+                reporter.shutdownNow();
+                if (reported) {
+                    progress.println();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files handled so far.
+     *
+     * @return number of files
+     */
+    public long getFiles() {
+        return files.get();
+    }
+
+    /**
+     * Returns the number of files that could not be read.
+     *
+     * @return number of failed files
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of objects read so far.
+     *
+     * @return number of objects
+     */
+    public long getObjects() {
+        return objects.get();
+    }
+
+    /**
+     * Describes the progress and the throughput since the pipeline started.
+     *
+     * @return a one line report
+     */
+    public String report() {
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        return String.format(Locale.ROOT, "%d files (%d failed), %d objects, %.1f MB in %.1f s: %.0f objects/s, %.1f MB/s",
+            files.get(), failed.get(), objects.get(), bytes.get() / 1e6, seconds,
+            objects.get() / seconds, bytes.get() / 1e6 / seconds);
+    }
+
+    /**
+     * Reads files until there are none left, then marks the end of this reader.
+     *
+     * @param pending files nobody has started reading
+     * @param parsed queue of read batches
+     */
+    private void read(ConcurrentLinkedQueue<File> pending, BlockingQueue<Batch> parsed) throws InterruptedException {
+        try {
+            File file;
+            while ((file = pending.poll()) != null) {
+                readFile(file, parsed);
+            }
+        } finally {
+            parsed.put(END);
+        }
+    }
+
+    /**
+     * Reads one file in batches.
+     *
+     * @param file the file
+     * @param parsed queue of read batches
+     */
+    private void readFile(File file, BlockingQueue<Batch> parsed) throws InterruptedException {
+        long offset = 0;
+        List<JsonObject> batch = new ArrayList<>(BATCH_SIZE);
+        try (JsonReader reader = jutil.createReader(file)) {
+            JsonObject jo;
+            while ((jo = reader.nextObject()) != null) {
+                batch.add(jo);
+                if (batch.size() == BATCH_SIZE) {
+                    objects.addAndGet(batch.size());
+                    parsed.put(new Batch(file, offset, batch, false, null));
+                    offset += batch.size();
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        } catch (IOException e) {
+            parsed.put(new Batch(file, offset, List.of(), true, e));
+            return;
+        }
+        objects.addAndGet(batch.size());
+        parsed.put(new Batch(file, offset, batch, true, null));
+    }
+
+    /**
+     * Transforms batches until every reader has finished. When a transformation
+     * fails, the file ends with a batch holding the error and its remaining
+     * batches are dropped. The end is marked even if the thread dies, so the
+     * sink is never left waiting.
+     *
+     * @param parsed queue of read batches
+     * @param transformed queue of transformed batches
+     * @param transform the transformation
+     */
+    private void transform(BlockingQueue<Batch> parsed, BlockingQueue<Batch> transformed, Transform transform)
+            throws InterruptedException {
+        Set<File> failedFiles = new HashSet<>();
+        int running = threads;
+        try {
+            while (running > 0) {
+                Batch batch = parsed.take();
+                if (batch == END) {
+                    running--;
+                } else if (failedFiles.contains(batch.getFile())) {
+                    continue;
+                } else if (batch.getError() != null) {
+                    transformed.put(batch);
+                } else {
+                    IOException error;
+                    try {
+                        transformed.put(transform.apply(batch));
+                        continue;
+                    } catch (IOException e) {
+                        error = e;
+                    } catch (RuntimeException e) {
+                        error = new IOException(e);
+                    }
+                    failedFiles.add(batch.getFile());
+                    transformed.put(new Batch(batch.getFile(), batch.getOffset(), List.of(), true, error));
+                }
+            }
+        } finally {
+            transformed.put(END);
+        }
+    }
+
+    /**
+     * Starts printing the progress every second.
+     *
+     * @param progress the stream to print to
+     * @return the reporter, to be shut down when the pipeline ends
+     */
+    private ScheduledExecutorService startReporter(PrintStream progress) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "progress");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            progress.print("\r" + report());
+            reported = true;
+        }, 1, 1, TimeUnit.SECONDS);
+        return reporter;
+    }
+}
@@ -0,0 +1,148 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Output stream that computes the Dropbox content hash of the bytes written to it.
+ * The data is split into 4 MB blocks, each block is hashed with SHA-256, and the
+ * hash of the concatenated block hashes is the content hash. Comparing it with the
+ * content_hash of a Dropbox file tells whether the file would change without
+ * uploading anything. Given a target stream, the bytes are also passed on to it,
+ * so a file can be hashed while it is written.
+ *
+ * @author Laura Kanerva.
+ */
+public class ContentHash extends OutputStream {
+    /** Size of the blocks that are hashed separately. */
+    public static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest blockDigest = sha256();
+    private final MessageDigest overallDigest = sha256();
+    private final OutputStream out;
+    private int blockLength;
+
+    /**
+     * Class constructor for hashing only.
+     */
+    public ContentHash() {
+        this(null);
+    }
+
+    /**
+     * Class constructor for hashing the bytes while writing them to another stream.
+     *
+     * @param out the stream the bytes are passed on to, or null
+     */
+    public ContentHash(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Computes the content hash of the given JSONObjects as JsonUtil would write them.
+     * The objects are written with a JsonWriter of their own, so hashing is not
+     * counted as a save in the writeToJson metrics.
+     *
+     * @param jsons the objects
+     * @return the content hash as lowercase hex
+     */
+    public static String of(JsonObject[] jsons) {
+        ContentHash hash = new ContentHash();
+        try {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(hash, StandardCharsets.UTF_8));
+            writer.writeArray(jsons);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hash.digest();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out != null) {
+            out.write(b);
+        }
+        blockDigest.update((byte) b);
+        if (++blockLength == BLOCK_SIZE) {
+            endBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out != null) {
+            out.write(b, off, len);
+        }
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE - blockLength);
+            blockDigest.update(b, off, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == BLOCK_SIZE) {
+                endBlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    /**
+     * Finishes the hash. The stream should not be written to after this.
+     *
+     * @return the content hash as lowercase hex
+     */
+    public String digest() {
+        if (blockLength > 0) {
+            endBlock();
+        }
+        byte[] hash = overallDigest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Adds the hash of the current block to the overall hash.
+     */
+    private void endBlock() {
+        overallDigest.update(blockDigest.digest());
+        blockLength = 0;
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package objectorientedprogramming;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors for parallel work. Virtual threads are used when the
+ * running JDK supports them, otherwise a fixed pool of daemon threads.
+ *
+ * @author Laura Kanerva.
+ */
+public class ExecutorFactory {
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    /**
+     * Private constructor, class only has static methods.
+     */
+    private ExecutorFactory() {
+
+    }
+
+    /**
+     * Tells whether executors are backed by virtual threads.
+     *
+     * @return true if the JDK supports virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Creates a new executor. With virtual threads every task gets its own thread
+     * and the caller is responsible for limiting concurrency.
+     *
+     * @param threads number of platform threads to use when virtual threads are not available
+     * @return a new executor that must be shut down by the caller
+     */
+    public static ExecutorService newExecutor(int threads) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor.
+     *
+     * @return the method, or null if the JDK does not have it
+     */
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
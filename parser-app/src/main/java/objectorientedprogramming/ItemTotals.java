@@ -0,0 +1,192 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Adds up the amounts of shopping list objects by item name. Names are compared
+ * ignoring case and surrounding whitespace, like the app compares them. The first
+ * object of each name is kept, with its amount replaced by the total, and objects
+ * without a name are kept as they are.
+ *
+ * @author Laura Kanerva.
+ */
+public class ItemTotals {
+    private final Map<String, Total> totals = new LinkedHashMap<>();
+    private final List<JsonObject> unnamed = new ArrayList<>();
+    private double totalAmount;
+
+    /**
+     * Total of one name.
+     */
+    private static class Total {
+        final JsonObject first;
+        double amount;
+
+        /**
+         * Class constructor.
+         *
+         * @param first the first object with the name
+         * @param amount its amount
+         */
+        Total(JsonObject first, double amount) {
+            this.first = first;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Combines the objects with the same name in a list.
+     *
+     * @param objects the objects
+     * @return one object per name in first-seen order, and the objects without a name
+     */
+    public static List<JsonObject> combine(List<JsonObject> objects) {
+        ItemTotals totals = new ItemTotals();
+        for (JsonObject jo : objects) {
+            totals.add(jo);
+        }
+        return totals.objects();
+    }
+
+    /**
+     * Returns the key an item name is compared with.
+     *
+     * @param jo a shopping list object
+     * @return the name trimmed and in lower case, or null if the object has no name
+     *     or the name is blank
+     */
+    public static String key(JsonObject jo) {
+        Object name = jo.get("item");
+        return name instanceof String ? key((String) name) : null;
+    }
+
+    /**
+     * Returns the key an item name is compared with.
+     *
+     * @param name an item name
+     * @return the name trimmed and in lower case, or null if the name is blank
+     */
+    public static String key(String name) {
+        return name.isBlank() ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the amount of an object. Numbers in strings are accepted.
+     *
+     * @param jo a shopping list object
+     * @return the amount, or 0 if it is missing or not a number
+     */
+    public static double amount(JsonObject jo) {
+        Object amount = jo.get("amount");
+        if (amount instanceof Number) {
+            return ((Number) amount).doubleValue();
+        }
+        if (amount instanceof String) {
+            try {
+                return Double.parseDouble(((String) amount).strip());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds an object.
+     *
+     * @param jo the object
+     */
+    public void add(JsonObject jo) {
+        double amount = amount(jo);
+        totalAmount += amount;
+        String key = key(jo);
+        if (key == null) {
+            unnamed.add(jo);
+            return;
+        }
+        Total total = totals.get(key);
+        if (total == null) {
+            totals.put(key, new Total(jo, amount));
+        } else {
+            total.amount += amount;
+        }
+    }
+
+    /**
+     * Returns the number of different names.
+     *
+     * @return number of names
+     */
+    public int names() {
+        return totals.size();
+    }
+
+    /**
+     * Returns the sum of all amounts.
+     *
+     * @return the total amount
+     */
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Returns one object per name with the total amount, followed by the objects
+     * without a name.
+     *
+     * @return the objects in first-seen order
+     */
+    public List<JsonObject> objects() {
+        List<JsonObject> objects = new ArrayList<>(totals.size() + unnamed.size());
+        for (Total total : totals.values()) {
+            setAmount(total.first, total.amount);
+            objects.add(total.first);
+        }
+        objects.addAll(unnamed);
+        return objects;
+    }
+
+    /**
+     * Returns the names with the largest totals.
+     *
+     * @param n the maximum number of names
+     * @return objects with the total amounts, largest first
+     */
+    public List<JsonObject> top(int n) {
+        Comparator<Total> byAmount = Comparator.comparingDouble(t -> t.amount);
+        PriorityQueue<Total> smallest = new PriorityQueue<>(byAmount);
+        for (Total total : totals.values()) {
+            smallest.add(total);
+            if (smallest.size() > n) {
+                smallest.poll();
+            }
+        }
+        List<JsonObject> top = new ArrayList<>(smallest.size());
+        while (!smallest.isEmpty()) {
+            Total total = smallest.poll();
+            setAmount(total.first, total.amount);
+            top.add(0, total.first);
+        }
+        return top;
+    }
+
+    /**
+     * Stores an amount in an object, as an integer when it is a whole number.
+     *
+     * @param jo the object
+     * @param amount the amount
+     */
+    private static void setAmount(JsonObject jo, double amount) {
+        if (amount == Math.rint(amount) && Math.abs(amount) < 1e15) {
+            jo.add("amount", (long) amount);
+        } else {
+            jo.add("amount", amount);
+        }
+    }
+}
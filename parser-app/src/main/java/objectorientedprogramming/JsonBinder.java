@@ -0,0 +1,287 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Reads json objects straight into objects of another type while parsing. Each
+ * member name is bound to a setter, so a value goes from the parser to the target
+ * without a JsonObject, a map or a conversion through text. Members without a
+ * binding are skipped.
+ * <p>
+ * Errors, such as a value of the wrong type or a value the setter rejects, are
+ * reported with the line and column where they were found. A binder keeps no
+ * parsing state, so one instance can be shared between threads once the bindings
+ * are made.
+ *
+ * @param <T> type of the target objects
+ * @author Laura Kanerva.
+ */
+public class JsonBinder<T> {
+    private final Supplier<T> factory;
+    private final Map<String, Member<T>> members = new HashMap<>();
+
+    /**
+     * Reads one member value into a target.
+     *
+     * @param <T> type of the target
+     */
+    public interface Member<T> {
+        /**
+         * Reads the next value of the parser into the target.
+         *
+         * @param reader parser positioned before the value
+         * @param target the object being read
+         * @throws IOException if the value is not valid for the member
+         */
+        void read(JsonReader reader, T target) throws IOException;
+    }
+
+    /**
+     * Sets a String member.
+     *
+     * @param <T> type of the target
+     */
+    public interface StringSetter<T> {
+        /**
+         * Sets the value.
+         *
+         * @param target the object being read
+         * @param value the value
+         */
+        void set(T target, String value);
+    }
+
+    /**
+     * Sets an int member.
+     *
+     * @param <T> type of the target
+     */
+    public interface IntSetter<T> {
+        /**
+         * Sets the value.
+         *
+         * @param target the object being read
+         * @param value the value
+         */
+        void set(T target, int value);
+    }
+
+    /**
+     * Sets a long member.
+     *
+     * @param <T> type of the target
+     */
+    public interface LongSetter<T> {
+        /**
+         * Sets the value.
+         *
+         * @param target the object being read
+         * @param value the value
+         */
+        void set(T target, long value);
+    }
+
+    /**
+     * Sets a double member.
+     *
+     * @param <T> type of the target
+     */
+    public interface DoubleSetter<T> {
+        /**
+         * Sets the value.
+         *
+         * @param target the object being read
+         * @param value the value
+         */
+        void set(T target, double value);
+    }
+
+    /**
+     * Sets a boolean member.
+     *
+     * @param <T> type of the target
+     */
+    public interface BooleanSetter<T> {
+        /**
+         * Sets the value.
+         *
+         * @param target the object being read
+         * @param value the value
+         */
+        void set(T target, boolean value);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param factory creates an empty target for each object
+     */
+    public JsonBinder(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Binds a member to a reader of its value.
+     *
+     * @param name name of the member
+     * @param member reads the value into the target
+     * @return this binder
+     */
+    public JsonBinder<T> bind(String name, Member<T> member) {
+        members.put(name, member);
+        return this;
+    }
+
+    /**
+     * Binds a member to a String setter. Numbers are accepted as their text.
+     *
+     * @param name name of the member
+     * @param setter the setter
+     * @return this binder
+     */
+    public JsonBinder<T> bindString(String name, StringSetter<T> setter) {
+        return bind(name, (reader, target) -> {
+            String value = reader.nextString();
+            try {
+                setter.set(target, value);
+            } catch (IllegalArgumentException e) {
+                throw reader.error("Invalid value for " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Binds a member to an int setter. Strings containing an integer are accepted.
+     *
+     * @param name name of the member
+     * @param setter the setter
+     * @return this binder
+     */
+    public JsonBinder<T> bindInt(String name, IntSetter<T> setter) {
+        return bind(name, (reader, target) -> {
+            int value = reader.nextInt();
+            try {
+                setter.set(target, value);
+            } catch (IllegalArgumentException e) {
+                throw reader.error("Invalid value for " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Binds a member to a long setter.
+     *
+     * @param name name of the member
+     * @param setter the setter
+     * @return this binder
+     */
+    public JsonBinder<T> bindLong(String name, LongSetter<T> setter) {
+        return bind(name, (reader, target) -> {
+            if (reader.next() != JsonToken.NUMBER || !reader.isInteger()) {
+                throw reader.error("Expected an integer for " + name);
+            }
+            try {
+                setter.set(target, reader.getLong());
+            } catch (IllegalArgumentException e) {
+                throw reader.error("Invalid value for " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Binds a member to a double setter. Strings containing a number are accepted.
+     *
+     * @param name name of the member
+     * @param setter the setter
+     * @return this binder
+     */
+    public JsonBinder<T> bindDouble(String name, DoubleSetter<T> setter) {
+        return bind(name, (reader, target) -> {
+            double value = reader.nextDouble();
+            try {
+                setter.set(target, value);
+            } catch (IllegalArgumentException e) {
+                throw reader.error("Invalid value for " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Binds a member to a boolean setter.
+     *
+     * @param name name of the member
+     * @param setter the setter
+     * @return this binder
+     */
+    public JsonBinder<T> bindBoolean(String name, BooleanSetter<T> setter) {
+        return bind(name, (reader, target) -> {
+            if (reader.next() != JsonToken.BOOLEAN) {
+                throw reader.error("Expected true or false for " + name);
+            }
+            setter.set(target, reader.getBoolean());
+        });
+    }
+
+    /**
+     * Reads the members following a START_OBJECT token into a new target.
+     *
+     * @param reader parser positioned right after the object's opening brace
+     * @return the target
+     * @throws IOException if the object is not valid for the target
+     */
+    public T readMembers(JsonReader reader) throws IOException {
+        T target = factory.get();
+        JsonToken token;
+        while ((token = reader.next()) == JsonToken.KEY) {
+            Member<T> member = members.get(reader.getString());
+            if (member == null) {
+                reader.skipValue();
+            } else {
+                member.read(reader, target);
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw reader.error("Expected a member name but was " + token);
+        }
+        return target;
+    }
+
+    /**
+     * Reads a document holding one object or an array of objects.
+     *
+     * @param reader parser at the start of the document
+     * @return the targets in document order
+     * @throws IOException if reading fails or a value is not an object
+     */
+    public List<T> readList(JsonReader reader) throws IOException {
+        List<T> targets = new ArrayList<>();
+        while (nextObject(reader) != JsonToken.END_DOCUMENT) {
+            targets.add(readMembers(reader));
+        }
+        return targets;
+    }
+
+    /**
+     * Moves to the next object of a document holding one object or an array of
+     * objects.
+     *
+     * @param reader the parser
+     * @return START_OBJECT, or END_DOCUMENT when there are no more objects
+     * @throws IOException if reading fails or a value is not an object
+     */
+    public static JsonToken nextObject(JsonReader reader) throws IOException {
+        while (true) {
+            JsonToken token = reader.next();
+            if (token == JsonToken.START_OBJECT || token == JsonToken.END_DOCUMENT) {
+                return token;
+            } else if (token != JsonToken.START_ARRAY && token != JsonToken.END_ARRAY) {
+                throw reader.error("Expected an object but was " + token);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package objectorientedprogramming;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Index of the byte offsets where each top-level object of a json array starts.
+ * The index is kept in a sidecar file next to the json file, named like the
+ * json file with ".idx" appended.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonIndex {
+    private static final int MAGIC = 0x4A494458;
+    /** Bytes before the offsets: magic, file length and count. */
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long[] offsets;
+    private final long length;
+
+    /**
+     * Class constructor.
+     *
+     * @param offsets start offsets of the objects
+     * @param length length of the indexed file in bytes
+     */
+    private JsonIndex(long[] offsets, long length) {
+        this.offsets = offsets;
+        this.length = length;
+    }
+
+    /**
+     * Returns the number of indexed objects.
+     *
+     * @return number of objects
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the byte offset where an object starts.
+     *
+     * @param i index of the object
+     * @return offset of the object's opening brace
+     */
+    public long start(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Returns the byte offset where the next object starts, or the file length for the last object.
+     *
+     * @param i index of the object
+     * @return offset after the object and its separator
+     */
+    public long end(int i) {
+        return i + 1 < offsets.length ? offsets[i + 1] : length;
+    }
+
+    /**
+     * Returns the sidecar file of a json file.
+     *
+     * @param json the json file
+     * @return the index file
+     */
+    public static File indexFile(File json) {
+        return new File(json.getAbsoluteFile().getParentFile(), json.getName() + ".idx");
+    }
+
+    /**
+     * Loads the sidecar index of a json file, rebuilding it if it is missing or older than the file.
+     *
+     * @param json the json file
+     * @return the index
+     * @throws IOException if the file cannot be read
+     */
+    public static JsonIndex open(File json) throws IOException {
+        File idx = indexFile(json);
+        if (idx.exists() && idx.lastModified() >= json.lastModified()) {
+            JsonIndex index = read(idx);
+            if (index != null && index.length == json.length()) {
+                return index;
+            }
+        }
+        return write(json);
+    }
+
+    /**
+     * Scans a json file and writes its sidecar index.
+     *
+     * @param json the json file, usually written by JsonUtil.writeToJson
+     * @return the created index
+     * @throws IOException if the file cannot be read or the index cannot be written
+     */
+    public static JsonIndex write(File json) throws IOException {
+        JsonIndex index = scan(json);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile(json))))) {
+            out.writeInt(MAGIC);
+            out.writeLong(index.length);
+            out.writeInt(index.offsets.length);
+            for (long offset : index.offsets) {
+                out.writeLong(offset);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads a sidecar file. A file that is cut short, holds a different number of
+     * offsets than it says, or has offsets out of order is treated like a stale
+     * index, so the json is scanned again.
+     *
+     * @param idx the index file
+     * @return the index, or null if the file is not a valid index
+     */
+    private static JsonIndex read(File idx) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idx)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            long length = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || HEADER_SIZE + (long) count * Long.BYTES != idx.length()) {
+                return null;
+            }
+            long[] offsets = new long[count];
+            long previous = -1;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                if (offsets[i] <= previous || offsets[i] >= length) {
+                    return null;
+                }
+                previous = offsets[i];
+            }
+            return new JsonIndex(offsets, length);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the offsets of the top-level objects by scanning the raw bytes. Structural
+     * characters are ASCII, so the UTF-8 content never needs to be decoded.
+     *
+     * @param json the json file
+     * @return the index of the file
+     */
+    private static JsonIndex scan(File json) throws IOException {
+        long[] offsets = new long[1024];
+        int count = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long position = 0;
+
+        try (FileChannel channel = FileChannel.open(json.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        if (b == '{' && depth == 1) {
+                            if (count == offsets.length) {
+                                offsets = Arrays.copyOf(offsets, count * 2);
+                            }
+                            offsets[count++] = position;
+                        }
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                    position++;
+                }
+                buffer.clear();
+            }
+        }
+        return new JsonIndex(Arrays.copyOf(offsets, count), position);
+    }
+}
@@ -1,15 +1,41 @@
 package objectorientedprogramming;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A JSONObject class.
- * 
+ * <p>
+ * Keys and values are kept in flat arrays in insertion order. Integer, long and
+ * double values are stored unboxed, and keys are interned so objects of the same
+ * shape share their key strings. The Map returned by getMap() is a view that is
+ * built on first use.
+ *
  * @author Laura Kanerva.
  */
 public class JsonObject{
-    private Map<String, Object> jsonMap = new HashMap<>();
+    private static final int MAX_INTERNED_KEYS = 4096;
+    private static final int INDEXED_SIZE = 16;
+    private static final Map<String, String> KEYS = new ConcurrentHashMap<>();
+
+    private static final Object INT = new Object();
+    private static final Object LONG = new Object();
+    private static final Object DOUBLE = new Object();
+
+    private Object[] entries = new Object[4];
+    private long[] primitives;
+    private int size;
+    private Map<String, Integer> index;
+    private Map<String, Object> view;
 
     /**
      * Empty constructor.
@@ -20,44 +46,365 @@ public class JsonObject{
 
     /**
      * Adds key-value pairs to the jsonMap.
-     * 
+     *
      * @param key determines what value is
      * @param value any given value for the key
      */
     public void add(String key, Object value) {
-        jsonMap.put(key, value);
+        if (value instanceof Integer) {
+            add(key, ((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            add(key, ((Long) value).longValue());
+        } else if (value instanceof Double) {
+            add(key, ((Double) value).doubleValue());
+        } else {
+            put(key, value, 0);
+        }
+    }
+
+    /**
+     * Adds a key with an integer value without boxing it.
+     *
+     * @param key determines what value is
+     * @param value the value for the key
+     */
+    public void add(String key, int value) {
+        put(key, INT, value);
+    }
+
+    /**
+     * Adds a key with a long value without boxing it.
+     *
+     * @param key determines what value is
+     * @param value the value for the key
+     */
+    public void add(String key, long value) {
+        put(key, LONG, value);
+    }
+
+    /**
+     * Adds a key with a double value without boxing it.
+     *
+     * @param key determines what value is
+     * @param value the value for the key
+     */
+    public void add(String key, double value) {
+        put(key, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, boxed if it is a number, or null if the key is not present
+     */
+    public Object get(String key) {
+        int i = indexOf(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    /**
+     * Returns the integer value of a key without boxing it.
+     *
+     * @param key the key
+     * @param defaultValue returned if the value is missing, not a number or out of range
+     * @return the value as an int, with any fraction dropped
+     */
+    public int getInt(String key, int defaultValue) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return defaultValue;
+        }
+        Object type = entries[2 * i + 1];
+        if (type == INT) {
+            return (int) primitives[i];
+        } else if (type == LONG) {
+            long value = primitives[i];
+            return value == (int) value ? (int) value : defaultValue;
+        } else if (type == DOUBLE) {
+            double value = Double.longBitsToDouble(primitives[i]);
+            return value > Integer.MIN_VALUE - 1.0 && value < Integer.MAX_VALUE + 1.0 ? (int) value : defaultValue;
+        }
+        return defaultValue;
     }
 
     /**
-     * Returns JSONObject's Map.
-     * 
+     * Tells whether the object has the given key.
+     *
+     * @param key the key
+     * @return true if the key is present
+     */
+    public boolean has(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return number of key-value pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns JSONObject's Map. The map is a live view: changes to it change the object.
+     *
      * @return Map with all added keys and values
      */
     public Map<String, Object> getMap() {
-        return jsonMap;
+        if (view == null) {
+            view = new MapView();
+        }
+        return view;
     }
 
     /**
      * Creates a string in JSON form from jsonMap keys and values.
-     * 
+     *
      * @return string in JSON form
      */
     public String toString() {
-        String json = "{\n";
-        int i = 0;
-        for(Map.Entry<String, Object> entry : jsonMap.entrySet()) {
-            Object value = entry.getValue();
-            if(value instanceof String) {
-                value = "\"" + value + '"';
+        StringWriter sw = new StringWriter();
+        JsonWriter jw = new JsonWriter(sw);
+        try {
+            jw.writeObject(this);
+            jw.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Returns the key at a position.
+     *
+     * @param i position in insertion order
+     * @return the key
+     */
+    String keyAt(int i) {
+        return (String) entries[2 * i];
+    }
+
+    /**
+     * Tells whether the value at a position is an unboxed int or long.
+     *
+     * @param i position in insertion order
+     * @return true for integer values
+     */
+    boolean isIntegral(int i) {
+        Object type = entries[2 * i + 1];
+        return type == INT || type == LONG;
+    }
+
+    /**
+     * Returns the unboxed integer value at a position.
+     *
+     * @param i position of an integral value
+     * @return the value
+     */
+    long longAt(int i) {
+        return primitives[i];
+    }
+
+    /**
+     * Returns the value at a position.
+     *
+     * @param i position in insertion order
+     * @return the value, boxed if it is a number
+     */
+    Object valueAt(int i) {
+        Object value = entries[2 * i + 1];
+        if (value == INT) {
+            return (int) primitives[i];
+        } else if (value == LONG) {
+            return primitives[i];
+        } else if (value == DOUBLE) {
+            return Double.longBitsToDouble(primitives[i]);
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value, replacing the earlier value of the same key.
+     *
+     * @param key the key
+     * @param value the value, or a type marker for primitives
+     * @param primitive the primitive value when value is a type marker
+     */
+    private void put(String key, Object value, long primitive) {
+        int i = indexOf(key);
+        if (i < 0) {
+            i = size++;
+            if (2 * size > entries.length) {
+                Object[] grown = new Object[entries.length * 2];
+                System.arraycopy(entries, 0, grown, 0, entries.length);
+                entries = grown;
             }
-            json += "\t\"" + entry.getKey() + "\": " + value;
-            if(i < jsonMap.size() - 1) {
-                json += ",\n";
+            entries[2 * i] = intern(key);
+            if (index != null) {
+                index.put(keyAt(i), i);
+            } else if (size > INDEXED_SIZE) {
+                buildIndex();
+            }
+        }
+        entries[2 * i + 1] = value;
+        if (value == INT || value == LONG || value == DOUBLE) {
+            if (primitives == null) {
+                primitives = new long[entries.length / 2];
+            } else if (primitives.length < entries.length / 2) {
+                long[] grown = new long[entries.length / 2];
+                System.arraycopy(primitives, 0, grown, 0, primitives.length);
+                primitives = grown;
+            }
+            primitives[i] = primitive;
+        }
+    }
+
+    /**
+     * Removes a key and its value, keeping the order of the others.
+     *
+     * @param i position of the key
+     */
+    private void removeAt(int i) {
+        System.arraycopy(entries, 2 * i + 2, entries, 2 * i, 2 * (size - i - 1));
+        if (primitives != null && i < primitives.length) {
+            System.arraycopy(primitives, i + 1, primitives, i, Math.min(size, primitives.length) - i - 1);
+        }
+        size--;
+        entries[2 * size] = null;
+        entries[2 * size + 1] = null;
+        if (index != null) {
+            buildIndex();
+        }
+    }
+
+    /**
+     * Finds the position of a key.
+     *
+     * @param key the key
+     * @return position of the key, or -1 if it is not present
+     */
+    private int indexOf(Object key) {
+        if (index != null) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < size; i++) {
+            Object k = entries[2 * i];
+            if (k == key || k.equals(key)) {
+                return i;
             }
-            i++;
         }
-        json += "\n}";
-        return json;
+        return -1;
+    }
+
+    /**
+     * Creates a hash index of the keys for objects with many keys.
+     */
+    private void buildIndex() {
+        index = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            index.put(keyAt(i), i);
+        }
+    }
+
+    /**
+     * Returns the shared instance of a key string.
+     *
+     * @param key the key
+     * @return an equal string shared by all objects
+     */
+    private static String intern(String key) {
+        String shared = KEYS.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        if (KEYS.size() >= MAX_INTERNED_KEYS) {
+            return key;
+        }
+        shared = KEYS.putIfAbsent(key, key);
+        return shared != null ? shared : key;
     }
 
-}
\ No newline at end of file
+    /**
+     * Map view of the keys and values.
+     */
+    private class MapView extends AbstractMap<String, Object> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : valueAt(i);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object old = get(key);
+            add(key, value);
+            return old;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return null;
+            }
+            Object old = valueAt(i);
+            removeAt(i);
+            return old;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int next;
+                        private int last = -1;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            last = next++;
+                            return new AbstractMap.SimpleImmutableEntry<>(keyAt(last), valueAt(last));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0) {
+                                throw new IllegalStateException();
+                            }
+                            removeAt(last);
+                            next = last;
+                            last = -1;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a JSON document cannot be parsed.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonParseException extends IOException {
+    private final int line;
+    private final int column;
+
+    /**
+     * Class constructor.
+     *
+     * @param message description of the problem
+     * @param line line where the problem was found, starting from 1
+     * @param column column where the problem was found, starting from 1
+     */
+    public JsonParseException(String message, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Returns the line where parsing failed.
+     *
+     * @return line number, starting from 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column where parsing failed.
+     *
+     * @return column number, starting from 1
+     */
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,796 @@
+package objectorientedprogramming;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pull parser that reads json from a character stream one token at a time.
+ * The stream is read in a single pass through a fixed size buffer, so only
+ * the values the caller asks for are ever materialized.
+ * <p>
+ * The parser accepts the json grammar of RFC 8259: any value as the document,
+ * strings with escapes, numbers with fractions and exponents, booleans and null.
+ * Numbers are computed from their digits while they are read. Only numbers that
+ * cannot be converted exactly that way, such as ones with more than 15 significant
+ * digits, are converted from their text. Nesting deeper than 1024 levels is
+ * rejected.
+ * <p>
+ * Utf8JsonReader is the same parser working on bytes, for files and other byte
+ * sources.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonReader implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_DEPTH = 1024;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_KEY = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer;
+    private final String[] keyCache = new String[64];
+    final StringBuilder builder = new StringBuilder();
+    int pos;
+    int limit;
+    long bufferStart;
+    long lineStart;
+    int line = 1;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+    private JsonToken peeked;
+    private String string;
+    private long number;
+    private double decimal;
+    private boolean integer;
+    private boolean bool;
+
+    /**
+     * Class constructor.
+     *
+     * @param in the stream to read json from
+     */
+    public JsonReader(Reader in) {
+        this.in = in;
+        this.buffer = new char[BUFFER_SIZE];
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Constructor for parsers that keep their own buffer and override the methods
+     * reading it.
+     */
+    JsonReader() {
+        this.in = null;
+        this.buffer = null;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     *
+     * @return the next token
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public JsonToken peek() throws IOException {
+        if (peeked == null) {
+            peeked = advance();
+        }
+        return peeked;
+    }
+
+    /**
+     * Consumes the next token. The value of a KEY, STRING, NUMBER or BOOLEAN token
+     * can be read with the getters until next() is called again.
+     *
+     * @return the consumed token
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public JsonToken next() throws IOException {
+        JsonToken token = peek();
+        peeked = null;
+        switch (token) {
+            case KEY:
+                string = readKey();
+                skipWhiteSpace();
+                expect(':');
+                break;
+            case STRING:
+                string = readString();
+                break;
+            case NUMBER:
+                readNumber();
+                string = null;
+                break;
+            case BOOLEAN:
+                bool = peekChar() == 't';
+                readLiteral(bool ? "true" : "false");
+                break;
+            case NULL:
+                readLiteral("null");
+                break;
+            default:
+                break;
+        }
+        return token;
+    }
+
+    /**
+     * Returns the text of the last KEY, STRING or NUMBER token.
+     *
+     * @return the text of the token
+     */
+    public String getString() {
+        if (string != null) {
+            return string;
+        }
+        return integer ? Long.toString(number) : Double.toString(decimal);
+    }
+
+    /**
+     * Returns the last NUMBER token as an int.
+     *
+     * @return the number
+     * @throws JsonParseException if the number is not a whole number or does not fit in an int
+     */
+    public int getInt() throws JsonParseException {
+        if (!integer) {
+            if (decimal != Math.rint(decimal)) {
+                throw error("Expected an integer but was " + decimal);
+            }
+            if (decimal < Integer.MIN_VALUE || decimal > Integer.MAX_VALUE) {
+                throw error("Number out of range");
+            }
+            return (int) decimal;
+        }
+        if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+            throw error("Number out of range");
+        }
+        return (int) number;
+    }
+
+    /**
+     * Returns the last NUMBER token as a long. A number with a fraction is truncated.
+     *
+     * @return the number
+     */
+    public long getLong() {
+        return integer ? number : (long) decimal;
+    }
+
+    /**
+     * Returns the last NUMBER token as a double.
+     *
+     * @return the number
+     */
+    public double getDouble() {
+        return integer ? number : decimal;
+    }
+
+    /**
+     * Tells whether the last NUMBER token was an integer that fits in a long. Numbers
+     * with a fraction or an exponent are never integers.
+     *
+     * @return true if getLong() returns the exact number
+     */
+    public boolean isInteger() {
+        return integer;
+    }
+
+    /**
+     * Returns the value of the last BOOLEAN token.
+     *
+     * @return true or false
+     */
+    public boolean getBoolean() {
+        return bool;
+    }
+
+    /**
+     * Consumes the next value and returns it as a string. Numbers are converted to text.
+     *
+     * @return the value as a string
+     * @throws IOException if the next value is not a string or a number
+     */
+    public String nextString() throws IOException {
+        JsonToken token = next();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw error("Expected a string but was " + token);
+        }
+        return getString();
+    }
+
+    /**
+     * Consumes the next value and returns it as an int. Strings containing an integer are accepted.
+     *
+     * @return the value as an int
+     * @throws IOException if the next value is not an integer
+     */
+    public int nextInt() throws IOException {
+        JsonToken token = next();
+        if (token == JsonToken.NUMBER) {
+            return getInt();
+        }
+        if (token == JsonToken.STRING) {
+            try {
+                return Integer.parseInt(string.strip());
+            } catch (NumberFormatException e) {
+                throw error("Expected an integer but was \"" + string + '"');
+            }
+        }
+        throw error("Expected an integer but was " + token);
+    }
+
+    /**
+     * Consumes the next value and returns it as a double. Strings containing a number are accepted.
+     *
+     * @return the value as a double
+     * @throws IOException if the next value is not a number
+     */
+    public double nextDouble() throws IOException {
+        JsonToken token = next();
+        if (token == JsonToken.NUMBER) {
+            return getDouble();
+        }
+        if (token == JsonToken.STRING) {
+            try {
+                return Double.parseDouble(string.strip());
+            } catch (NumberFormatException e) {
+                throw error("Expected a number but was \"" + string + '"');
+            }
+        }
+        throw error("Expected a number but was " + token);
+    }
+
+    /**
+     * Returns how many characters have been consumed from the stream. A
+     * Utf8JsonReader counts bytes instead.
+     *
+     * @return number of characters read so far
+     */
+    public long getPosition() {
+        return bufferStart + pos;
+    }
+
+    /**
+     * Skips the next value, including everything nested inside it.
+     *
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public void skipValue() throws IOException {
+        int level = 0;
+        do {
+            JsonToken token = next();
+            if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+                level++;
+            } else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                level--;
+            } else if (token == JsonToken.END_DOCUMENT) {
+                return;
+            }
+        } while (level > 0);
+    }
+
+    /**
+     * Reads the next JSONObject from the stream. The stream can either contain
+     * a single object or an array of objects.
+     *
+     * @return the next object, or null when there are no more objects
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public JsonObject nextObject() throws IOException {
+        while (true) {
+            JsonToken token = next();
+            if (token == JsonToken.START_OBJECT) {
+                return readObject();
+            } else if (token == JsonToken.END_DOCUMENT) {
+                return null;
+            } else if (token != JsonToken.START_ARRAY && token != JsonToken.END_ARRAY) {
+                throw error("Expected an object but was " + token);
+            }
+        }
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Creates a JSONObject from the members following a START_OBJECT token.
+     *
+     * @return the created JSONObject
+     */
+    private JsonObject readObject() throws IOException {
+        JsonObject jo = new JsonObject();
+        while (next() == JsonToken.KEY) {
+            String key = string;
+            JsonToken token = next();
+            if (token == JsonToken.NUMBER) {
+                if (!integer) {
+                    jo.add(key, decimal);
+                } else if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    jo.add(key, (int) number);
+                } else {
+                    jo.add(key, number);
+                }
+            } else {
+                jo.add(key, readValue(token));
+            }
+        }
+        return jo;
+    }
+
+    /**
+     * Creates a list from the values following a START_ARRAY token.
+     *
+     * @return the created list
+     */
+    private List<Object> readArray() throws IOException {
+        List<Object> list = new ArrayList<>();
+        JsonToken token = next();
+        while (token != JsonToken.END_ARRAY) {
+            list.add(readValue(token));
+            token = next();
+        }
+        return list;
+    }
+
+    /**
+     * Materializes the value starting with the given token.
+     *
+     * @param token the consumed token
+     * @return a string, an integer, a long, a double, a boolean, null, a JSONObject or a list
+     */
+    private Object readValue(JsonToken token) throws IOException {
+        switch (token) {
+            case STRING:
+                return string;
+            case NUMBER:
+                if (!integer) {
+                    return decimal;
+                } else if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    return (int) number;
+                }
+                return number;
+            case BOOLEAN:
+                return bool;
+            case NULL:
+                return null;
+            case START_OBJECT:
+                return readObject();
+            case START_ARRAY:
+                return readArray();
+            default:
+                throw error("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Moves past separators and determines the next token. Opening and closing
+     * brackets are consumed here, values are consumed by next().
+     *
+     * @return the next token
+     */
+    private JsonToken advance() throws IOException {
+        int scope = stack[depth - 1];
+        skipWhiteSpace();
+        int c = peekChar();
+        switch (scope) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                if (c == -1) {
+                    return JsonToken.END_DOCUMENT;
+                }
+                return valueToken(c);
+            case NONEMPTY_DOCUMENT:
+                if (c != -1) {
+                    throw error("Unexpected content after the document");
+                }
+                return JsonToken.END_DOCUMENT;
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                if (c == ']') {
+                    pos++;
+                    depth--;
+                    return JsonToken.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    expect(',');
+                    skipWhiteSpace();
+                    c = peekChar();
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return valueToken(c);
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                if (c == '}') {
+                    pos++;
+                    depth--;
+                    return JsonToken.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    expect(',');
+                    skipWhiteSpace();
+                    c = peekChar();
+                }
+                if (c != '"') {
+                    throw error("Expected a key");
+                }
+                stack[depth - 1] = DANGLING_KEY;
+                return JsonToken.KEY;
+            case DANGLING_KEY:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return valueToken(c);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Determines the token of a value from its first character.
+     *
+     * @param c first character of the value
+     * @return the token of the value
+     */
+    private JsonToken valueToken(int c) throws IOException {
+        if (c == '"') {
+            return JsonToken.STRING;
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            return JsonToken.NUMBER;
+        } else if (c == '{') {
+            pos++;
+            push(EMPTY_OBJECT);
+            return JsonToken.START_OBJECT;
+        } else if (c == '[') {
+            pos++;
+            push(EMPTY_ARRAY);
+            return JsonToken.START_ARRAY;
+        } else if (c == 't' || c == 'f') {
+            return JsonToken.BOOLEAN;
+        } else if (c == 'n') {
+            return JsonToken.NULL;
+        } else if (c == -1) {
+            throw error("Unexpected end of input");
+        }
+        throw error("Expected a value");
+    }
+
+    /**
+     * Enters a new array or object.
+     *
+     * @param scope the scope of the new container
+     * @throws JsonParseException if the nesting is too deep
+     */
+    private void push(int scope) throws JsonParseException {
+        // the first slot of the stack is the document itself
+        if (depth > MAX_DEPTH) {
+            throw error("Nesting too deep");
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    /**
+     * Reads a quoted key. Keys that fit in the buffer and have no escapes are looked
+     * up from a small cache first, so the same key appearing in every object is only
+     * created once.
+     *
+     * @return the key without quotes
+     */
+    String readKey() throws IOException {
+        int start = pos + 1;
+        int end = start;
+        int hash = 0;
+        char c;
+        while (end < limit && (c = buffer[end]) != '"') {
+            if (c == '\\' || c < 0x20) {
+                return readString();
+            }
+            hash = 31 * hash + c;
+            end++;
+        }
+        if (end == limit) {
+            return readString();
+        }
+        int length = end - start;
+        int slot = hash & (keyCache.length - 1);
+        String cached = keyCache[slot];
+        if (cached != null && cached.length() == length) {
+            boolean same = true;
+            for (int i = 0; i < length && same; i++) {
+                same = cached.charAt(i) == buffer[start + i];
+            }
+            if (same) {
+                pos = end + 1;
+                return cached;
+            }
+        }
+        String key = new String(buffer, start, length);
+        keyCache[slot] = key;
+        pos = end + 1;
+        return key;
+    }
+
+    /**
+     * Reads a quoted string. Runs of characters without escapes are copied from the
+     * buffer at once.
+     *
+     * @return the string without quotes
+     */
+    String readString() throws IOException {
+        expect('"');
+        builder.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            int start = pos;
+            char c = 0;
+            while (pos < limit && (c = buffer[pos]) != '"' && c != '\\' && c >= 0x20) {
+                pos++;
+            }
+            builder.append(buffer, start, pos - start);
+            if (pos < limit) {
+                if (c == '"') {
+                    pos++;
+                    return builder.toString();
+                } else if (c == '\\') {
+                    pos++;
+                    builder.append(readEscape());
+                } else {
+                    throw error("Unescaped control character in string");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of an escape sequence after its backslash.
+     *
+     * @return the escaped character
+     */
+    char readEscape() throws IOException {
+        int c = peekChar();
+        if (c == -1) {
+            throw error("Unterminated string");
+        }
+        pos++;
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(peekChar(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                    pos++;
+                }
+                return (char) value;
+            default:
+                pos--;
+                throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * Reads a number without creating a string of its digits. Integers that fit in
+     * a long are kept exactly. Other numbers are computed as a double from at most
+     * 15 significant digits and a power of ten up to 22, which gives the correctly
+     * rounded result. Numbers beyond that are converted from their text.
+     */
+    private void readNumber() throws IOException {
+        builder.setLength(0);
+        int c = peekChar();
+        boolean negative = c == '-';
+        if (negative) {
+            builder.append('-');
+            pos++;
+            c = peekChar();
+        }
+        if (c < '0' || c > '9') {
+            throw error("Expected a digit");
+        }
+        if (c == '0') {
+            builder.append('0');
+            pos++;
+            c = peekChar();
+            if (c >= '0' && c <= '9') {
+                throw error("Leading zeros are not allowed");
+            }
+        }
+        // the mantissa is negative like in Long.parseLong, so Long.MIN_VALUE fits
+        long mantissa = 0;
+        boolean exact = true;
+        int scale = 0;
+        boolean fraction = false;
+        while (true) {
+            while (c >= '0' && c <= '9') {
+                builder.append((char) c);
+                if (exact && mantissa < (Long.MIN_VALUE + (c - '0')) / 10) {
+                    exact = false;
+                } else if (exact) {
+                    mantissa = mantissa * 10 - (c - '0');
+                    if (fraction) {
+                        scale++;
+                    }
+                }
+                pos++;
+                c = peekChar();
+            }
+            if (c != '.' || fraction) {
+                break;
+            }
+            fraction = true;
+            builder.append('.');
+            pos++;
+            c = peekChar();
+            if (c < '0' || c > '9') {
+                throw error("Expected a digit");
+            }
+        }
+        int exponent = 0;
+        if (c == 'e' || c == 'E') {
+            builder.append('e');
+            pos++;
+            c = peekChar();
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                builder.append((char) c);
+                pos++;
+                c = peekChar();
+            }
+            if (c < '0' || c > '9') {
+                throw error("Expected a digit");
+            }
+            while (c >= '0' && c <= '9') {
+                builder.append((char) c);
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+                pos++;
+                c = peekChar();
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+            fraction = true;
+        }
+
+        integer = !fraction && exact && (negative || mantissa != Long.MIN_VALUE);
+        if (integer) {
+            number = negative ? mantissa : -mantissa;
+            return;
+        }
+        int power = exponent - scale;
+        if (exact && mantissa > -MAX_EXACT_MANTISSA && power >= -22 && power <= 22) {
+            double magnitude = -(double) mantissa;
+            magnitude = power < 0 ? magnitude / POWERS_OF_TEN[-power] : magnitude * POWERS_OF_TEN[power];
+            decimal = negative ? -magnitude : magnitude;
+        } else {
+            decimal = Double.parseDouble(builder.toString());
+        }
+    }
+
+    /**
+     * Consumes a literal value.
+     *
+     * @param literal true, false or null
+     */
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (peekChar() != literal.charAt(i)) {
+                throw error("Expected " + literal);
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Skips spaces, tabs and line breaks.
+     */
+    void skipWhiteSpace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            char c = buffer[pos];
+            if (c == '\n') {
+                line++;
+                lineStart = bufferStart + pos + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Consumes the given character or fails.
+     *
+     * @param expected the character that must come next
+     */
+    void expect(char expected) throws IOException {
+        if (peekChar() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     *
+     * @return the next character, or -1 at the end of the stream
+     */
+    int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    /**
+     * Refills the buffer from the stream.
+     *
+     * @return false if the stream has ended
+     */
+    boolean fill() throws IOException {
+        bufferStart += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Creates an exception pointing to the current position.
+     *
+     * @param message description of the problem
+     * @return exception with line and column information
+     */
+    JsonParseException error(String message) {
+        int column = (int) (bufferStart + pos - lineStart) + 1;
+        return new JsonParseException(message, line, column);
+    }
+}
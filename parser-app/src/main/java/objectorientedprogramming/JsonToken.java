@@ -0,0 +1,29 @@
+package objectorientedprogramming;
+
+/**
+ * Tokens returned by the JsonReader pull parser.
+ *
+ * @author Laura Kanerva.
+ */
+public enum JsonToken {
+    /** Opening bracket of an array. */
+    START_ARRAY,
+    /** Closing bracket of an array. */
+    END_ARRAY,
+    /** Opening brace of an object. */
+    START_OBJECT,
+    /** Closing brace of an object. */
+    END_OBJECT,
+    /** Name of an object member, read with getString(). */
+    KEY,
+    /** String value, read with getString(). */
+    STRING,
+    /** Number value, read with getInt(), getLong() or getDouble(). */
+    NUMBER,
+    /** The value true or false, read with getBoolean(). */
+    BOOLEAN,
+    /** The value null. */
+    NULL,
+    /** End of the json document. */
+    END_DOCUMENT
+}
@@ -1,23 +1,51 @@
 package objectorientedprogramming;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- * Class for reading and writing JSON files.
+ * Class for reading and writing JSON files. The class keeps no parsing state,
+ * so one instance can be shared between threads.
  * 
  * @author Laura Kanerva.
  */
 public class JsonUtil {
-    private int index;
-    private JsonObject thisJson;
-    private String line;
+    private static final Metrics.Operation READ_JSON = Metrics.operation("readJson");
+    private static final Metrics.Operation WRITE_JSON = Metrics.operation("writeToJson");
+
+    /**
+     * Parses a value from an open json file.
+     *
+     * @param <T> type of the parsed value
+     */
+    public interface FileParser<T> {
+        /**
+         * Parses the content of one file.
+         *
+         * @param file the file being parsed, the same object as in the list given to readAll
+         * @param reader parser positioned at the start of the file
+         * @return the parsed value
+         * @throws IOException if the file is not valid
+         */
+        T parse(File file, JsonReader reader) throws IOException;
+    }
 
     /**
      * Empty constructor.
@@ -33,24 +61,60 @@ public class JsonUtil {
      * @param jsons list of jsons to be saved in the file
      */
     public void writeToJson(File file, JsonObject[] jsons) {
-        FileWriter fw = null;
-        BufferedWriter bw = null;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writeToJson(writer, jsons);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the JSONObjects to a .json file and writes a JsonIndex sidecar next to it,
+     * so the file can later be read object by object with MappedJsonList.
+     * 
+     * @param file the file user chose for saving the json
+     * @param jsons list of jsons to be saved in the file
+     */
+    public void writeIndexedJson(File file, JsonObject[] jsons) {
+        writeToJson(file, jsons);
         try {
-            fw = new FileWriter(file);
-            bw = new BufferedWriter(fw);
-            bw.write(Arrays.toString(jsons));
+            JsonIndex.write(file);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            try {
-                bw.close();
-                fw.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
     }
 
+    /**
+     * Writes the JSONObjects to a stream as a json array. The stream is flushed but not closed.
+     * 
+     * @param writer the stream to write to
+     * @param jsons list of jsons to be written
+     * @throws IOException if writing fails
+     */
+    public void writeToJson(Writer writer, JsonObject[] jsons) throws IOException {
+        long start = Metrics.start();
+        JsonWriter jw = new JsonWriter(writer);
+        try {
+            jw.writeArray(jsons);
+            jw.flush();
+        } catch (IOException e) {
+            WRITE_JSON.failed(start);
+            throw e;
+        }
+        WRITE_JSON.record(start, jw.getPosition(), jsons.length);
+    }
+
+    /**
+     * Writes the JSONObjects to a byte stream as UTF-8 encoded json. The stream is flushed but not closed.
+     * 
+     * @param out the stream to write to
+     * @param jsons list of jsons to be written
+     * @throws IOException if writing fails
+     */
+    public void writeToJson(OutputStream out, JsonObject[] jsons) throws IOException {
+        writeToJson(new OutputStreamWriter(out, StandardCharsets.UTF_8), jsons);
+    }
+
     /**
      * Reads the .json file and creates a JSONObject from its content.
      * 
@@ -58,49 +122,184 @@ public class JsonUtil {
      * @return the object created from file content
      */
     public ArrayList<JsonObject> readJson(File file) {
-        FileReader fr = null; 
-        BufferedReader br = null;
-        try {
-            fr = new FileReader(file);
-            br = new BufferedReader(fr);
+        ArrayList<JsonObject> jsons = new ArrayList<>();
+        readJson(file, jsons::add);
+        return jsons;
+    }
+
+    /**
+     * Reads the .json file one object at a time and passes each object to the consumer
+     * as soon as it has been parsed. Only the object being parsed is kept in memory.
+     * 
+     * @param file the file user wants to read
+     * @param consumer receives the objects in file order
+     */
+    public void readJson(File file, Consumer<JsonObject> consumer) {
+        try (JsonReader reader = createReader(file)) {
+            readJson(reader, consumer);
         } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
-        String str = "";
+    /**
+     * Reads json from the given stream one object at a time.
+     * 
+     * @param reader stream containing a json object or an array of objects
+     * @param consumer receives the objects in stream order
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public void readJson(Reader reader, Consumer<JsonObject> consumer) throws IOException {
+        readJson(new JsonReader(reader), consumer);
+    }
+
+    /**
+     * Reads every JSONObject the pull parser has left.
+     * 
+     * @param reader parser positioned before a json object or an array of objects
+     * @param consumer receives the objects in stream order
+     * @throws IOException if reading fails or the content is not valid json
+     */
+    public void readJson(JsonReader reader, Consumer<JsonObject> consumer) throws IOException {
+        long start = Metrics.start();
+        long count = 0;
         try {
-            String thisLine = br.readLine();
-            while(thisLine != null) {
-                str += thisLine.strip();
-                thisLine = br.readLine();
+            JsonObject jo = reader.nextObject();
+            while (jo != null) {
+                consumer.accept(jo);
+                count++;
+                jo = reader.nextObject();
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            READ_JSON.failed(start);
+            throw e;
         }
-        str = removeWhiteSpace(str);
+        READ_JSON.record(start, reader.getPosition(), count);
+    }
 
-        return stringToJson(str);
+    /**
+     * Reads many .json files in parallel, using one thread per available processor.
+     * 
+     * @param files the files to read
+     * @return the objects of each file in the same order as the files, null for files that could not be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<ArrayList<JsonObject>> readAll(List<File> files) throws InterruptedException {
+        return readAll(files, (file, reader) -> {
+            ArrayList<JsonObject> jsons = new ArrayList<>();
+            readJson(reader, jsons::add);
+            return jsons;
+        }, Runtime.getRuntime().availableProcessors());
     }
 
     /**
-     * Removes all white space from the given string.
+     * Parses many .json files in parallel, using one thread per available processor.
+     * 
+     * @param <T> type of the parsed values
+     * @param files the files to parse
+     * @param parser parses the content of a single file
+     * @return the parsed values in the same order as the files, null for files that could not be parsed
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <T> List<T> readAll(List<File> files, FileParser<T> parser) throws InterruptedException {
+        return readAll(files, parser, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses many .json files in parallel, at most the given number at a time. Files
+     * that cannot be parsed are printed to the standard error stream.
+     * 
+     * @param <T> type of the parsed values
+     * @param files the files to parse
+     * @param parser parses the content of a single file
+     * @param parallelism maximum number of files parsed at the same time
+     * @return the parsed values in the same order as the files, null for files that could not be parsed
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <T> List<T> readAll(List<File> files, FileParser<T> parser, int parallelism) throws InterruptedException {
+        return readAll(files, parser, parallelism, (file, e) -> System.err.println(file + ": " + e.getMessage()));
+    }
+
+    /**
+     * Parses many .json files in parallel, at most the given number at a time.
+     * 
+     * @param <T> type of the parsed values
+     * @param files the files to parse
+     * @param parser parses the content of a single file
+     * @param parallelism maximum number of files parsed at the same time
+     * @param failed receives each file that could not be opened or parsed, on the thread that parsed it
+     * @return the parsed values in the same order as the files, null for files that could not be parsed
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <T> List<T> readAll(List<File> files, FileParser<T> parser, int parallelism,
+            BiConsumer<File, IOException> failed) throws InterruptedException {
+        ExecutorService executor = ExecutorFactory.newExecutor(parallelism);
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<T>> futures = new ArrayList<>(files.size());
+        try {
+            for (File file : files) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try (JsonReader reader = createReader(file)) {
+                        return parser.parse(file, reader);
+                    } catch (IOException e) {
+                        failed.accept(file, e);
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<T> results = new ArrayList<>(files.size());
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a pull parser for the .json file. The caller is responsible for closing it.
+     * The file is parsed as UTF-8 bytes, without decoding anything but its strings.
+     * 
+     * @param file the file to read
+     * @return parser reading the file as UTF-8
+     * @throws IOException if the file cannot be opened
+     */
+    public JsonReader createReader(File file) throws IOException {
+        return new Utf8JsonReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * Removes all white space outside strings from the given string. Escaped quotes
+     * do not end a string, so the content of strings is kept as it is.
      * 
      * @param str string with possible, useless white space
      * @return string without any useless white space
      */
     public String removeWhiteSpace(String str) {
-        String noWhiteSpace = "";
+        StringBuilder noWhiteSpace = new StringBuilder(str.length());
         boolean reading = false;
         for(int i = 0; i < str.length(); i++) {
             char current = str.charAt(i);
-            if ((current == ' ' || current == '\t') && !reading) {
+            if (!reading && (current == ' ' || current == '\t' || current == '\n' || current == '\r')) {
                 continue;
-            } if (current == '"') {
+            }
+            if (current == '"') {
                 reading = !reading;
+            } else if (current == '\\' && reading && i + 1 < str.length()) {
+                noWhiteSpace.append(current);
+                current = str.charAt(++i);
             }
-            noWhiteSpace += current;
+            noWhiteSpace.append(current);
         }
-        return noWhiteSpace;
+        return noWhiteSpace.toString();
     }
 
     /**
@@ -110,81 +309,12 @@ public class JsonUtil {
      * @return the JSONObject created from str content
      */
     public ArrayList<JsonObject> stringToJson(String str) {
-        thisJson = null;
-        index = 1;
-        line = str;
-
         ArrayList<JsonObject> jsons = new ArrayList<>();
-
-        while (index < line.length()) { //käy koko linen läpi
-            if(line.charAt(index++) == '{') { //aloittaa uuden objectin
-                thisJson = createObject();
-                jsons.add(thisJson);
-            }
+        try {
+            readJson(new StringReader(str), jsons::add);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         return jsons;
     }
-
-    /**
-     * Adds keys and values to the JSONObject.
-     *
-     * @return the created JSONobject
-     */
-    public JsonObject createObject() {
-        JsonObject jo = new JsonObject();
-        while(true) {
-            String key = readString();
-            index ++; // :
-            Object value = readValue();
-            jo.add(key, value);
-            if(line.charAt(index) == '}') {
-                break;
-            } else {
-                index ++;
-            }
-        }
-        return jo; 
-    }
-
-    /**
-     * Reads a single string from line.
-     *
-     * @return String read from line.
-     */
-    public String readString() {
-        String str = "";
-        if(line.charAt(index) == '"') {
-            index++;
-        }
-        while(true) {
-            char c = line.charAt(index++);
-            if(c == '"') {
-                break;
-            }
-            str += c;
-        }
-        return str;
-    }
-
-    /**
-     * Reads value that can be either a string or an integer.
-     *
-     * @return either a string or an integer, detected from line.
-     */
-    public Object readValue() {
-        if(line.charAt(index) == '"') {
-            return readString();
-        } else {
-            String number = "";
-            while(true) {
-                char c = line.charAt(index);
-                if(c == '}' || c == ',') {
-                    break;
-                }
-                index++;
-                number += c;
-            }
-            return Integer.parseInt(number);
-        }
-    }
-}
\ No newline at end of file
+}
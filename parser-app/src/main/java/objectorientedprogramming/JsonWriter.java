@@ -0,0 +1,330 @@
+package objectorientedprogramming;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Streaming writer that writes JSONObjects straight to a character stream.
+ * Output goes through a reusable buffer, so writing a list allocates the same
+ * amount of memory regardless of its length. Keys and strings are escaped as
+ * RFC 8259 requires.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private long flushed;
+    private boolean needsSeparator;
+
+    /**
+     * Class constructor.
+     *
+     * @param out the stream to write json to
+     */
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a top-level array.
+     *
+     * @throws IOException if writing fails
+     */
+    public void beginArray() throws IOException {
+        write('[');
+        needsSeparator = false;
+    }
+
+    /**
+     * Ends the top-level array.
+     *
+     * @throws IOException if writing fails
+     */
+    public void endArray() throws IOException {
+        write(']');
+        needsSeparator = false;
+    }
+
+    /**
+     * Writes a JSONObject. Inside an array the objects are separated with commas.
+     *
+     * @param jo the object to write
+     * @throws IOException if writing fails
+     */
+    public void writeObject(JsonObject jo) throws IOException {
+        if (needsSeparator) {
+            write(", ");
+        }
+        writeMembers(jo, 1);
+        needsSeparator = true;
+    }
+
+    /**
+     * Writes an array of JSONObjects as a complete document.
+     *
+     * @param jsons the objects to write
+     * @throws IOException if writing fails
+     */
+    public void writeArray(JsonObject[] jsons) throws IOException {
+        beginArray();
+        for (JsonObject jo : jsons) {
+            writeObject(jo);
+        }
+        endArray();
+    }
+
+    /**
+     * Returns how many characters have been written, including the buffered ones.
+     *
+     * @return number of characters written so far
+     */
+    public long getPosition() {
+        return flushed + pos;
+    }
+
+    /**
+     * Writes the buffered characters to the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffer and closes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+    /**
+     * Writes the keys and values of an object, each member on its own line. Integer
+     * values are written without boxing.
+     *
+     * @param jo the object
+     * @param depth nesting level of the members, 1 for a top-level object
+     */
+    private void writeMembers(JsonObject jo, int depth) throws IOException {
+        write("{\n");
+        int size = jo.size();
+        for (int i = 0; i < size; i++) {
+            indent(depth);
+            writeString(jo.keyAt(i));
+            write(": ");
+            if (jo.isIntegral(i)) {
+                writeLong(jo.longAt(i));
+            } else {
+                writeValue(jo.valueAt(i), depth);
+            }
+            if (i < size - 1) {
+                write(",\n");
+            }
+        }
+        write('\n');
+        indent(depth - 1);
+        write('}');
+    }
+
+    /**
+     * Writes one tab for each nesting level.
+     *
+     * @param depth nesting level
+     */
+    private void indent(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            write('\t');
+        }
+    }
+
+    /**
+     * Writes a single value.
+     *
+     * @param value a string, a number, a boolean, null, a JSONObject or a list of these
+     * @param depth nesting level of the member or list holding the value
+     * @throws IllegalArgumentException if the value is NaN or infinite, which json
+     *         cannot express, or of a type json has no form for, such as a Character,
+     *         a BigDecimal, a Map or an array
+     */
+    private void writeValue(Object value, int depth) throws IOException {
+        if (value == null) {
+            write("null");
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            write(value.toString());
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new IllegalArgumentException("Not a json number: " + d);
+            }
+            write(value.toString());
+        } else if (value instanceof JsonObject) {
+            writeMembers((JsonObject) value, depth + 1);
+        } else if (value instanceof List) {
+            write('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    write(", ");
+                }
+                writeValue(list.get(i), depth);
+            }
+            write(']');
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as json");
+        }
+    }
+
+    /**
+     * Writes a quoted string. Runs of characters that need no escaping are copied at once.
+     *
+     * @param str the string
+     */
+    private void writeString(String str) throws IOException {
+        write('"');
+        int start = 0;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                write(str, start, i);
+                writeEscape(c);
+                start = i + 1;
+            }
+        }
+        write(str, start, length);
+        write('"');
+    }
+
+    /**
+     * Writes the escape sequence of a character.
+     *
+     * @param c a quote, a backslash or a control character
+     */
+    private void writeEscape(char c) throws IOException {
+        write('\\');
+        switch (c) {
+            case '"':
+            case '\\':
+                write(c);
+                break;
+            case '\n':
+                write('n');
+                break;
+            case '\r':
+                write('r');
+                break;
+            case '\t':
+                write('t');
+                break;
+            case '\b':
+                write('b');
+                break;
+            case '\f':
+                write('f');
+                break;
+            default:
+                write("u00");
+                write(Character.forDigit(c >> 4, 16));
+                write(Character.forDigit(c & 0xF, 16));
+                break;
+        }
+    }
+
+    /**
+     * Writes the digits of a number without creating a string.
+     *
+     * @param value the number
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        if (pos + 20 > buffer.length) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int start = pos;
+        do {
+            buffer[pos++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+    }
+
+    /**
+     * Writes a string into the buffer.
+     *
+     * @param str the characters to write
+     */
+    private void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    /**
+     * Writes part of a string into the buffer.
+     *
+     * @param str the string
+     * @param offset index of the first character to write
+     * @param end index after the last character to write
+     */
+    private void write(String str, int offset, int end) throws IOException {
+        while (offset < end) {
+            if (pos == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(end - offset, buffer.length - pos);
+            str.getChars(offset, offset + n, buffer, pos);
+            pos += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes a single character into the buffer.
+     *
+     * @param c the character to write
+     */
+    private void write(char c) throws IOException {
+        if (pos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[pos++] = c;
+    }
+
+    /**
+     * Empties the buffer into the underlying stream.
+     */
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            flushed += pos;
+            pos = 0;
+        }
+    }
+}
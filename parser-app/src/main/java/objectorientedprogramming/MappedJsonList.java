@@ -0,0 +1,100 @@
+package objectorientedprogramming;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Random access to the objects of a large json array file without parsing all of it.
+ * The file is memory-mapped and only the objects that are asked for get parsed,
+ * using the byte offsets of its JsonIndex sidecar. Objects are parsed from the
+ * mapped bytes, so only their strings are decoded.
+ *
+ * @author Laura Kanerva.
+ */
+public class MappedJsonList implements Closeable {
+    private final FileChannel channel;
+    private final JsonIndex index;
+    private final MappedByteBuffer mapped;
+
+    /**
+     * Class constructor, opens the file and its index. The index is created if it does not exist.
+     *
+     * @param file a json array file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedJsonList(File file) throws IOException {
+        index = JsonIndex.open(file);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+    }
+
+    /**
+     * Returns the number of objects in the file.
+     *
+     * @return number of objects
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Parses a single object.
+     *
+     * @param i index of the object
+     * @return the object
+     * @throws IOException if the object cannot be read
+     */
+    public JsonObject get(int i) throws IOException {
+        if (i < 0 || i >= index.size()) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + index.size());
+        }
+        return new Utf8JsonReader(slice(index.start(i), index.end(i))).nextObject();
+    }
+
+    /**
+     * Parses the objects in a range, touching only the part of the file they are in.
+     *
+     * @param from index of the first object, inclusive
+     * @param to index of the last object, exclusive
+     * @param consumer receives the objects in file order
+     * @throws IOException if an object cannot be read
+     */
+    public void range(int from, int to, Consumer<JsonObject> consumer) throws IOException {
+        for (int i = from; i < to; i++) {
+            consumer.accept(get(i));
+        }
+    }
+
+    /**
+     * Closes the file. Objects can not be read after this.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the bytes between two offsets.
+     *
+     * @param start first byte, inclusive
+     * @param end last byte, exclusive
+     * @return the bytes as a buffer
+     */
+    private ByteBuffer slice(long start, long end) throws IOException {
+        if (mapped != null) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) start).limit((int) end);
+            return slice;
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+}
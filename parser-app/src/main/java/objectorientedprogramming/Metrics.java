@@ -0,0 +1,378 @@
+package objectorientedprogramming;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the slow operations, such as reading,
+ * saving, importing and uploading lists. Each operation is published as an MXBean
+ * named objectorientedprogramming:type=Operation,name=NAME, so it can be watched
+ * with JConsole or any JMX client. With JFR events on, every operation is also
+ * recorded as an event that Java Mission Control can show on a timeline.
+ * <p>
+ * Both are off unless the JVM is started with -Dshoppinglist.metrics=true or
+ * -Dshoppinglist.metrics.jfr=true. The switches are constants, so when they are
+ * off the JIT compiler removes the timing code and the operations cost nothing.
+ * An operation is timed like this:
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * OPERATION.record(start, bytes, items);
+ * </pre>
+ *
+ * @author Laura Kanerva.
+ */
+public class Metrics {
+    /** True if counters and histograms are collected and published through JMX. */
+    public static final boolean ENABLED = Boolean.getBoolean("shoppinglist.metrics");
+    /** True if every operation is recorded as a JFR event. */
+    public static final boolean EVENTS = Boolean.getBoolean("shoppinglist.metrics.jfr");
+    private static final boolean ACTIVE = ENABLED || EVENTS;
+
+    private static final Map<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Private constructor, class only has static methods.
+     */
+    private Metrics() {
+
+    }
+
+    /**
+     * What JMX clients see of an operation.
+     */
+    public interface OperationMXBean {
+        /**
+         * Returns the number of operations, failed ones included.
+         *
+         * @return number of operations
+         */
+        long getCount();
+
+        /**
+         * Returns the number of times the operation failed.
+         *
+         * @return number of failures
+         */
+        long getFailures();
+
+        /**
+         * Returns the bytes or characters processed by all operations.
+         *
+         * @return bytes processed
+         */
+        long getBytes();
+
+        /**
+         * Returns the items or objects processed by all operations.
+         *
+         * @return items processed
+         */
+        long getItems();
+
+        /**
+         * Returns the time spent in all operations.
+         *
+         * @return total time in milliseconds
+         */
+        double getTotalMillis();
+
+        /**
+         * Returns the average time of an operation.
+         *
+         * @return mean time in milliseconds
+         */
+        double getMeanMillis();
+
+        /**
+         * Returns the median time of an operation, within an eighth of its value.
+         *
+         * @return median time in milliseconds
+         */
+        double getMedianMillis();
+
+        /**
+         * Returns the time 99 percent of the operations finished in, within an
+         * eighth of its value.
+         *
+         * @return 99th percentile in milliseconds
+         */
+        double get99thPercentileMillis();
+
+        /**
+         * Returns the longest time of an operation.
+         *
+         * @return maximum time in milliseconds
+         */
+        double getMaxMillis();
+
+        /**
+         * Returns the bytes processed per second of operation time.
+         *
+         * @return throughput in megabytes per second
+         */
+        double getMegabytesPerSecond();
+
+        /**
+         * Sets everything back to zero.
+         */
+        void reset();
+    }
+
+    /**
+     * Statistics of one kind of operation. Recording is safe from any thread.
+     */
+    public static class Operation implements OperationMXBean {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        /**
+         * Class constructor.
+         *
+         * @param name name of the operation
+         */
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the operation.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Records a finished operation.
+         *
+         * @param start what Metrics.start returned when the operation started
+         * @param byteCount bytes or characters processed
+         * @param itemCount items or objects processed
+         */
+        public void record(long start, long byteCount, long itemCount) {
+            if (ACTIVE) {
+                record(start, byteCount, itemCount, false);
+            }
+        }
+
+        /**
+         * Records a failed operation.
+         *
+         * @param start what Metrics.start returned when the operation started
+         */
+        public void failed(long start) {
+            if (ACTIVE) {
+                record(start, 0, 0, true);
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public long getItems() {
+            return items.sum();
+        }
+
+        @Override
+        public double getTotalMillis() {
+            return nanos.sum() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : nanos.sum() / NANOS_PER_MILLI / n;
+        }
+
+        @Override
+        public double getMedianMillis() {
+            return percentile(0.5);
+        }
+
+        @Override
+        public double get99thPercentileMillis() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return max.get() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getMegabytesPerSecond() {
+            long time = nanos.sum();
+            return time == 0 ? 0 : bytes.sum() * 1e3 / time;
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            failures.reset();
+            bytes.reset();
+            items.reset();
+            nanos.reset();
+            max.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+
+        /**
+         * Describes the statistics on one line.
+         *
+         * @return the description
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "%s: %d ok, %d failed, %d items, %.1f MB, mean %.2f ms, median %.2f ms, p99 %.2f ms, max %.2f ms",
+                name, getCount() - getFailures(), getFailures(), getItems(), getBytes() / 1e6,
+                getMeanMillis(), getMedianMillis(), get99thPercentileMillis(), getMaxMillis());
+        }
+
+        /**
+         * Adds an operation to the statistics and the JFR recording.
+         *
+         * @param start start time in nanoseconds
+         * @param byteCount bytes processed
+         * @param itemCount items processed
+         * @param failed true if the operation failed
+         */
+        private void record(long start, long byteCount, long itemCount, boolean failed) {
+            long time = System.nanoTime() - start;
+            if (ENABLED) {
+                count.increment();
+                if (failed) {
+                    failures.increment();
+                }
+                bytes.add(byteCount);
+                items.add(itemCount);
+                nanos.add(time);
+                max.accumulate(time);
+                histogram.incrementAndGet(bucket(time));
+            }
+            if (EVENTS) {
+                OperationEvent.commit(name, time, byteCount, itemCount, failed);
+            }
+        }
+
+        /**
+         * Finds the time a share of the operations finished in.
+         *
+         * @param share the share, between 0 and 1
+         * @return the time in milliseconds, the upper end of its bucket
+         */
+        private double percentile(double share) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            long rank = (long) Math.ceil(share * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max.get()) / NANOS_PER_MILLI;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the start time of an operation.
+     *
+     * @return the current time in nanoseconds, or 0 if metrics are off
+     */
+    public static long start() {
+        return ACTIVE ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the statistics of an operation, publishing them through JMX the
+     * first time they are asked for.
+     *
+     * @param name name of the operation
+     * @return the statistics
+     */
+    public static Operation operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, n -> {
+            Operation operation = new Operation(n);
+            if (ENABLED) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(operation,
+                        new ObjectName("objectorientedprogramming:type=Operation,name=" + n));
+                } catch (JMException e) {
+                    e.printStackTrace();
+                }
+            }
+            return operation;
+        });
+    }
+
+    /**
+     * Returns the bucket of a time. Times below 8 ns have a bucket each, and every
+     * power of two above is split into 8 buckets, so a bucket is at most an eighth
+     * wider than its lower end.
+     *
+     * @param nanos the time, not negative
+     * @return index of the bucket
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest time of a bucket.
+     *
+     * @param bucket index of the bucket
+     * @return the time in nanoseconds
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        long lower = (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package objectorientedprogramming;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one operation timed by Metrics. The event is committed after the
+ * operation, so its own duration is zero and the time of the operation is in a
+ * field. The class is only loaded when JFR events are switched on.
+ *
+ * @author Laura Kanerva.
+ */
+@Name("objectorientedprogramming.Operation")
+@Label("Shopping List Operation")
+@Category("Shopping List")
+@Description("Reading, saving, importing or uploading a list")
+class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long bytes;
+
+    @Label("Items")
+    long items;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Records an operation if a recording with the event enabled is running.
+     *
+     * @param operation name of the operation
+     * @param time time of the operation in nanoseconds
+     * @param bytes bytes or characters processed
+     * @param items items or objects processed
+     * @param failed true if the operation failed
+     */
+    static void commit(String operation, long time, long bytes, long items, boolean failed) {
+        OperationEvent event = new OperationEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.time = time;
+            event.bytes = bytes;
+            event.items = items;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull parser that reads UTF-8 encoded json straight from bytes. The bytes are
+ * read from a channel, such as a FileChannel, into one buffer that is reused
+ * for the whole stream, and they are never decoded as a whole. Everything json
+ * uses for its structure is ASCII, so the parser can find it from the raw
+ * bytes, and only keys and string values are decoded from UTF-8 when they are
+ * created.
+ * <p>
+ * Strings and white space are scanned eight bytes at a time: the bytes are
+ * read as one long and a few arithmetic operations tell whether any of them is
+ * a quote, a backslash or a control character, or which of them are white
+ * space, so there is no branch per byte. A byte order mark at the start is
+ * skipped. Positions and columns are counted in bytes.
+ *
+ * @author Laura Kanerva.
+ */
+public class Utf8JsonReader extends JsonReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long QUOTES = '"' * ONES;
+    private static final long BACKSLASHES = '\\' * ONES;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long SPACES = ' ' * ONES;
+    private static final long TABS = '\t' * ONES;
+    private static final long LINE_FEEDS = '\n' * ONES;
+    private static final long RETURNS = '\r' * ONES;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer source;
+    private final String[] keyCache = new String[64];
+    private final byte[][] keyBytes = new byte[64][];
+    private byte[] bytes;
+    private ByteBuffer buffer;
+
+    /**
+     * Class constructor.
+     *
+     * @param channel the channel to read json from, closed by close()
+     */
+    public Utf8JsonReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.source = null;
+        setBuffer(new byte[BUFFER_SIZE]);
+    }
+
+    /**
+     * Class constructor for json that is already in memory, such as a part of a
+     * memory-mapped file. The bytes are copied to the parser's buffer as they are
+     * needed, and the position of the given buffer is moved past them.
+     *
+     * @param source the bytes from its position to its limit
+     */
+    public Utf8JsonReader(ByteBuffer source) {
+        this.channel = null;
+        this.source = source;
+        setBuffer(new byte[Math.max(16, Math.min(BUFFER_SIZE, source.remaining()))]);
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a quoted key. Keys without escapes are compared byte by byte with the
+     * key last seen in their slot of a small cache, so the same key appearing in
+     * every object is only decoded once.
+     *
+     * @return the key without quotes
+     */
+    @Override
+    String readKey() throws IOException {
+        int start = pos + 1;
+        int end = scanString(start);
+        if (end == limit || bytes[end] != '"') {
+            return readString();
+        }
+        int length = end - start;
+        int hash = length;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = hash & (keyCache.length - 1);
+        byte[] cached = keyBytes[slot];
+        if (cached != null && Arrays.equals(cached, 0, cached.length, bytes, start, end)) {
+            pos = end + 1;
+            return keyCache[slot];
+        }
+        String key = new String(bytes, start, length, StandardCharsets.UTF_8);
+        keyCache[slot] = key;
+        keyBytes[slot] = Arrays.copyOfRange(bytes, start, end);
+        pos = end + 1;
+        return key;
+    }
+
+    /**
+     * Reads a quoted string. The whole string is kept in the buffer, which is
+     * compacted or grown when needed, so a multi-byte character is never split
+     * between two reads and the string is decoded at once.
+     *
+     * @return the string without quotes
+     */
+    @Override
+    String readString() throws IOException {
+        expect('"');
+        boolean escaped = false;
+        int start = pos;
+        while (true) {
+            pos = scanString(pos);
+            if (pos == limit) {
+                if (!refill(start)) {
+                    throw error("Unterminated string");
+                }
+                start = 0;
+                continue;
+            }
+            byte b = bytes[pos];
+            if (b == '"') {
+                if (!escaped) {
+                    String value = new String(bytes, start, pos - start, StandardCharsets.UTF_8);
+                    pos++;
+                    return value;
+                }
+                append(start, pos);
+                pos++;
+                return builder.toString();
+            } else if (b == '\\') {
+                if (!escaped) {
+                    builder.setLength(0);
+                    escaped = true;
+                }
+                append(start, pos);
+                pos++;
+                builder.append(readEscape());
+                start = pos;
+            } else {
+                throw error("Unescaped control character in string");
+            }
+        }
+    }
+
+    /**
+     * Decodes bytes of a string with escapes to the builder. The part before the
+     * first non-ASCII byte is copied as it is.
+     *
+     * @param start first byte, inclusive
+     * @param end last byte, exclusive
+     */
+    private void append(int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                builder.append(new String(bytes, i, end - i, StandardCharsets.UTF_8));
+                return;
+            }
+            builder.append((char) b);
+        }
+    }
+
+    /**
+     * Skips spaces, tabs and line breaks. No white space and a single space are
+     * checked first, as they are the most common. Longer runs are checked eight
+     * bytes at a time like strings, and the line feeds of a word are counted at
+     * once; only the last few bytes of the buffer are checked one by one.
+     */
+    @Override
+    void skipWhiteSpace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            if ((bytes[pos] & 0xFF) > ' ') {
+                return;
+            }
+            // the space after a colon
+            if (bytes[pos] == ' ' && pos + 1 < limit && (bytes[pos + 1] & 0xFF) > ' ') {
+                pos++;
+                return;
+            }
+            if (pos + Long.BYTES <= limit) {
+                long word = (long) LONGS.get(bytes, pos);
+                long lineFeeds = zeroBytes(word ^ LINE_FEEDS);
+                long other = ~(zeroBytes(word ^ SPACES) | zeroBytes(word ^ TABS) | zeroBytes(word ^ RETURNS)
+                    | lineFeeds) & HIGH_BITS;
+                // every bit below the lowest high bit of other, or all bits if the word is white space
+                lineFeeds &= (other & -other) - 1;
+                if (lineFeeds != 0) {
+                    line += Long.bitCount(lineFeeds);
+                    lineStart = bufferStart + pos + ((63 - Long.numberOfLeadingZeros(lineFeeds)) >>> 3) + 1;
+                }
+                if (other != 0) {
+                    pos += Long.numberOfTrailingZeros(other) >>> 3;
+                    return;
+                }
+                pos += Long.BYTES;
+                continue;
+            }
+            byte b = bytes[pos];
+            if (b == '\n') {
+                line++;
+                lineStart = bufferStart + pos + 1;
+            } else if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Marks the zero bytes of a word. Unlike the check in scanString, this one
+     * never marks a byte wrongly, so it can be used for all eight bytes.
+     *
+     * @param word eight bytes
+     * @return the high bit of each zero byte set and all other bits clear
+     */
+    private static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
+    /**
+     * Returns the next byte without consuming it.
+     *
+     * @return the next byte from 0 to 255, or -1 at the end of the stream
+     */
+    @Override
+    int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return bytes[pos] & 0xFF;
+    }
+
+    /**
+     * Refills the buffer once all of it has been consumed.
+     *
+     * @return false if the stream has ended
+     */
+    @Override
+    boolean fill() throws IOException {
+        return refill(pos);
+    }
+
+    /**
+     * Finds the first quote, backslash or control character of a string.
+     *
+     * @param from where to start looking
+     * @return index of the byte, or limit if there is none in the buffer
+     */
+    private int scanString(int from) {
+        int i = from;
+        // the last word may reach past the limit, into old bytes of the array
+        for (; i < limit && i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i);
+            long quotes = word ^ QUOTES;
+            long backslashes = word ^ BACKSLASHES;
+            // a high bit is set for each byte that is zero after the xor, or below a
+            // space; bytes above the first match may be marked wrongly but are never used
+            long found = ((quotes - ONES) & ~quotes | (backslashes - ONES) & ~backslashes
+                | (word - SPACES) & ~word) & HIGH_BITS;
+            if (found != 0) {
+                return Math.min(i + (Long.numberOfTrailingZeros(found) >>> 3), limit);
+            }
+        }
+        for (; i < limit; i++) {
+            byte b = bytes[i];
+            if (b == '"' || b == '\\' || (b >= 0 && b < ' ')) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Moves the unconsumed bytes to the start of the buffer and reads more after
+     * them. The buffer is doubled if the bytes to keep already fill it.
+     *
+     * @param keep index of the first byte to keep
+     * @return false if the stream has ended and no bytes were read
+     */
+    private boolean refill(int keep) throws IOException {
+        int kept = limit - keep;
+        if (kept == bytes.length) {
+            setBuffer(Arrays.copyOf(bytes, bytes.length * 2));
+        } else if (kept > 0) {
+            System.arraycopy(bytes, keep, bytes, 0, kept);
+        }
+        bufferStart += keep;
+        pos -= keep;
+        limit = kept;
+        int n = read();
+        if (n <= 0) {
+            return false;
+        }
+        limit += n;
+        if (bufferStart == 0 && kept == 0 && limit >= 3
+                && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+            pos = 3;
+            lineStart = 3;
+        }
+        return true;
+    }
+
+    /**
+     * Reads bytes after the limit of the buffer.
+     *
+     * @return number of bytes read, or -1 at the end of the stream
+     */
+    private int read() throws IOException {
+        if (source != null) {
+            int n = Math.min(source.remaining(), bytes.length - limit);
+            if (n == 0) {
+                return -1;
+            }
+            source.get(bytes, limit, n);
+            return n;
+        }
+        buffer.limit(bytes.length).position(limit);
+        int n = channel.read(buffer);
+        while (n == 0) {
+            n = channel.read(buffer);
+        }
+        return n;
+    }
+
+    /**
+     * Starts using a new array as the buffer.
+     *
+     * @param array the array, containing the bytes of the old one
+     */
+    private void setBuffer(byte[] array) {
+        bytes = array;
+        buffer = ByteBuffer.wrap(array);
+    }
+}
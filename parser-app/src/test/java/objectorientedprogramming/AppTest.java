@@ -0,0 +1,81 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the commands of the parser app.
+ *
+ * @author Laura Kanerva.
+ */
+public class AppTest extends TestCase {
+    private static final String LIST = "[{\"item\": \"milk\", \"amount\": 1}, {\"item\": \"milk\", \"amount\": 2}]";
+
+    private File directory;
+    private File input;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("app").toFile();
+        input = new File(directory, "list.json");
+        write(input, LIST);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    public void testMergeWritesOutput() throws IOException {
+        File output = new File(directory, "out/all.json");
+        output.getParentFile().mkdir();
+        assertEquals(0, App.run(new String[] {"merge", "-q", "-o", output.getPath(), input.getPath()}));
+        assertEquals(2, new JsonUtil().readJson(output).size());
+    }
+
+    public void testMergeRefusesToOverwriteInput() throws IOException {
+        File output = new File(directory, "all.json");
+        write(output, LIST);
+        assertEquals(2, App.run(new String[] {"merge", "-q", "-o", output.getPath(), directory.getPath()}));
+        assertEquals(LIST, read(output));
+    }
+
+    public void testDedupeRefusesSamePathWrittenDifferently() throws IOException {
+        String sameFile = new File(new File(directory, "."), "list.json").getPath();
+        assertEquals(2, App.run(new String[] {"dedupe", "-q", "-o", sameFile, input.getPath()}));
+        assertEquals(LIST, read(input));
+    }
+
+    public void testConvertRefusesInputDirectory() throws IOException {
+        assertEquals(2, App.run(new String[] {"convert", "-q", "-o", directory.getPath(), directory.getPath()}));
+        assertEquals(LIST, read(input));
+    }
+
+    public void testConvertWritesIntoOtherDirectory() throws IOException {
+        File output = new File(directory, "converted");
+        assertEquals(0, App.run(new String[] {"convert", "-q", "-o", output.getPath(), input.getPath()}));
+        assertTrue(new File(output, "list.json").isFile());
+    }
+
+    /**
+     * Writes a file.
+     */
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a file.
+     */
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
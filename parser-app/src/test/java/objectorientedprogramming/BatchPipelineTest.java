@@ -0,0 +1,104 @@
+package objectorientedprogramming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests for passing files through the stages of a BatchPipeline.
+ *
+ * @author Laura Kanerva.
+ */
+public class BatchPipelineTest extends TestCase {
+    private final List<File> inputs = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            File file = File.createTempFile("pipeline", ".json");
+            new JsonUtil().writeToJson(file, new JsonObject[] {item("item " + i)});
+            inputs.add(file);
+        }
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+        for (File file : inputs) {
+            file.delete();
+        }
+    }
+
+    public void testEveryBatchReachesSink() throws Exception {
+        List<BatchPipeline.Batch> batches = new ArrayList<>();
+        run(batch -> batch, batches);
+        assertEquals(3, batches.size());
+    }
+
+    public void testFailedTransformFailsItsFile() throws Exception {
+        List<BatchPipeline.Batch> batches = new ArrayList<>();
+        BatchPipeline pipeline = run(batch -> {
+            if (batch.getFile().equals(inputs.get(1))) {
+                throw new IllegalStateException("bad batch");
+            }
+            return batch;
+        }, batches);
+        assertEquals(3, batches.size());
+        assertEquals(1, pipeline.getFailed());
+    }
+
+    public void testDyingTransformEndsRun() throws Exception {
+        try {
+            run(batch -> {
+                throw new AssertionError("transform died");
+            }, new ArrayList<>());
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    /**
+     * Runs a pipeline on another thread, so that a hanging run fails the test
+     * instead of hanging it.
+     */
+    private BatchPipeline run(BatchPipeline.Transform transform, List<BatchPipeline.Batch> batches) throws Exception {
+        BatchPipeline pipeline = new BatchPipeline(2);
+        BatchPipeline.Sink sink = new BatchPipeline.Sink() {
+            @Override
+            public void accept(BatchPipeline.Batch batch) {
+                batches.add(batch);
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+        Future<?> running = executor.submit(() -> {
+            pipeline.run(inputs, transform, sink, null);
+            return null;
+        });
+        running.get(10, TimeUnit.SECONDS);
+        return pipeline;
+    }
+
+    /**
+     * Creates an item object.
+     */
+    private static JsonObject item(String name) {
+        JsonObject jo = new JsonObject();
+        jo.add("item", name);
+        jo.add("amount", 1);
+        return jo;
+    }
+}
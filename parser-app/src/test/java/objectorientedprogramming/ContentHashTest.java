@@ -0,0 +1,103 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests that ContentHash computes the content_hash Dropbox reports for a file.
+ * The expected hashes were computed separately from the algorithm Dropbox
+ * documents: SHA-256 of the concatenated SHA-256 hashes of 4 MB blocks.
+ *
+ * @author Laura Kanerva.
+ */
+public class ContentHashTest extends TestCase {
+    private static final int MB4 = ContentHash.BLOCK_SIZE;
+
+    public void testEmptyFile() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", new ContentHash().digest());
+    }
+
+    public void testBlockBoundaries() throws IOException {
+        assertEquals(4 * 1024 * 1024, MB4);
+        assertEquals("1406e05881e299367766d313e26c05564ec91bf721d31726bd6e46e60689539a", hash(data(1), MB4));
+        assertEquals("67ff506b3906081da446520329a02141563cc74bf62108ad0cdac644de35b99f", hash(data(MB4 - 1), MB4));
+        assertEquals("183f9bcba69d7ad647445f98f69c4adf63ac815175f1d7502c0f24bf5ca68c13", hash(data(MB4), MB4));
+        assertEquals("ea6cb7a5d28f10093584bb263726701c3c92edc484d993731f7338fed83808c2", hash(data(MB4 + 1), MB4));
+        assertEquals("e28161aef491065bd3ecfa251d3e7857fd8b6518012e1e42f6a74c0b8c586685", hash(data(2 * MB4), MB4));
+    }
+
+    public void testHashDoesNotDependOnWriteSizes() throws IOException {
+        byte[] data = data(MB4 + 1);
+        String expected = "ea6cb7a5d28f10093584bb263726701c3c92edc484d993731f7338fed83808c2";
+        assertEquals(expected, hash(data, 1000));
+        assertEquals(expected, hash(data, MB4 - 1));
+        ContentHash hash = new ContentHash();
+        for (byte b : data) {
+            hash.write(b);
+        }
+        assertEquals(expected, hash.digest());
+    }
+
+    public void testBytesArePassedOn() throws IOException {
+        byte[] data = data(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContentHash hash = new ContentHash(out);
+        hash.write(data, 0, data.length);
+        hash.close();
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+        assertEquals(hash(data, data.length), hash.digest());
+    }
+
+    public void testObjectsAreHashedAsJsonUtilWritesThem() throws IOException {
+        JsonObject[] jsons = new JsonObject[3];
+        for (int i = 0; i < jsons.length; i++) {
+            jsons[i] = new JsonObject();
+            jsons[i].add("item", "café " + i);
+            jsons[i].add("amount", i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonUtil().writeToJson(out, jsons);
+        byte[] bytes = out.toByteArray();
+        assertEquals(hash(bytes, bytes.length), ContentHash.of(jsons));
+    }
+
+    /**
+     * Checks the example Dropbox publishes for its content hash, milky-way-nasa.jpg,
+     * when the path of the image is given with -Dcontenthash.example=FILE.
+     */
+    public void testPublishedExample() throws IOException {
+        String example = System.getProperty("contenthash.example");
+        if (example == null) {
+            return;
+        }
+        byte[] data = Files.readAllBytes(new File(example).toPath());
+        assertEquals("485291fa0ee50c016982abbfa943957bcd231aae0492ccbaa22c58e3997b35e0", hash(data, 65536));
+    }
+
+    /**
+     * Returns bytes that differ from block to block, so a misplaced block boundary
+     * changes the hash.
+     */
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        return data;
+    }
+
+    /**
+     * Hashes bytes, writing them in pieces of the given size.
+     */
+    private static String hash(byte[] data, int pieceSize) throws IOException {
+        ContentHash hash = new ContentHash();
+        for (int off = 0; off < data.length; off += pieceSize) {
+            hash.write(data, off, Math.min(pieceSize, data.length - off));
+        }
+        return hash.digest();
+    }
+}
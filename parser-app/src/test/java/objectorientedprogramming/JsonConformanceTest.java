@@ -0,0 +1,246 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests that JsonReader and JsonWriter follow the RFC 8259 grammar.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonConformanceTest extends TestCase {
+
+    public void testAcceptsAnyValueAsDocument() throws IOException {
+        assertEquals("NUMBER:1", tokens("1"));
+        assertEquals("STRING:a", tokens(" \"a\" "));
+        assertEquals("BOOLEAN:true", tokens("true"));
+        assertEquals("BOOLEAN:false", tokens("false"));
+        assertEquals("NULL", tokens("null"));
+        assertEquals("START_ARRAY END_ARRAY", tokens("[ ]"));
+        assertEquals("START_OBJECT END_OBJECT", tokens("{}"));
+        // an empty file has no document rather than being an error
+        assertEquals("", tokens(" \n"));
+    }
+
+    public void testAcceptsNestedValues() throws IOException {
+        assertEquals("START_OBJECT KEY:a START_ARRAY NUMBER:1 START_OBJECT KEY:b NULL END_OBJECT"
+            + " START_ARRAY END_ARRAY BOOLEAN:false END_ARRAY END_OBJECT",
+            tokens("{\"a\": [1, {\"b\": null}, [], false]}"));
+        assertEquals("START_ARRAY NUMBER:1 NUMBER:2 END_ARRAY", tokens("[1\r\n,\t2]"));
+    }
+
+    public void testAcceptsEscapes() throws IOException {
+        assertEquals("STRING:\"\\/\b\f\n\r\t", tokens("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\""));
+        assertEquals("STRING:caf\u00e9", tokens("\"caf\\u00E9\""));
+        assertEquals("STRING:\ud83d\ude00", tokens("\"\\ud83d\\ude00\""));
+        assertEquals("KEY:a\"b NUMBER:1", tokens("{\"a\\\"b\": 1}").replace("START_OBJECT ", "")
+            .replace(" END_OBJECT", ""));
+    }
+
+    public void testAcceptsNumbers() throws IOException {
+        String[] numbers = {"0", "-0", "12", "-12", "0.5", "-0.5", "1e5", "1E+5", "1.5e-3", "2.0",
+            "9223372036854775807", "-9223372036854775808", "9223372036854775808", "1e400", "4.9e-324"};
+        for (String number : numbers) {
+            JsonReader reader = reader(number);
+            assertEquals(number, JsonToken.NUMBER, reader.next());
+            assertEquals(number, Double.parseDouble(number), reader.getDouble(), 0);
+            assertEquals(number, JsonToken.END_DOCUMENT, reader.next());
+        }
+    }
+
+    public void testIntegersStayExact() throws IOException {
+        JsonReader reader = reader("[9223372036854775807, -9223372036854775808, 2.0, 1e2]");
+        reader.next();
+        reader.next();
+        assertTrue(reader.isInteger());
+        assertEquals(Long.MAX_VALUE, reader.getLong());
+        reader.next();
+        assertTrue(reader.isInteger());
+        assertEquals(Long.MIN_VALUE, reader.getLong());
+        reader.next();
+        assertFalse(reader.isInteger());
+        reader.next();
+        assertFalse(reader.isInteger());
+    }
+
+    public void testRandomNumbersMatchParseDouble() throws IOException {
+        Random random = new Random(8259);
+        for (int i = 0; i < 20000; i++) {
+            String number;
+            switch (i % 4) {
+                case 0:
+                    number = Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL));
+                    break;
+                case 1:
+                    number = Double.toString(random.nextDouble() * 1000);
+                    break;
+                case 2:
+                    number = random.nextInt(1000000) + "." + random.nextInt(1000000) + "e" + (random.nextInt(60) - 30);
+                    break;
+                default:
+                    number = Long.toString(random.nextLong());
+                    break;
+            }
+            if (random.nextBoolean() && number.charAt(0) != '-') {
+                number = "-" + number;
+            }
+            JsonReader reader = reader(number);
+            assertEquals(number, JsonToken.NUMBER, reader.next());
+            assertEquals(number, Double.parseDouble(number), reader.getDouble(), 0);
+        }
+    }
+
+    public void testRejectsInvalidDocuments() {
+        String[] documents = {"01", "-01", "1.", ".5", "+1", "-", "1e", "1e+", "0x10", "NaN", "Infinity",
+            "[1,]", "[,1]", "[1 2]", "{\"a\" 1}", "{\"a\": 1,}", "{a: 1}", "{'a': 1}", "{\"a\"}", "[",
+            "{\"a\": 1", "\"abc", "\"a\tb\"", "\"a\nb\"", "\"\\x\"", "\"\\u12\"", "tru", "nul", "True", "1 2",
+            "[] []", "]"};
+        for (String document : documents) {
+            try {
+                tokens(document);
+                fail("accepted " + document);
+            } catch (JsonParseException e) {
+                assertTrue(document, e.getLine() >= 1 && e.getColumn() >= 1);
+            } catch (IOException e) {
+                fail(document + ": " + e);
+            }
+        }
+    }
+
+    public void testReportsLineAndColumn() throws IOException {
+        try {
+            tokens("[\n  1,\n  01\n]");
+            fail();
+        } catch (JsonParseException e) {
+            assertEquals(3, e.getLine());
+            assertTrue(e.getColumn() >= 3);
+        }
+    }
+
+    public void testRejectsDeepNesting() throws IOException {
+        String deep = String.join("", Collections.nCopies(1024, "[")) + String.join("", Collections.nCopies(1024, "]"));
+        tokens(deep);
+        try {
+            tokens("[" + deep + "]");
+            fail();
+        } catch (JsonParseException e) {
+            assertEquals(1, e.getLine());
+        }
+    }
+
+    public void testWrittenStringsReadBack() throws IOException {
+        Random random = new Random(20);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        sb.append((char) random.nextInt(0x20));
+                        break;
+                    case 1:
+                        sb.append("\"\\/".charAt(random.nextInt(3)));
+                        break;
+                    case 2:
+                        sb.append((char) (0xA0 + random.nextInt(0x3000)));
+                        break;
+                    default:
+                        sb.append((char) (' ' + random.nextInt(95)));
+                        break;
+                }
+            }
+            String value = sb.toString();
+            JsonObject jo = new JsonObject();
+            jo.add(value, value);
+            JsonReader reader = reader(jo.toString());
+            assertEquals(JsonToken.START_OBJECT, reader.next());
+            assertEquals(JsonToken.KEY, reader.next());
+            assertEquals(value, reader.getString());
+            assertEquals(JsonToken.STRING, reader.next());
+            assertEquals(value, reader.getString());
+            assertEquals(JsonToken.END_OBJECT, reader.next());
+        }
+    }
+
+    public void testWritesEveryValueType() throws IOException {
+        JsonObject inner = new JsonObject();
+        inner.add("tags", Arrays.asList("a", 1, 2.5, true, null));
+        JsonObject jo = new JsonObject();
+        jo.add("int", 1);
+        jo.add("long", Long.MIN_VALUE);
+        jo.add("double", 0.25);
+        jo.add("boolean", false);
+        jo.add("null", (Object) null);
+        jo.add("inner", inner);
+        assertEquals("START_OBJECT KEY:int NUMBER:1 KEY:long NUMBER:-9223372036854775808"
+            + " KEY:double NUMBER:0.25 KEY:boolean BOOLEAN:false KEY:null NULL KEY:inner START_OBJECT"
+            + " KEY:tags START_ARRAY STRING:a NUMBER:1 NUMBER:2.5 BOOLEAN:true NULL END_ARRAY END_OBJECT"
+            + " END_OBJECT", tokens(jo.toString()));
+    }
+
+    public void testIndentsNestedObjects() {
+        JsonObject innermost = new JsonObject();
+        innermost.add("c", 3);
+        JsonObject inner = new JsonObject();
+        inner.add("b", innermost);
+        JsonObject jo = new JsonObject();
+        jo.add("a", inner);
+        assertEquals("{\n\t\"a\": {\n\t\t\"b\": {\n\t\t\t\"c\": 3\n\t\t}\n\t}\n}", jo.toString());
+    }
+
+    public void testRejectsValuesJsonCannotExpress() throws IOException {
+        Object[] values = {Double.NaN, Double.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 'c',
+            new BigDecimal("1.5"), Collections.singletonMap("a", 1), new int[] {1}, new Object()};
+        for (Object value : values) {
+            JsonObject jo = new JsonObject();
+            jo.add("value", value);
+            JsonWriter writer = new JsonWriter(new StringWriter());
+            try {
+                writer.writeObject(jo);
+                fail("wrote " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Creates a parser for a document.
+     */
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    /**
+     * Reads a whole document and returns its tokens, with the text of keys, strings,
+     * numbers and booleans after a colon.
+     */
+    private static String tokens(String json) throws IOException {
+        JsonReader reader = reader(json);
+        List<String> tokens = new ArrayList<>();
+        for (JsonToken token = reader.next(); token != JsonToken.END_DOCUMENT; token = reader.next()) {
+            switch (token) {
+                case KEY:
+                case STRING:
+                case NUMBER:
+                    tokens.add(token + ":" + reader.getString());
+                    break;
+                case BOOLEAN:
+                    tokens.add(token + ":" + reader.getBoolean());
+                    break;
+                default:
+                    tokens.add(token.toString());
+                    break;
+            }
+        }
+        return String.join(" ", tokens);
+    }
+}
@@ -0,0 +1,87 @@
+package objectorientedprogramming;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the sidecar index of json files.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonIndexTest extends TestCase {
+    private static final int MAGIC = 0x4A494458;
+
+    private File json;
+    private File idx;
+
+    @Override
+    protected void setUp() throws IOException {
+        json = File.createTempFile("indexed", ".json");
+        idx = JsonIndex.indexFile(json);
+        JsonObject[] jsons = new JsonObject[5];
+        for (int i = 0; i < jsons.length; i++) {
+            jsons[i] = new JsonObject();
+            jsons[i].add("item", "item {" + i + "}");
+            jsons[i].add("amount", i);
+        }
+        new JsonUtil().writeIndexedJson(json, jsons);
+    }
+
+    @Override
+    protected void tearDown() {
+        json.delete();
+        idx.delete();
+    }
+
+    public void testIndexFindsObjects() throws IOException {
+        JsonIndex index = JsonIndex.open(json);
+        assertEquals(5, index.size());
+        byte[] bytes = Files.readAllBytes(json.toPath());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals('{', bytes[(int) index.start(i)]);
+            assertTrue(index.end(i) > index.start(i));
+        }
+        assertEquals(bytes.length, index.end(4));
+    }
+
+    public void testHugeCountIsRescanned() throws IOException {
+        writeIndex(json.length(), Integer.MAX_VALUE);
+        assertEquals(5, JsonIndex.open(json).size());
+    }
+
+    public void testNegativeCountIsRescanned() throws IOException {
+        writeIndex(json.length(), -1);
+        assertEquals(5, JsonIndex.open(json).size());
+    }
+
+    public void testOffsetsOutOfOrderAreRescanned() throws IOException {
+        writeIndex(json.length(), 2, 10, 5);
+        assertEquals(5, JsonIndex.open(json).size());
+    }
+
+    public void testTruncatedIndexIsRescanned() throws IOException {
+        byte[] bytes = Files.readAllBytes(idx.toPath());
+        Files.write(idx.toPath(), Arrays.copyOf(bytes, 10));
+        assertEquals(5, JsonIndex.open(json).size());
+        assertEquals(bytes.length, idx.length());
+    }
+
+    /**
+     * Overwrites the sidecar with a header and offsets.
+     */
+    private void writeIndex(long length, int count, long... offsets) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(idx))) {
+            out.writeInt(MAGIC);
+            out.writeLong(length);
+            out.writeInt(count);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+    }
+}
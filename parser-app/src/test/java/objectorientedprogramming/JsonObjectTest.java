@@ -0,0 +1,36 @@
+package objectorientedprogramming;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for reading typed values from a JsonObject.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonObjectTest extends TestCase {
+
+    public void testGetIntReadsNumbers() {
+        JsonObject jo = new JsonObject();
+        jo.add("int", -7);
+        jo.add("long", (long) Integer.MIN_VALUE);
+        jo.add("double", 2.75);
+        jo.add("string", "5");
+        assertEquals(-7, jo.getInt("int", 0));
+        assertEquals(Integer.MIN_VALUE, jo.getInt("long", 0));
+        assertEquals(2, jo.getInt("double", 0));
+        assertEquals(-1, jo.getInt("string", -1));
+        assertEquals(-1, jo.getInt("missing", -1));
+    }
+
+    public void testGetIntDoesNotTruncateLargeNumbers() {
+        JsonObject jo = new JsonObject();
+        jo.add("long", 1L << 32);
+        jo.add("negative", Integer.MIN_VALUE - 1L);
+        jo.add("double", 1e10);
+        jo.add("edge", Integer.MAX_VALUE + 0.5);
+        assertEquals(-1, jo.getInt("long", -1));
+        assertEquals(-1, jo.getInt("negative", -1));
+        assertEquals(-1, jo.getInt("double", -1));
+        assertEquals(Integer.MAX_VALUE, jo.getInt("edge", -1));
+    }
+}
@@ -0,0 +1,173 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/**
+ * Tests for reading many json files in parallel with JsonUtil.readAll.
+ *
+ * @author Laura Kanerva.
+ */
+public class JsonUtilTest extends TestCase {
+    private final JsonUtil jutil = new JsonUtil();
+    private final List<File> files = new ArrayList<>();
+
+    @Override
+    protected void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testResultsAreInInputOrder() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            list(i, 2000 - 150 * i);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<Integer> counts = jutil.readAll(files, (file, reader) -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                int count = 0;
+                while (reader.nextObject() != null) {
+                    count++;
+                }
+                return count;
+            } finally {
+                running.decrementAndGet();
+            }
+        }, 3);
+        assertTrue(mostRunning.get() <= 3);
+        assertEquals(files.size(), counts.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(2000 - 150 * i, (int) counts.get(i));
+        }
+
+        List<ArrayList<JsonObject>> lists = jutil.readAll(files);
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals("list " + i + " item 0", lists.get(i).get(0).get("item"));
+        }
+    }
+
+    public void testFailingFileIsReported() throws Exception {
+        list(0, 3);
+        File malformed = file("[{\"item\": \"milk\", \"amount\": 2},\n{\"item\": }]");
+        File missing = new File(malformed.getPath() + ".missing");
+        files.add(missing);
+        list(3, 4);
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(out, true));
+        List<ArrayList<JsonObject>> lists;
+        try {
+            lists = jutil.readAll(files);
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(3, lists.get(0).size());
+        assertNull(lists.get(1));
+        assertNull(lists.get(2));
+        assertEquals(4, lists.get(3).size());
+        String errors = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(errors.contains(malformed + ": "));
+        assertTrue(errors.contains(missing + ": "));
+
+        Map<File, IOException> failed = new ConcurrentHashMap<>();
+        List<ArrayList<JsonObject>> again = jutil.readAll(files, (file, reader) -> {
+            ArrayList<JsonObject> jsons = new ArrayList<>();
+            jutil.readJson(reader, jsons::add);
+            return jsons;
+        }, 2, failed::put);
+        assertEquals(3, again.get(0).size());
+        assertNull(again.get(1));
+        assertEquals(2, failed.size());
+        assertTrue(failed.get(malformed) instanceof JsonParseException);
+        assertTrue(failed.containsKey(missing));
+    }
+
+    public void testParserFailureIsThrown() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            list(i, 10);
+        }
+        IllegalArgumentException failure = new IllegalArgumentException("bad list");
+        AtomicInteger parsed = new AtomicInteger();
+        try {
+            jutil.readAll(files, (file, reader) -> {
+                if (parsed.incrementAndGet() == 2) {
+                    throw failure;
+                }
+                return reader.nextObject();
+            }, 2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    public void testInterruptStopsReading() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            list(i, 10);
+        }
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch stopped = new CountDownLatch(2);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                jutil.readAll(files, (file, reader) -> {
+                    started.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        stopped.countDown();
+                    }
+                    return null;
+                }, 2, (file, e) -> { });
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(10000);
+        assertFalse(caller.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Writes a list file with numbered items.
+     */
+    private File list(int list, int items) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            sb.append(i == 0 ? "\n\t{" : ",\n\t{")
+                .append("\"item\": \"list ").append(list).append(" item ").append(i).append("\", \"amount\": 1}");
+        }
+        return file(sb.append("\n]").toString());
+    }
+
+    /**
+     * Writes a temporary file that is deleted after the test.
+     */
+    private File file(String content) throws IOException {
+        File file = File.createTempFile("list", ".json");
+        files.add(file);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
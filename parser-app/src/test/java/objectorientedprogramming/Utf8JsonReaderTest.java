@@ -0,0 +1,156 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests that Utf8JsonReader reads the same tokens as JsonReader.
+ *
+ * @author Laura Kanerva.
+ */
+public class Utf8JsonReaderTest extends TestCase {
+    private static final String[] PIECES = {"a", "é", "€", "😀", "\\\"", "\\\\", "\\n",
+        "\\u00e9", "\\ud83d\\ude00", " ", "item", "x", "\\/"};
+    private static final String[] WHITE_SPACE = {"", " ", "\n", "\t", "\r\n", "        ", "\n\t\t", " \n \n ",
+        "\t \r \n\t\t\t\t\t\t\t\t\n"};
+
+    private final Random random = new Random(8259);
+
+    public void testRandomDocumentsMatchJsonReader() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            String document = space() + "[" + space() + value(0) + space() + "," + space() + value(0) + space() + "]"
+                + space();
+            if (i % 5 == 0) {
+                int cut = random.nextInt(document.length());
+                document = document.substring(0, cut) + (random.nextBoolean() ? "\u0001" : "")
+                    + document.substring(cut + (random.nextBoolean() ? 1 : 0));
+            }
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            // columns are counted in chars by one parser and in bytes by the other
+            boolean ascii = bytes.length == document.length();
+            String expected = tokens(new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                StandardCharsets.UTF_8)), ascii);
+            assertEquals(document, expected, tokens(new Utf8JsonReader(ByteBuffer.wrap(bytes)), ascii));
+            assertEquals(document, expected, tokens(new Utf8JsonReader(trickle(bytes)), ascii));
+        }
+    }
+
+    public void testCountsLinesInLongWhiteSpace() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            sb.append(" \t\r\n".repeat(i)).append(i).append(',');
+        }
+        sb.append("\n\n   ]]");
+        String tokens = tokens(new Utf8JsonReader(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8))),
+            true);
+        assertTrue(tokens, tokens.endsWith(" at line " + (1 + 99 * 100 / 2 + 2) + ", column 4"));
+    }
+
+    /**
+     * Returns a random run of white space.
+     */
+    private String space() {
+        return WHITE_SPACE[random.nextInt(WHITE_SPACE.length)];
+    }
+
+    /**
+     * Returns a random quoted string.
+     */
+    private String string() {
+        StringBuilder sb = new StringBuilder("\"");
+        int length = random.nextInt(30);
+        for (int i = 0; i < length; i++) {
+            sb.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Returns a random value, nested at most a few levels deep.
+     */
+    private String value(int depth) {
+        switch (depth > 3 ? random.nextInt(4) : random.nextInt(6)) {
+            case 0:
+                return string();
+            case 1:
+                return random.nextBoolean() ? String.valueOf(random.nextInt()) : String.valueOf(random.nextDouble() * 1e5);
+            case 2:
+                return random.nextBoolean() ? "true" : "null";
+            case 3:
+                return "false";
+            case 4: {
+                StringBuilder sb = new StringBuilder("{");
+                int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    sb.append(i == 0 ? space() : "," + space()).append(random.nextInt(3) == 0 ? string() : "\"item\"")
+                        .append(space()).append(':').append(space()).append(value(depth + 1)).append(space());
+                }
+                return sb.append('}').toString();
+            }
+            default: {
+                StringBuilder sb = new StringBuilder("[").append(space());
+                int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    sb.append(i == 0 ? "" : "," + space()).append(value(depth + 1)).append(space());
+                }
+                return sb.append(']').toString();
+            }
+        }
+    }
+
+    /**
+     * Returns a channel that gives the bytes one to seven at a time.
+     */
+    private ReadableByteChannel trickle(byte[] bytes) {
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(Math.min(dst.remaining(), data.remaining()), 1 + random.nextInt(7));
+                dst.put(data.array(), data.position(), n);
+                data.position(data.position() + n);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Reads a whole document and returns its tokens, with the text of keys, strings
+     * and numbers after a colon, and where the error is, if there is one.
+     */
+    private static String tokens(JsonReader reader, boolean withColumn) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try {
+            for (JsonToken token = reader.next(); token != JsonToken.END_DOCUMENT; token = reader.next()) {
+                if (token == JsonToken.KEY || token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                    tokens.add(token + ":" + reader.getString());
+                } else {
+                    tokens.add(token.toString());
+                }
+            }
+        } catch (JsonParseException e) {
+            tokens.add(withColumn ? e.getMessage() : "error at line " + e.getLine());
+        }
+        return String.join(" ", tokens);
+    }
+}
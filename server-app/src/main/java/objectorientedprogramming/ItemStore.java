@@ -0,0 +1,226 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One shopping list shared by many clients. The items are kept in a
+ * ConcurrentHashMap by their name, compared ignoring case and surrounding
+ * whitespace. Reads take no locks, and an item is changed by replacing its entry
+ * with compare-and-set, so writers of different items never wait for each other
+ * and a writer that lost a race can read the item again and retry.
+ * <p>
+ * Entries are never changed after they have been stored, so a reader always sees
+ * a whole item. Every entry has a version, which the server uses as its ETag. The
+ * list has a version too, counting the changes that have been completed. A
+ * snapshot taken at a version contains at least those changes.
+ *
+ * @author Laura Kanerva.
+ */
+public class ItemStore {
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final Comparator<Entry> BY_POSITION = Comparator.comparingLong(e -> e.position);
+
+    private final long id = IDS.incrementAndGet();
+    private final ConcurrentHashMap<String, Entry> items = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    /**
+     * A stored item. The object must not be changed once it is in an entry.
+     */
+    public static class Entry {
+        private final JsonObject item;
+        private final long version;
+        private final long position;
+
+        /**
+         * Class constructor.
+         *
+         * @param item the item
+         * @param version version of this entry
+         * @param position position of the item in the list order
+         */
+        Entry(JsonObject item, long version, long position) {
+            this.item = item;
+            this.version = version;
+            this.position = position;
+        }
+
+        /**
+         * Returns the item.
+         *
+         * @return the item, which must not be changed
+         */
+        public JsonObject getItem() {
+            return item;
+        }
+
+        /**
+         * Returns the version of the entry, unique within the list.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * The items of the list at some version, in list order.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final List<JsonObject> items;
+
+        /**
+         * Class constructor.
+         *
+         * @param version version of the list
+         * @param items the items in list order
+         */
+        Snapshot(long version, List<JsonObject> items) {
+            this.version = version;
+            this.items = items;
+        }
+
+        /**
+         * Returns the version of the list the snapshot was taken at.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the items.
+         *
+         * @return the items in list order, which must not be changed
+         */
+        public List<JsonObject> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * Creates a list with the given items. Items with the same name are combined
+     * by adding up their amounts.
+     *
+     * @param items the items, each with an "item" member
+     * @return the list
+     * @throws IllegalArgumentException if an item has no name
+     */
+    public static ItemStore of(List<JsonObject> items) {
+        ItemStore store = new ItemStore();
+        for (JsonObject jo : ItemTotals.combine(items)) {
+            String key = ItemTotals.key(jo);
+            if (key == null) {
+                throw new IllegalArgumentException("Item without a name");
+            }
+            long version = store.clock.incrementAndGet();
+            store.items.put(key, new Entry(jo, version, version));
+        }
+        return store;
+    }
+
+    /**
+     * Returns an id that is different for every list created while the program
+     * runs, so versions of a replaced list are not mistaken for the new one's.
+     *
+     * @return the id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the number of completed changes.
+     *
+     * @return the version of the list
+     */
+    public long getVersion() {
+        return changes.get();
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Finds an item.
+     *
+     * @param key the name of the item as returned by ItemTotals.key
+     * @return the entry, or null if the item is not on the list
+     */
+    public Entry get(String key) {
+        return items.get(key);
+    }
+
+    /**
+     * Stores an item if its entry has not changed since it was read.
+     *
+     * @param key the name of the item as returned by ItemTotals.key
+     * @param old the entry that was read, or null if the item was not on the list
+     * @param item the new content, which must not be changed afterwards
+     * @return the new entry, or null if another writer got there first
+     */
+    public Entry replace(String key, Entry old, JsonObject item) {
+        long version = clock.incrementAndGet();
+        Entry entry = new Entry(item, version, old == null ? version : old.position);
+        boolean stored = old == null ? items.putIfAbsent(key, entry) == null : items.replace(key, old, entry);
+        if (!stored) {
+            return null;
+        }
+        changes.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Removes an item if its entry has not changed since it was read.
+     *
+     * @param key the name of the item as returned by ItemTotals.key
+     * @param old the entry that was read
+     * @return true if the item was removed, false if another writer got there first
+     */
+    public boolean remove(String key, Entry old) {
+        if (!items.remove(key, old)) {
+            return false;
+        }
+        changes.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the items in list order. The snapshot is reused until the list
+     * changes, so reading an unchanged list does not copy or sort it again.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long version = changes.get();
+        Snapshot s = snapshot;
+        if (s != null && s.version == version) {
+            return s;
+        }
+        List<Entry> entries = new ArrayList<>(items.values());
+        entries.sort(BY_POSITION);
+        List<JsonObject> list = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            list.add(entry.item);
+        }
+        s = new Snapshot(version, Collections.unmodifiableList(list));
+        snapshot = s;
+        return s;
+    }
+}
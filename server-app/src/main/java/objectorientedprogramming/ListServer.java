@@ -0,0 +1,822 @@
+package objectorientedprogramming;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP server that shares shopping lists between clients, such as the app,
+ * scripts and a kiosk. Lists and items are json in the app's format:
+ * <pre>
+ * GET    /lists               names, sizes and versions of the lists
+ * GET    /lists/NAME          the items of a list
+ * PUT    /lists/NAME          replace a list with an array of items
+ * DELETE /lists/NAME          remove a list
+ * GET    /lists/NAME/ITEM     one item
+ * PUT    /lists/NAME/ITEM     add or replace an item
+ * PATCH  /lists/NAME/ITEM     change the members given in an object, null removes one
+ * DELETE /lists/NAME/ITEM     remove an item
+ * </pre>
+ * Responses carry an ETag. A GET with a matching If-None-Match is answered with
+ * 304 Not Modified and no body, and a write with an If-Match that no longer
+ * matches fails with 412, so a client can update an item without overwriting
+ * someone else's change.
+ * <p>
+ * Requests are handled on virtual threads when the JDK has them, otherwise on a
+ * fixed pool. The lists are ItemStores, so requests never lock each other out.
+ * Lists are written to the response as they are read, without building the
+ * whole body in memory first. A request body is read through a stream that stops
+ * at MAX_BODY bytes, so a chunked body without a Content-Length cannot fill the
+ * memory either.
+ *
+ * @author Laura Kanerva.
+ */
+public class ListServer implements HttpHandler {
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+    private static final String CONTEXT = "/lists";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final int BACKLOG = 256;
+    /** Largest request body accepted, in bytes. */
+    static final long MAX_BODY = 64L * 1024 * 1024;
+    /**
+     * The JDK server writes the headers and the body of a response separately. With
+     * Nagle's algorithm on, the body then waits for the client's delayed ACK, about
+     * 40 ms per request on a keep-alive connection.
+     */
+    private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+    private final Map<String, ItemStore> lists = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Class constructor. The server does not accept requests until it is started.
+     *
+     * @param address address to listen on, port 0 for any free port
+     * @param threads number of threads when virtual threads are not available
+     * @throws IOException if the address cannot be bound
+     */
+    public ListServer(InetSocketAddress address, int threads) throws IOException {
+        if (System.getProperty(NODELAY) == null) {
+            System.setProperty(NODELAY, "true");
+        }
+        server = HttpServer.create(address, BACKLOG);
+        server.createContext(CONTEXT, this);
+        executor = ExecutorFactory.newExecutor(threads);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the server with lists read from the given files.
+     *
+     * @param args [-p port] [-j threads] [list files]
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = 4 * Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-p") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-j") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    files.add(new File(args[i]));
+                }
+            }
+            Map<String, ItemStore> stores = new TreeMap<>();
+            for (File file : files) {
+                stores.put(file.getName().replaceFirst("\\.json$", ""), readList(file));
+            }
+            ListServer listServer = new ListServer(new InetSocketAddress(port), threads);
+            stores.forEach(listServer::addList);
+            listServer.start();
+            System.out.println("Serving lists on http://localhost:" + listServer.getPort() + CONTEXT);
+        } catch (NumberFormatException e) {
+            System.err.println("usage: ListServer [-p port] [-j threads] [list files]");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a list file for main. Unlike JsonUtil.readJson(File), a file that is
+     * missing or not valid is an error, so the server is not started with an
+     * empty list in its place.
+     *
+     * @param file the file
+     * @return the list
+     * @throws IOException if the file cannot be read or is not valid json
+     */
+    private static ItemStore readList(File file) throws IOException {
+        JsonUtil jutil = new JsonUtil();
+        List<JsonObject> items = new ArrayList<>();
+        try (JsonReader reader = jutil.createReader(file)) {
+            jutil.readJson(reader, items::add);
+        } catch (NoSuchFileException e) {
+            throw new IOException("No such file: " + file, e);
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        try {
+            return ItemStore.of(items);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, closing open connections.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Adds a list, replacing any list with the same name.
+     *
+     * @param name name of the list
+     * @param store the items
+     */
+    public void addList(String name, ItemStore store) {
+        lists.put(name, store);
+    }
+
+    /**
+     * Handles a request under /lists.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the client cannot be answered
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            exchange.setStreams(new LimitedInputStream(exchange.getRequestBody()), null);
+            String[] names = names(exchange);
+            if (names == null) {
+                sendError(exchange, 404, "No such resource");
+            } else if (tooLarge(exchange)) {
+                sendError(exchange, 413, "Body is larger than " + MAX_BODY + " bytes");
+            } else if (names.length == 0) {
+                handleIndex(exchange);
+            } else if (names.length == 1) {
+                handleList(exchange, names[0]);
+            } else {
+                handleItem(exchange, names[0], names[1]);
+            }
+        } catch (BodyTooLargeException e) {
+            sendError(exchange, 413, e.getMessage());
+        } catch (JsonParseException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles requests for the list of lists.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the client cannot be answered
+     */
+    private void handleIndex(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendError(exchange, 405, "Lists can only be read here");
+            return;
+        }
+        List<JsonObject> index = new ArrayList<>();
+        for (Map.Entry<String, ItemStore> entry : new TreeMap<>(lists).entrySet()) {
+            JsonObject jo = new JsonObject();
+            jo.add("name", entry.getKey());
+            jo.add("items", entry.getValue().size());
+            jo.add("etag", listTag(entry.getValue(), entry.getValue().getVersion()));
+            index.add(jo);
+        }
+        send(exchange, 200, index);
+    }
+
+    /**
+     * Handles requests for a whole list.
+     *
+     * @param exchange the request and its response
+     * @param name name of the list
+     * @throws IOException if the request body is not valid or the client cannot be answered
+     */
+    private void handleList(HttpExchange exchange, String name) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                ItemStore store = lists.get(name);
+                if (store == null) {
+                    sendError(exchange, 404, "No list " + name);
+                } else if (!notModified(exchange, listTag(store, store.getVersion()))) {
+                    ItemStore.Snapshot snapshot = store.snapshot();
+                    exchange.getResponseHeaders().set("ETag", listTag(store, snapshot.getVersion()));
+                    send(exchange, 200, snapshot.getItems());
+                }
+                break;
+            case "PUT":
+                putList(exchange, name);
+                break;
+            case "DELETE":
+                deleteList(exchange, name);
+                break;
+            default:
+                sendError(exchange, 405, "Lists can be read, replaced and deleted");
+        }
+    }
+
+    /**
+     * Replaces a list with the items of the request.
+     *
+     * @param exchange the request and its response
+     * @param name name of the list
+     * @throws IOException if the request body is not valid or the client cannot be answered
+     */
+    private void putList(HttpExchange exchange, String name) throws IOException {
+        List<JsonObject> items = new ArrayList<>();
+        try (JsonReader reader = reader(exchange)) {
+            new JsonUtil().readJson(reader, items::add);
+        }
+        for (JsonObject item : items) {
+            String problem = check(item);
+            if (problem != null) {
+                sendError(exchange, 400, problem);
+                return;
+            }
+        }
+        ItemStore store = ItemStore.of(items);
+        while (true) {
+            ItemStore old = lists.get(name);
+            if (!preconditions(exchange, old == null ? null : listTag(old, old.getVersion()))) {
+                sendError(exchange, 412, "The list has changed");
+                return;
+            }
+            if (old == null ? lists.putIfAbsent(name, store) == null : lists.replace(name, old, store)) {
+                break;
+            }
+        }
+        exchange.getResponseHeaders().set("ETag", listTag(store, store.getVersion()));
+        sendEmpty(exchange, 204);
+    }
+
+    /**
+     * Removes a list.
+     *
+     * @param exchange the request and its response
+     * @param name name of the list
+     * @throws IOException if the client cannot be answered
+     */
+    private void deleteList(HttpExchange exchange, String name) throws IOException {
+        while (true) {
+            ItemStore old = lists.get(name);
+            if (old == null) {
+                sendError(exchange, 404, "No list " + name);
+                return;
+            }
+            if (!preconditions(exchange, listTag(old, old.getVersion()))) {
+                sendError(exchange, 412, "The list has changed");
+                return;
+            }
+            if (lists.remove(name, old)) {
+                sendEmpty(exchange, 204);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Handles requests for one item.
+     *
+     * @param exchange the request and its response
+     * @param listName name of the list
+     * @param itemName name of the item
+     * @throws IOException if the request body is not valid or the client cannot be answered
+     */
+    private void handleItem(HttpExchange exchange, String listName, String itemName) throws IOException {
+        String key = ItemTotals.key(itemName);
+        if (key == null) {
+            sendError(exchange, 404, "No item name");
+            return;
+        }
+        String method = exchange.getRequestMethod();
+        if (method.equals("PUT")) {
+            putItem(exchange, listName, key, itemName);
+            return;
+        }
+        ItemStore store = lists.get(listName);
+        if (store == null) {
+            sendError(exchange, 404, "No list " + listName);
+            return;
+        }
+        switch (method) {
+            case "GET":
+                ItemStore.Entry entry = store.get(key);
+                if (entry == null) {
+                    sendError(exchange, 404, "No item " + itemName);
+                } else if (!notModified(exchange, tag(store, entry.getVersion()))) {
+                    exchange.getResponseHeaders().set("ETag", tag(store, entry.getVersion()));
+                    send(exchange, 200, entry.getItem());
+                }
+                break;
+            case "PATCH":
+                patchItem(exchange, store, key);
+                break;
+            case "DELETE":
+                deleteItem(exchange, store, key, itemName);
+                break;
+            default:
+                sendError(exchange, 405, "Items can be read, replaced, patched and deleted");
+        }
+    }
+
+    /**
+     * Adds or replaces an item with the object of the request. The name is taken
+     * from the path if the object does not have one, and the list is created if
+     * it does not exist.
+     *
+     * @param exchange the request and its response
+     * @param listName name of the list
+     * @param key key of the item
+     * @param itemName name of the item in the path
+     * @throws IOException if the request body is not valid or the client cannot be answered
+     */
+    private void putItem(HttpExchange exchange, String listName, String key, String itemName) throws IOException {
+        JsonObject item = readObject(exchange);
+        if (!item.has("item")) {
+            JsonObject named = new JsonObject();
+            named.add("item", itemName);
+            for (Map.Entry<String, Object> member : item.getMap().entrySet()) {
+                named.add(member.getKey(), member.getValue());
+            }
+            item = named;
+        } else if (!key.equals(ItemTotals.key(item))) {
+            sendError(exchange, 400, "The name does not match the path, rename with PUT and DELETE");
+            return;
+        }
+        String problem = check(item);
+        if (problem != null) {
+            sendError(exchange, 400, problem);
+            return;
+        }
+        ItemStore store = lists.computeIfAbsent(listName, n -> new ItemStore());
+        ItemStore.Entry old;
+        ItemStore.Entry entry;
+        do {
+            old = store.get(key);
+            if (!preconditions(exchange, old == null ? null : tag(store, old.getVersion()))) {
+                sendError(exchange, 412, "The item has changed");
+                return;
+            }
+            entry = store.replace(key, old, item);
+        } while (entry == null);
+        exchange.getResponseHeaders().set("ETag", tag(store, entry.getVersion()));
+        send(exchange, old == null ? 201 : 200, item);
+    }
+
+    /**
+     * Changes the members of an item given in the object of the request. A null
+     * value removes the member.
+     *
+     * @param exchange the request and its response
+     * @param store the list
+     * @param key key of the item
+     * @throws IOException if the request body is not valid or the client cannot be answered
+     */
+    private void patchItem(HttpExchange exchange, ItemStore store, String key) throws IOException {
+        JsonObject changes = readObject(exchange);
+        Object name = changes.get("item");
+        if (changes.has("item") && !(name instanceof String && key.equals(ItemTotals.key((String) name)))) {
+            sendError(exchange, 400, "The name does not match the path, rename with PUT and DELETE");
+            return;
+        }
+        ItemStore.Entry entry;
+        JsonObject item;
+        do {
+            ItemStore.Entry old = store.get(key);
+            if (old == null) {
+                sendError(exchange, 404, "No item " + key);
+                return;
+            }
+            if (!preconditions(exchange, tag(store, old.getVersion()))) {
+                sendError(exchange, 412, "The item has changed");
+                return;
+            }
+            item = new JsonObject();
+            for (Map.Entry<String, Object> member : old.getItem().getMap().entrySet()) {
+                item.add(member.getKey(), member.getValue());
+            }
+            for (Map.Entry<String, Object> member : changes.getMap().entrySet()) {
+                if (member.getValue() == null) {
+                    item.getMap().remove(member.getKey());
+                } else {
+                    item.add(member.getKey(), member.getValue());
+                }
+            }
+            String problem = check(item);
+            if (problem != null) {
+                sendError(exchange, 400, problem);
+                return;
+            }
+            entry = store.replace(key, old, item);
+        } while (entry == null);
+        exchange.getResponseHeaders().set("ETag", tag(store, entry.getVersion()));
+        send(exchange, 200, item);
+    }
+
+    /**
+     * Removes an item.
+     *
+     * @param exchange the request and its response
+     * @param store the list
+     * @param key key of the item
+     * @param itemName name of the item in the path
+     * @throws IOException if the client cannot be answered
+     */
+    private void deleteItem(HttpExchange exchange, ItemStore store, String key, String itemName) throws IOException {
+        while (true) {
+            ItemStore.Entry old = store.get(key);
+            if (old == null) {
+                sendError(exchange, 404, "No item " + itemName);
+                return;
+            }
+            if (!preconditions(exchange, tag(store, old.getVersion()))) {
+                sendError(exchange, 412, "The item has changed");
+                return;
+            }
+            if (store.remove(key, old)) {
+                sendEmpty(exchange, 204);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks that an item has a name and an amount that is not negative.
+     *
+     * @param item the item
+     * @return what is wrong with the item, or null if it is valid
+     */
+    private static String check(JsonObject item) {
+        if (ItemTotals.key(item) == null) {
+            return "Item without a name";
+        }
+        Object amount = item.get("amount");
+        if (!(amount instanceof Number)) {
+            return "The amount of " + item.get("item") + " is not a number";
+        }
+        if (!(((Number) amount).doubleValue() >= 0)) {
+            return "The amount of " + item.get("item") + " is negative";
+        }
+        return null;
+    }
+
+    /**
+     * Splits the path after /lists into decoded names.
+     *
+     * @param exchange the request
+     * @return at most two names, or null if the path is not a resource of the server
+     */
+    private static String[] names(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath().substring(CONTEXT.length());
+        if (path.isEmpty() || path.equals("/")) {
+            return new String[0];
+        }
+        if (path.charAt(0) != '/') {
+            return null;
+        }
+        String[] names = path.substring(1).split("/", -1);
+        if (names.length > 2) {
+            return null;
+        }
+        for (int i = 0; i < names.length; i++) {
+            try {
+                names[i] = URLDecoder.decode(names[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (names[i].isEmpty()) {
+                return null;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Tells whether the request body is declared larger than the server accepts,
+     * so it can be refused without reading it. A body sent without a
+     * Content-Length is stopped by LimitedInputStream instead.
+     *
+     * @param exchange the request
+     * @return true if the Content-Length is too large
+     */
+    private static boolean tooLarge(HttpExchange exchange) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return length != null && Long.parseLong(length) > MAX_BODY;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the ETag of a version of an item.
+     *
+     * @param store the list
+     * @param version version of the item's entry
+     * @return the quoted tag
+     */
+    private static String tag(ItemStore store, long version) {
+        return "\"" + store.getId() + "-" + version + "\"";
+    }
+
+    /**
+     * Returns the ETag of a version of a list. It differs from the tags of items,
+     * which are counted separately.
+     *
+     * @param store the list
+     * @param version version of the list
+     * @return the quoted tag
+     */
+    private static String listTag(ItemStore store, long version) {
+        return "\"" + store.getId() + "." + version + "\"";
+    }
+
+    /**
+     * Answers 304 Not Modified if the client already has the current version.
+     *
+     * @param exchange the request and its response
+     * @param tag tag of the current version
+     * @return true if the response was sent
+     * @throws IOException if the client cannot be answered
+     */
+    private static boolean notModified(HttpExchange exchange, String tag) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || !matches(ifNoneMatch, tag)) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("ETag", tag);
+        sendEmpty(exchange, 304);
+        return true;
+    }
+
+    /**
+     * Checks the If-Match and If-None-Match headers of a write.
+     *
+     * @param exchange the request
+     * @param tag tag of the current version, or null if the resource does not exist
+     * @return true if the write may be done
+     */
+    private static boolean preconditions(HttpExchange exchange, String tag) {
+        Headers headers = exchange.getRequestHeaders();
+        String ifMatch = headers.getFirst("If-Match");
+        String ifNoneMatch = headers.getFirst("If-None-Match");
+        return (ifMatch == null || matches(ifMatch, tag)) && (ifNoneMatch == null || !matches(ifNoneMatch, tag));
+    }
+
+    /**
+     * Tells whether a tag is in the list of an If-Match or If-None-Match header.
+     *
+     * @param header the header value, a list of tags or *
+     * @param tag the tag, or null if the resource does not exist
+     * @return true if the tag is listed, or the header is * and the resource exists
+     */
+    private static boolean matches(String header, String tag) {
+        if (tag == null) {
+            return false;
+        }
+        for (String listed : header.split(",")) {
+            listed = listed.trim();
+            if (listed.startsWith("W/")) {
+                listed = listed.substring(2);
+            }
+            if (listed.equals("*") || listed.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens a parser for the request body.
+     *
+     * @param exchange the request
+     * @return the parser
+     */
+    private static JsonReader reader(HttpExchange exchange) {
+        return new JsonReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a request body holding one object.
+     *
+     * @param exchange the request
+     * @return the object
+     * @throws IOException if the body is not a single json object
+     */
+    private static JsonObject readObject(HttpExchange exchange) throws IOException {
+        try (JsonReader reader = reader(exchange)) {
+            if (reader.peek() != JsonToken.START_OBJECT) {
+                throw reader.error("Expected an object");
+            }
+            JsonObject jo = reader.nextObject();
+            if (reader.next() != JsonToken.END_DOCUMENT) {
+                throw reader.error("Expected one object");
+            }
+            return jo;
+        }
+    }
+
+    /**
+     * Streams a json array as the response.
+     *
+     * @param exchange the request and its response
+     * @param status the status code
+     * @param items the objects of the array
+     * @throws IOException if the client cannot be answered
+     */
+    private static void send(HttpExchange exchange, int status, List<JsonObject> items) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, 0);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (JsonObject jo : items) {
+                writer.writeObject(jo);
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Sends one object as the response.
+     *
+     * @param exchange the request and its response
+     * @param status the status code
+     * @param jo the object
+     * @throws IOException if the client cannot be answered
+     */
+    private static void send(HttpExchange exchange, int status, JsonObject jo) throws IOException {
+        byte[] body = jo.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Sends a response without a body. The request body is read to its end first:
+     * the JDK server ends the exchange as soon as such headers are sent, and
+     * closes the connection instead of keeping it alive if the request has not
+     * been read, even when it was empty.
+     *
+     * @param exchange the request and its response
+     * @param status the status code, such as 204 or 304
+     * @throws IOException if the client cannot be answered
+     */
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * Sends an error as an object with an "error" member.
+     *
+     * @param exchange the request and its response
+     * @param status the status code
+     * @param message what went wrong
+     * @throws IOException if the client cannot be answered
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject jo = new JsonObject();
+        jo.add("error", message);
+        send(exchange, status, jo);
+    }
+
+    /**
+     * Thrown when a request body is longer than MAX_BODY.
+     */
+    private static class BodyTooLargeException extends IOException {
+        /**
+         * Class constructor.
+         */
+        BodyTooLargeException() {
+            super("Body is larger than " + MAX_BODY + " bytes");
+        }
+    }
+
+    /**
+     * Request body that fails once more than MAX_BODY bytes have been read from it.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long count;
+
+        /**
+         * Class constructor.
+         *
+         * @param in the request body
+         */
+        LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Reads one byte.
+         *
+         * @return the byte, or -1 at the end of the body
+         * @throws IOException if reading fails or the body is too long
+         */
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        /**
+         * Reads bytes into an array.
+         *
+         * @param b the array
+         * @param off where to put the first byte
+         * @param len maximum number of bytes
+         * @return number of bytes read, or -1 at the end of the body
+         * @throws IOException if reading fails or the body is too long
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        /**
+         * Skips bytes, which count against the limit too.
+         *
+         * @param n number of bytes to skip
+         * @return number of bytes skipped
+         * @throws IOException if reading fails or the body is too long
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        /**
+         * Adds bytes to the count.
+         *
+         * @param n number of bytes read
+         * @throws BodyTooLargeException if the body is now too long
+         */
+        private void count(long n) throws BodyTooLargeException {
+            count += n;
+            if (count > MAX_BODY) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package objectorientedprogramming;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for the ListServer. Clients share one list and keep sending a mix of
+ * requests for a while: reading the list with the ETag they saw last, reading
+ * single items and changing amounts with PATCH. The throughput and the latency
+ * percentiles are printed at the end.
+ * <pre>
+ * LoadTest [-u url] [-c clients] [-d seconds] [-n items] [-w write percent]
+ * </pre>
+ * Without a url a server is started in the same process on a free port.
+ *
+ * @author Laura Kanerva.
+ */
+public class LoadTest {
+    private static final String LIST = "loadtest";
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    private final String listUrl;
+    private final int items;
+    private final int writePercent;
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Class constructor.
+     *
+     * @param url address of the server's /lists
+     * @param items number of items on the test list
+     * @param writePercent share of requests that change an item
+     */
+    public LoadTest(String url, int items, int writePercent) {
+        this.listUrl = url + "/" + LIST;
+        this.items = items;
+        this.writePercent = writePercent;
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args [-u url] [-c clients] [-d seconds] [-n items] [-w write percent]
+     */
+    public static void main(String[] args) {
+        String url = null;
+        int clients = 32;
+        int seconds = 10;
+        int items = 100;
+        int writePercent = 20;
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "-u":
+                        url = args[i + 1];
+                        break;
+                    case "-c":
+                        clients = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-d":
+                        seconds = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-n":
+                        items = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-w":
+                        writePercent = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        throw new NumberFormatException(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("usage: LoadTest [-u url] [-c clients] [-d seconds] [-n items] [-w write percent]");
+            return;
+        }
+
+        ListServer server = null;
+        try {
+            if (url == null) {
+                server = new ListServer(new InetSocketAddress("localhost", 0), 4 * Runtime.getRuntime().availableProcessors());
+                server.start();
+                url = "http://localhost:" + server.getPort() + "/lists";
+            }
+            LoadTest test = new LoadTest(url, items, writePercent);
+            test.createList();
+            System.out.println(test.run(clients, seconds * 1_000_000_000L));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Replaces the test list with items named item0, item1 and so on.
+     *
+     * @throws IOException if the server does not accept the list
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void createList() throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"item\":\"item").append(i).append("\",\"amount\":1}");
+        }
+        body.append(']');
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(listUrl))
+            .PUT(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 204) {
+            throw new IOException("Creating the list failed with status " + response.statusCode());
+        }
+    }
+
+    /**
+     * Sends requests from many clients at once.
+     *
+     * @param clients number of clients, each sending one request at a time
+     * @param nanos how long to send requests
+     * @return a report of the throughput and latencies
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public String run(int clients, long nanos) throws InterruptedException {
+        ExecutorService executor = ExecutorFactory.newExecutor(clients);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        long end = start + nanos;
+        try {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> client(end)));
+            }
+            List<long[]> latencies = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                try {
+                    latencies.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return report(latencies, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends requests one at a time until the end time.
+     *
+     * @param end when to stop, in System.nanoTime
+     * @return the latency of each request in nanoseconds, in a possibly longer array
+     *     whose first element is the number of requests
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private long[] client(long end) throws InterruptedException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        String etag = null;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.nanoTime();
+        while (now < end) {
+            int roll = random.nextInt(100);
+            String itemUrl = listUrl + "/" + URLEncoder.encode("item" + random.nextInt(items), StandardCharsets.UTF_8);
+            HttpRequest.Builder request;
+            boolean readsList = false;
+            if (roll < writePercent) {
+                String patch = "{\"amount\":" + (1 + random.nextInt(9)) + "}";
+                request = HttpRequest.newBuilder(URI.create(itemUrl))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(patch));
+            } else if (roll % 2 == 0) {
+                request = HttpRequest.newBuilder(URI.create(itemUrl));
+            } else {
+                request = HttpRequest.newBuilder(URI.create(listUrl));
+                readsList = true;
+                if (etag != null) {
+                    request.header("If-None-Match", etag);
+                }
+            }
+            try {
+                HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                int status = response.statusCode();
+                if (status == 304) {
+                    notModified.incrementAndGet();
+                } else if (status >= 300) {
+                    errors.incrementAndGet();
+                } else if (readsList) {
+                    etag = response.headers().firstValue("ETag").orElse(null);
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+            long done = System.nanoTime();
+            if (++count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+            }
+            latencies[count] = done - now;
+            now = done;
+        }
+        latencies[0] = count;
+        return latencies;
+    }
+
+    /**
+     * Describes the results.
+     *
+     * @param perClient latencies of each client as returned by client
+     * @param nanos duration of the test
+     * @return the report
+     */
+    private String report(List<long[]> perClient, long nanos) {
+        int total = 0;
+        for (long[] latencies : perClient) {
+            total += (int) latencies[0];
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] latencies : perClient) {
+            int count = (int) latencies[0];
+            System.arraycopy(latencies, 1, all, n, count);
+            n += count;
+        }
+        Arrays.sort(all);
+        double seconds = nanos / 1e9;
+        return String.format(Locale.ROOT,
+            "%d requests in %.1f s: %.0f requests/s, %d not modified, %d errors%n"
+            + "latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f",
+            total, seconds, total / seconds, notModified.get(), errors.get(),
+            percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 100));
+    }
+
+    /**
+     * Returns a percentile of sorted latencies.
+     *
+     * @param sorted latencies in nanoseconds in ascending order
+     * @param percent the percentile
+     * @return the latency in milliseconds, 0 if there are none
+     */
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+}
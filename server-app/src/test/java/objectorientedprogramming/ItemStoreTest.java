@@ -0,0 +1,101 @@
+package objectorientedprogramming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the compare-and-set updates and snapshots of ItemStore.
+ *
+ * @author Laura Kanerva.
+ */
+public class ItemStoreTest extends TestCase {
+    private final ItemStore store = ItemStore.of(Arrays.asList(item("milk", 2), item("bread", 1), item("Milk ", 3)));
+
+    public void testOfCombinesItemsWithSameName() {
+        assertEquals(2, store.size());
+        assertEquals(5, store.get("milk").getItem().getInt("amount", -1));
+        try {
+            ItemStore.of(Arrays.asList(item(" ", 1)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testStaleEntryIsNotReplaced() {
+        ItemStore.Entry old = store.get("milk");
+        ItemStore.Entry entry = store.replace("milk", old, item("milk", 7));
+        assertNotNull(entry);
+        assertTrue(entry.getVersion() > old.getVersion());
+        assertEquals(1, store.getVersion());
+        assertNull(store.replace("milk", old, item("milk", 8)));
+        assertFalse(store.remove("milk", old));
+        assertNull(store.replace("eggs", store.get("milk"), item("eggs", 6)));
+        assertEquals(7, store.get("milk").getItem().getInt("amount", -1));
+        assertEquals(1, store.getVersion());
+        assertTrue(store.remove("milk", entry));
+        assertNull(store.get("milk"));
+        assertEquals(2, store.getVersion());
+    }
+
+    public void testSnapshotKeepsListOrder() {
+        ItemStore.Snapshot first = store.snapshot();
+        assertSame(first, store.snapshot());
+        store.replace("eggs", null, item("eggs", 6));
+        store.replace("milk", store.get("milk"), item("milk", 1));
+        ItemStore.Snapshot second = store.snapshot();
+        assertEquals(2, second.getVersion());
+        List<Object> names = new ArrayList<>();
+        for (JsonObject jo : second.getItems()) {
+            names.add(jo.get("item"));
+        }
+        assertEquals(Arrays.asList("milk", "bread", "eggs"), names);
+        assertEquals(2, first.getItems().size());
+    }
+
+    public void testConcurrentRetriesLoseNoUpdates() throws Exception {
+        int threads = 8;
+        int increments = 10000;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < increments; i++) {
+                    while (true) {
+                        ItemStore.Entry old = store.get("bread");
+                        int amount = old.getItem().getInt("amount", -1);
+                        if (store.replace("bread", old, item("bread", amount + 1)) != null) {
+                            break;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1 + threads * increments, store.get("bread").getItem().getInt("amount", -1));
+        assertEquals(threads * increments, store.getVersion());
+    }
+
+    /**
+     * Returns an item object.
+     */
+    private static JsonObject item(String name, int amount) {
+        JsonObject jo = new JsonObject();
+        jo.add("item", name);
+        jo.add("amount", amount);
+        return jo;
+    }
+}
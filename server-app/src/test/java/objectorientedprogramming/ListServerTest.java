@@ -0,0 +1,289 @@
+package objectorientedprogramming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ * Tests for ListServer, started on a free port and used over HTTP.
+ *
+ * @author Laura Kanerva.
+ */
+public class ListServerTest extends TestCase {
+    private static final int THREADS = 8;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final JsonUtil jutil = new JsonUtil();
+    private ListServer server;
+
+    @Override
+    protected void setUp() throws IOException {
+        server = new ListServer(new InetSocketAddress("localhost", 0), THREADS);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop();
+    }
+
+    public void testEtagsAndNotModified() throws Exception {
+        HttpResponse<String> created = send("PUT", "/lists/shop/milk", "{\"amount\": 2}");
+        assertEquals(201, created.statusCode());
+        String tag = etag(created);
+        assertNotNull(tag);
+
+        HttpResponse<String> same = send("GET", "/lists/shop/milk", null, "If-None-Match", tag);
+        assertEquals(304, same.statusCode());
+        assertEquals("", same.body());
+        assertEquals(tag, etag(same));
+
+        HttpResponse<String> list = send("GET", "/lists/shop", null);
+        assertEquals(200, list.statusCode());
+        assertFalse(tag.equals(etag(list)));
+        assertEquals(304, send("GET", "/lists/shop", null, "If-None-Match", etag(list)).statusCode());
+
+        HttpResponse<String> changed = send("PUT", "/lists/shop/milk", "{\"amount\": 3}", "If-Match", tag);
+        assertEquals(200, changed.statusCode());
+        assertFalse(tag.equals(etag(changed)));
+        assertEquals(200, send("GET", "/lists/shop/milk", null, "If-None-Match", tag).statusCode());
+        assertEquals(200, send("GET", "/lists/shop", null, "If-None-Match", etag(list)).statusCode());
+
+        assertEquals(412, send("PUT", "/lists/shop/milk", "{\"amount\": 4}", "If-Match", tag).statusCode());
+        assertEquals(412, send("PATCH", "/lists/shop/milk", "{\"amount\": 4}", "If-Match", tag).statusCode());
+        assertEquals(412, send("DELETE", "/lists/shop/milk", null, "If-Match", tag).statusCode());
+        assertEquals(412, send("PUT", "/lists/shop/milk", "{\"amount\": 4}", "If-None-Match", "*").statusCode());
+        assertEquals(412, send("PUT", "/lists/shop", "[]", "If-Match", etag(list)).statusCode());
+        assertEquals(3, item("shop", "milk").getInt("amount", -1));
+
+        assertEquals(204, send("DELETE", "/lists/shop/milk", null, "If-Match", etag(changed)).statusCode());
+        assertEquals(404, send("GET", "/lists/shop/milk", null).statusCode());
+    }
+
+    public void testPatchNullRemovesMember() throws Exception {
+        send("PUT", "/lists/shop/milk", "{\"amount\": 2, \"note\": \"lactose free\", \"shop\": \"corner\"}");
+        HttpResponse<String> patched = send("PATCH", "/lists/shop/milk", "{\"note\": null, \"amount\": 5}");
+        assertEquals(200, patched.statusCode());
+        JsonObject milk = item("shop", "milk");
+        assertFalse(milk.has("note"));
+        assertEquals("corner", milk.get("shop"));
+        assertEquals(5, milk.getInt("amount", -1));
+
+        assertEquals(400, send("PATCH", "/lists/shop/milk", "{\"amount\": null}").statusCode());
+        assertEquals(5, item("shop", "milk").getInt("amount", -1));
+        assertEquals(404, send("PATCH", "/lists/shop/eggs", "{\"note\": null}").statusCode());
+    }
+
+    public void testPutNameMustMatchPath() throws Exception {
+        HttpResponse<String> other = send("PUT", "/lists/shop/milk", "{\"item\": \"eggs\", \"amount\": 6}");
+        assertEquals(400, other.statusCode());
+        assertTrue(other.body().contains("does not match"));
+        assertEquals(404, send("GET", "/lists/shop/eggs", null).statusCode());
+        assertEquals(400, send("PUT", "/lists/shop/milk", "{\"item\": 7, \"amount\": 6}").statusCode());
+
+        assertEquals(201, send("PUT", "/lists/shop/milk", "{\"item\": \" Milk \", \"amount\": 1}").statusCode());
+        assertEquals(" Milk ", item("shop", "MILK").get("item"));
+        assertEquals(400, send("PATCH", "/lists/shop/milk", "{\"item\": \"eggs\"}").statusCode());
+        assertEquals(200, send("PATCH", "/lists/shop/milk", "{\"item\": \"milk\"}").statusCode());
+        assertEquals("milk", item("shop", "milk").get("item"));
+    }
+
+    public void testConcurrentPatchesAreAllKept() throws Exception {
+        send("PUT", "/lists/shop/milk", "{\"amount\": 1}");
+        int patches = 25;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < patches; i++) {
+                    String body = "{\"t" + thread + "_" + i + "\": " + i + "}";
+                    assertEquals(200, send("PATCH", "/lists/shop/milk", body).statusCode());
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        JsonObject milk = item("shop", "milk");
+        assertEquals(2 + THREADS * patches, milk.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < patches; i++) {
+                assertEquals(i, milk.getInt("t" + t + "_" + i, -1));
+            }
+        }
+    }
+
+    public void testConditionalUpdatesRetryAfterConflict() throws Exception {
+        send("PUT", "/lists/shop/milk", "{\"amount\": 0}");
+        int increments = 20;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < increments; i++) {
+                    while (true) {
+                        HttpResponse<String> read = send("GET", "/lists/shop/milk", null);
+                        int amount = parse(read.body()).getInt("amount", -1);
+                        String body = "{\"amount\": " + (amount + 1) + "}";
+                        int status = send("PUT", "/lists/shop/milk", body, "If-Match", etag(read)).statusCode();
+                        if (status == 200) {
+                            break;
+                        }
+                        assertEquals(412, status);
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        assertEquals(THREADS * increments, item("shop", "milk").getInt("amount", -1));
+    }
+
+    public void testChunkedBodyIsLimited() throws Exception {
+        long length = ListServer.MAX_BODY + 1;
+        HttpRequest request = HttpRequest.newBuilder(uri("/lists/big"))
+            .PUT(HttpRequest.BodyPublishers.ofInputStream(() -> new Spaces(length))).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(413, response.statusCode());
+        assertEquals(404, send("GET", "/lists/big", null).statusCode());
+    }
+
+    public void testMainReportsBadListFiles() throws Exception {
+        File bad = File.createTempFile("bad", ".json");
+        try {
+            Files.write(bad.toPath(), "[{\"item\": \"milk\", \"amount\": ".getBytes(StandardCharsets.UTF_8));
+            assertTrue(mainError(bad.getPath()).startsWith(bad.getPath() + ": "));
+            File missing = new File(bad.getParentFile(), "missing-" + bad.getName());
+            assertTrue(mainError(missing.getPath()).contains("No such file: " + missing.getPath()));
+        } finally {
+            bad.delete();
+        }
+    }
+
+    /**
+     * Sends a request with the given headers, given as names and values.
+     */
+    private HttpResponse<String> send(String method, String path, String body, String... headers)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path)).method(method,
+            body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.header(headers[i], headers[i + 1]);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Returns the address of a path on the server.
+     */
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    /**
+     * Reads an item, failing if it is not there.
+     */
+    private JsonObject item(String list, String item) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", "/lists/" + list + "/" + item, null);
+        assertEquals(200, response.statusCode());
+        return parse(response.body());
+    }
+
+    /**
+     * Parses a response holding one object.
+     */
+    private JsonObject parse(String body) {
+        List<JsonObject> jsons = jutil.stringToJson(body);
+        assertEquals(1, jsons.size());
+        return jsons.get(0);
+    }
+
+    /**
+     * Returns the ETag of a response.
+     */
+    private static String etag(HttpResponse<String> response) {
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+
+    /**
+     * Runs the tasks at the same time and rethrows the first failure.
+     */
+    private static void runAll(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs main with a list file and returns what it printed as an error.
+     */
+    private static String mainError(String file) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(out, true));
+        try {
+            ListServer.main(new String[] {"-p", "0", file});
+        } finally {
+            System.setErr(err);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A json array that never ends: an opening bracket followed by spaces.
+     */
+    private static class Spaces extends InputStream {
+        private long left;
+        private boolean started;
+
+        /**
+         * Class constructor.
+         *
+         * @param length number of bytes in the stream
+         */
+        Spaces(long length) {
+            left = length;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (left == 0 || len == 0) {
+                return left == 0 ? -1 : 0;
+            }
+            int n = (int) Math.min(len, left);
+            Arrays.fill(b, off, off + n, (byte) ' ');
+            if (!started) {
+                b[off] = '[';
+                started = true;
+            }
+            left -= n;
+            return n;
+        }
+    }
+}